@@ -1,11 +1,22 @@
 package com.udacity.catpoint.GUI.application;
 
-import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.GUI.service.CommandBus;
+import com.udacity.catpoint.image.service.IImageService;
+import com.udacity.catpoint.image.service.ImageServiceProvider;
 import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.SecurityRepositoryProvider;
+import com.udacity.catpoint.security.data.SnapshotSecurityRepositoryImpl;
+import com.udacity.catpoint.security.service.AlarmTransitionTable;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.TimingWheel;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 
 /**
  * This is the primary JFrame for the application that contains all the top-level JPanels.
@@ -14,17 +25,17 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+    private SecurityRepository securityRepository = createRepository();
     //private FakeImageService imageService = new FakeImageService();
     // private SecurityService securityService = new SecurityService(securityRepository, imageService);
-    private SecurityService securityService = new SecurityService(securityRepository);
-    private DisplayPanel displayPanel = new DisplayPanel(securityService);
+    private SecurityService securityService = createSecurityService(securityRepository);
+    private StatusUpdateCoalescer statusUpdates = new StatusUpdateCoalescer(securityService);
+    private CommandBus commandBus = new CommandBus(securityService);
+    private DisplayPanel displayPanel = new DisplayPanel(securityService, statusUpdates);
 
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    // private ControlPanel controlPanel = new ControlPanel(securityService);
-
-    private ControlPanel controlPanel = new ControlPanel(securityService, sensorPanel);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private SensorPanel sensorPanel = new SensorPanel(commandBus, statusUpdates);
+    private ControlPanel controlPanel = new ControlPanel(securityService, commandBus);
+    private ImagePanel imagePanel = new ImagePanel(commandBus, statusUpdates);
 
     public CatpointGui() {
         setLocation(100, 100);
@@ -41,5 +52,60 @@ public class CatpointGui extends JFrame {
 
         getContentPane().add(mainPanel);
 
+        if (securityRepository instanceof SnapshotSecurityRepositoryImpl snapshotRepository) {
+            //the sensor list may have been drawn from the snapshot, so redraw it once the real data is in
+            snapshotRepository.hydrated().thenRun(statusUpdates::sensorStatusChanged);
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) {
+                    snapshotRepository.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds the service with a running timing wheel for the alarm delays. The entry delay (default 30s)
+     * and exit delay (default off) are read from {@code catpoint.entryDelaySeconds} and
+     * {@code catpoint.exitDelaySeconds}. Setting {@code catpoint.sensorTimeoutSeconds} also reports
+     * sensors that go that long without a heartbeat as offline, {@code catpoint.alarmRules} names
+     * a rule file to use instead of the built-in alarm rules, and {@code catpoint.imageService} names the
+     * image service, see {@link ImageServiceProvider#configured()}.
+     */
+    private static SecurityService createSecurityService(SecurityRepository securityRepository) {
+        TimingWheel timers = new TimingWheel(Clock.systemUTC(), 100);
+        timers.start();
+        IImageService imageService = ImageServiceProvider.configured();
+        SecurityService securityService = new SecurityService(securityRepository, imageService, timers,
+                Duration.ofSeconds(Long.getLong("catpoint.entryDelaySeconds", 30)),
+                Duration.ofSeconds(Long.getLong("catpoint.exitDelaySeconds", 0)),
+                AlarmTransitionTable.configured());
+        long sensorTimeout = Long.getLong("catpoint.sensorTimeoutSeconds", 0);
+        if (sensorTimeout > 0) {
+            securityService.trackLiveness(Clock.systemUTC(), Duration.ofSeconds(sensorTimeout), Duration.ofSeconds(1))
+                    .start();
+        }
+        return securityService;
+    }
+
+    /**
+     * Wraps the configured repository in a snapshot so the window can show the system status before
+     * the repository has finished loading. Set {@code catpoint.snapshot} to choose the snapshot file,
+     * or to {@code none} to load the repository directly.
+     */
+    private static SecurityRepository createRepository() {
+        String snapshotFile = System.getProperty("catpoint.snapshot", "catpoint.snapshot");
+        if ("none".equals(snapshotFile)) {
+            return createBackingRepository();
+        }
+        return new SnapshotSecurityRepositoryImpl(Path.of(snapshotFile), CatpointGui::createBackingRepository);
+    }
+
+    /**
+     * Creates the repository named by the {@code catpoint.repository} system property, see
+     * {@link SecurityRepositoryProvider#configured()}.
+     */
+    private static SecurityRepository createBackingRepository() {
+        return SecurityRepositoryProvider.configured();
     }
 }
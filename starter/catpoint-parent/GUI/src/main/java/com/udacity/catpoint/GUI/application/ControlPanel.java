@@ -2,6 +2,8 @@ package com.udacity.catpoint.GUI.application;
 
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.GUI.service.CommandBus;
+import com.udacity.catpoint.GUI.service.SecurityCommand;
 import com.udacity.catpoint.GUI.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
@@ -15,17 +17,11 @@ import java.util.stream.Collectors;
  */
 public class ControlPanel extends JPanel {
 
-    private SecurityService securityService;
     private Map<ArmingStatus, JButton> buttonMap;
 
-    private SensorPanel sensorPanel;
-
-
-    public ControlPanel(SecurityService securityService, SensorPanel sensorPanel) {
+    public ControlPanel(SecurityService securityService, CommandBus commandBus) {
         super();
-        this.sensorPanel = sensorPanel;
         setLayout(new MigLayout());
-        this.securityService = securityService;
 
         JLabel panelLabel = new JLabel("System Control");
         panelLabel.setFont(StyleService.HEADING_FONT);
@@ -38,18 +34,16 @@ public class ControlPanel extends JPanel {
 
         //add an action listener to each button that applies its arming status and recolors all the buttons
         buttonMap.forEach((k, v) -> {
-            v.addActionListener(e -> {
-                securityService.setArmingStatus(k);
-                buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
-                sensorPanel.updateSensorList();
-            });
+            v.addActionListener(e -> commandBus.submit(new SecurityCommand.SetArmingStatus(k), v, "Working...")
+                    .thenRun(() -> buttonMap.forEach((status, button) ->
+                            button.setBackground(status == k ? StyleService.getColor(status) : null))));
         });
 
         //map order above is arbitrary, so loop again in order to add buttons in enum-order
         Arrays.stream(ArmingStatus.values()).forEach(status -> add(buttonMap.get(status)));
 
         ArmingStatus currentStatus = securityService.getArmingStatus();
-        buttonMap.get(currentStatus).setBackground(currentStatus.getColor());
+        buttonMap.get(currentStatus).setBackground(StyleService.getColor(currentStatus));
 
 
     }
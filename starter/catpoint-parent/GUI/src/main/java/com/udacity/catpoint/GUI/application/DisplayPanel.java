@@ -2,6 +2,7 @@ package com.udacity.catpoint.GUI.application;
 
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.GUI.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -10,17 +11,18 @@ import javax.swing.*;
 
 /**
  * Displays the current status of the system. Implements the StatusListener
- * interface so that it can be notified whenever the status changes.
+ * interface so that it can be notified whenever the status changes. Updates
+ * arrive on the EDT through the {@link StatusUpdateCoalescer}.
  */
 public class DisplayPanel extends JPanel implements StatusListener {
 
     private JLabel currentStatusLabel;
 
-    public DisplayPanel(SecurityService securityService) {
+    public DisplayPanel(SecurityService securityService, StatusUpdateCoalescer statusUpdates) {
         super();
         setLayout(new MigLayout());
 
-        securityService.addStatusListener(this);
+        statusUpdates.addStatusListener(this);
 
         JLabel panelLabel = new JLabel("Very Secure Home Security");
         JLabel systemStatusLabel = new JLabel("System Status:");
@@ -39,7 +41,7 @@ public class DisplayPanel extends JPanel implements StatusListener {
     @Override
     public void notify(AlarmStatus status) {
         currentStatusLabel.setText(status.getDescription());
-        currentStatusLabel.setBackground(status.getColor());
+        currentStatusLabel.setBackground(StyleService.getColor(status));
         currentStatusLabel.setOpaque(true);
     }
 
@@ -52,4 +54,9 @@ public class DisplayPanel extends JPanel implements StatusListener {
     public void sensorStatusChanged() {
         // no behavior necessary
     }
+
+    @Override
+    public void sensorOffline(Sensor sensor) {
+        // no behavior necessary
+    }
 }
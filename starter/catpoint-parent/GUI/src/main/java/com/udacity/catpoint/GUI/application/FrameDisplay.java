@@ -0,0 +1,86 @@
+package com.udacity.catpoint.GUI.application;
+
+import com.udacity.catpoint.GUI.service.ImageScaler;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shows camera frames on a JLabel. Frames are scaled on the caller's (background) thread into one of
+ * three reusable images: one is on screen, one waits to be shown and one is being drawn. If frames
+ * arrive faster than the EDT can show them, the waiting frame is simply replaced, so there is never
+ * more than one pending update on the EDT. The drawing thread never waits for the EDT: if the EDT has
+ * taken a frame but not yet handed back the one it replaced, a fourth image is made, and from then on
+ * one is always free.
+ *
+ * {@link #showPreview} and {@link #show} must always be called from the same thread.
+ */
+public class FrameDisplay {
+
+    private final JLabel label;
+    private final ImageIcon icon = new ImageIcon();
+    private final int width;
+    private final int height;
+
+    private final AtomicReference<BufferedImage> pending = new AtomicReference<>();
+    private final Queue<BufferedImage> free = new ConcurrentLinkedQueue<>();
+    private BufferedImage back;   //only touched by the drawing thread
+    private BufferedImage front;  //only touched by the EDT
+
+    public FrameDisplay(JLabel label, int width, int height) {
+        this.label = label;
+        this.width = width;
+        this.height = height;
+        back = ImageScaler.createCompatibleImage(width, height);
+        free.add(ImageScaler.createCompatibleImage(width, height));
+        free.add(ImageScaler.createCompatibleImage(width, height));
+    }
+
+    /**
+     * Shows a quick, low quality version of the image.
+     */
+    public void showPreview(BufferedImage image) {
+        ImageScaler.drawPreview(image, back);
+        publish();
+    }
+
+    /**
+     * Shows a smoothly scaled version of the image.
+     */
+    public void show(BufferedImage image) {
+        ImageScaler.drawScaled(image, back);
+        publish();
+    }
+
+    private void publish() {
+        BufferedImage replaced = pending.getAndSet(back);
+        if (replaced == null) {
+            SwingUtilities.invokeLater(this::swap);
+            back = free.poll();
+            if (back == null) {
+                //the EDT is between taking the last frame and freeing the one it replaced
+                back = ImageScaler.createCompatibleImage(width, height);
+            }
+        } else {
+            //the EDT hasn't picked up the last frame yet, so recycle it instead of queueing more work
+            back = replaced;
+        }
+    }
+
+    private void swap() {
+        BufferedImage next = pending.getAndSet(null);
+        if (next == null) {
+            return;
+        }
+        if (front != null) {
+            free.add(front);
+        }
+        front = next;
+        icon.setImage(front);
+        label.setIcon(icon);
+        label.repaint();
+    }
+}
@@ -1,8 +1,14 @@
 package com.udacity.catpoint.GUI.application;
 
+import com.udacity.catpoint.image.data.CameraImage;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
-import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.GUI.service.CameraSource;
+import com.udacity.catpoint.GUI.service.CommandBus;
+import com.udacity.catpoint.GUI.service.FrameSequence;
+import com.udacity.catpoint.GUI.service.SecurityCommand;
 import com.udacity.catpoint.GUI.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
@@ -10,27 +16,52 @@ import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
- * by uploading their own picture, and 'scan' the picture, sending it for image analysis
+ * by uploading their own picture, or to play a folder of pictures as a camera feed,
+ * and to 'scan' the current picture, sending it for image analysis. A folder or
+ * Motion JPEG file can also be streamed straight to image analysis, see {@link CameraSource}.
+ *
+ * Pictures are decoded and scaled on a background thread; the EDT only swaps in the finished frame.
  */
 public class ImagePanel extends JPanel implements StatusListener {
-    private SecurityService securityService;
-
     private JLabel cameraHeader;
     private JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    private FrameDisplay frameDisplay;
+    private volatile CameraImage currentCameraFrame;
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
+    private static final int FEED_FRAMES_PER_SECOND = 10;
+    private static final int STREAM_FRAMES_PER_SECOND = 2;
+    private static final int STREAM_DECODERS = 2;
+
+    //one thread does all decoding and scaling, FrameDisplay relies on that
+    private final ScheduledExecutorService cameraExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "camera-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> feed;
+    private CameraSource stream;
+    private Camera streamCamera; //each stream is a camera of its own, so its answers don't mix with scans by hand
 
-    public ImagePanel(SecurityService securityService) {
+    public ImagePanel(CommandBus commandBus, StatusUpdateCoalescer statusUpdates) {
         super();
         setLayout(new MigLayout());
-        this.securityService = securityService;
-        securityService.addStatusListener(this);
+        statusUpdates.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
         cameraHeader.setFont(StyleService.HEADING_FONT);
@@ -39,6 +70,7 @@ public class ImagePanel extends JPanel implements StatusListener {
         cameraLabel.setBackground(Color.WHITE);
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        frameDisplay = new FrameDisplay(cameraLabel, IMAGE_WIDTH, IMAGE_HEIGHT);
 
         //button allowing users to select a file to be the current camera image
         JButton addPictureButton = new JButton("Refresh Camera");
@@ -50,28 +82,159 @@ public class ImagePanel extends JPanel implements StatusListener {
             if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
+            Path file = chooser.getSelectedFile().toPath();
+            cameraExecutor.execute(() -> {
+                if (!loadPicture(file, true)) {
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, "Invalid image selected."));
+                }
+            });
+        });
+
+        //button that plays every picture in a folder as a camera feed
+        JButton feedButton = new JButton("Play Folder");
+        feedButton.addActionListener(e -> {
+            if (feed != null) {
+                feed.cancel(false);
+                feed = null;
+                feedButton.setText("Play Folder");
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select Folder");
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            List<Path> pictures;
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
-                JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                pictures = FrameSequence.listPictures(chooser.getSelectedFile().toPath());
+            } catch (IOException ioe) {
+                pictures = List.of();
             }
-            repaint();
+            if (pictures.isEmpty()) {
+                JOptionPane.showMessageDialog(null, "No pictures found in that folder.");
+                return;
+            }
+            feed = playFeed(pictures);
+            feedButton.setText("Stop Feed");
         });
 
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
-        scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+        scanPictureButton.addActionListener(e ->
+                commandBus.submit(new SecurityCommand.ProcessImage(currentCameraFrame), scanPictureButton, "Scanning..."));
+
+        //button that streams every frame of a folder or MJPEG file to the image service
+        JButton streamButton = new JButton("Stream Camera");
+        streamButton.addActionListener(e -> {
+            if (stream != null) {
+                CameraSource stopping = stream;
+                Camera stoppingCamera = streamCamera;
+                stream = null;
+                streamCamera = null;
+                streamButton.setText("Stream Camera");
+                //closing waits for the frame being scanned, which waits for the EDT; after that the camera's
+                //last answer can go, so a cat it saw doesn't stay detected
+                cameraExecutor.execute(() -> {
+                    stopping.close();
+                    commandBus.submit(new SecurityCommand.RemoveCamera(stoppingCamera));
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                            "Camera stream stopped: " + stopping.getStats()));
+                });
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setCurrentDirectory(new File("."));
+            chooser.setDialogTitle("Select Folder or MJPEG File");
+            chooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+            if(chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            Path source = chooser.getSelectedFile().toPath();
+            Camera camera = new Camera(source.getFileName().toString());
+            streamButton.setEnabled(false);
+            cameraExecutor.execute(() -> {
+                CameraSource opened = openStream(source, camera, commandBus);
+                SwingUtilities.invokeLater(() -> {
+                    streamButton.setEnabled(true);
+                    if (opened == null) {
+                        JOptionPane.showMessageDialog(null, "No frames found in " + source.getFileName() + ".");
+                        return;
+                    }
+                    stream = opened;
+                    streamCamera = camera;
+                    streamButton.setText("Stop Stream");
+                    opened.start();
+                });
+            });
         });
 
-        add(cameraHeader, "span 3, wrap");
-        add(cameraLabel, "span 3, wrap");
+        add(cameraHeader, "span 4, wrap");
+        add(cameraLabel, "span 4, wrap");
         add(addPictureButton);
+        add(feedButton);
+        add(streamButton);
         add(scanPictureButton);
     }
 
+    /**
+     * Decodes a picture and shows it. Runs on the camera thread.
+     * @param file The picture to load
+     * @param preview Whether to show a quick preview before the smoothly scaled picture
+     * @return false if the file could not be read as an image
+     */
+    private boolean loadPicture(Path file, boolean preview) {
+        try {
+            //keep the file's own bytes so the image service doesn't have to re-encode them
+            byte[] bytes = Files.readAllBytes(file);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (image == null) {
+                return false;
+            }
+            if (preview) {
+                frameDisplay.showPreview(image);
+            }
+            currentCameraFrame = CameraImage.ofEncoded(bytes);
+            frameDisplay.show(image);
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads the pictures one after another, looping, at {@link #FEED_FRAMES_PER_SECOND}. Loads never
+     * overlap, and a frame the EDT hasn't shown yet is replaced by the next one rather than queued.
+     */
+    private ScheduledFuture<?> playFeed(List<Path> pictures) {
+        AtomicInteger next = new AtomicInteger();
+        return cameraExecutor.scheduleAtFixedRate(
+                () -> loadPicture(pictures.get(next.getAndIncrement() % pictures.size()), false),
+                0, 1000 / FEED_FRAMES_PER_SECOND, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Maps a folder or MJPEG file as a looping stream that scans each frame through the command bus, as
+     * coming from the given camera. Runs on the camera thread.
+     * @return The stream, not yet started, or null if no frames could be read
+     */
+    private static CameraSource openStream(Path source, Camera camera, CommandBus commandBus) {
+        FrameSequence frames;
+        try {
+            frames = FrameSequence.open(source);
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            return null;
+        }
+        if (frames.size() == 0) {
+            return null;
+        }
+        //waiting for each scan keeps the frame's pixels in use until the scan is done with them
+        return new CameraSource(frames,
+                image -> commandBus.submit(new SecurityCommand.ProcessImage(camera, image)).join(),
+                STREAM_DECODERS, STREAM_FRAMES_PER_SECOND, true);
+    }
+
     @Override
     public void notify(AlarmStatus status) {
         //no behavior necessary
@@ -90,4 +253,9 @@ public class ImagePanel extends JPanel implements StatusListener {
     public void sensorStatusChanged() {
         //no behavior necessary
     }
+
+    @Override
+    public void sensorOffline(Sensor sensor) {
+        //no behavior necessary
+    }
 }
@@ -1,20 +1,36 @@
 package com.udacity.catpoint.GUI.application;
 
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.Sensor;
 import com.udacity.catpoint.security.data.SensorType;
-import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.GUI.service.CommandBus;
+import com.udacity.catpoint.GUI.service.SecurityCommand;
 import com.udacity.catpoint.GUI.service.StyleService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * Panel that allows users to add sensors to their system. Sensors may be
  * manually set to "active" and "inactive" to test the system.
+ *
+ * Sensors are shown in a JTable, which only paints the rows that are visible, and
+ * changes to a single sensor only repaint that sensor's row. The whole list is
+ * reloaded when the system reports that many sensors changed at once.
  */
-public class SensorPanel extends JPanel {
+public class SensorPanel extends JPanel implements StatusListener {
 
-    private SecurityService securityService;
+    private CommandBus commandBus;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -22,14 +38,18 @@ public class SensorPanel extends JPanel {
     private JTextField newSensorNameField = new JTextField();
     private JComboBox newSensorTypeDropdown = new JComboBox(SensorType.values());
     private JButton addNewSensorButton = new JButton("Add New Sensor");
+    private JTextField filterField = new JTextField();
 
-    private JPanel sensorListPanel;
+    private SensorTableModel sensorTableModel = new SensorTableModel();
+    private TableRowSorter<SensorTableModel> sensorSorter = new TableRowSorter<>(sensorTableModel);
+    private JTable sensorTable = new JTable(sensorTableModel);
     private JPanel newSensorPanel;
 
-    public SensorPanel(SecurityService securityService) {
+    public SensorPanel(CommandBus commandBus, StatusUpdateCoalescer statusUpdates) {
         super();
         setLayout(new MigLayout());
-        this.securityService = securityService;
+        this.commandBus = commandBus;
+        statusUpdates.addStatusListener(this);
 
         panelLabel.setFont(StyleService.HEADING_FONT);
         addNewSensorButton.addActionListener(e ->
@@ -37,14 +57,15 @@ public class SensorPanel extends JPanel {
                         SensorType.valueOf(newSensorTypeDropdown.getSelectedItem().toString()))));
 
         newSensorPanel = buildAddSensorPanel();
-        sensorListPanel = new JPanel();
-        sensorListPanel.setLayout(new MigLayout());
+        configureSensorTable();
 
-        updateSensorList(sensorListPanel);
+        updateSensorList();
 
         add(panelLabel, "wrap");
-        add(newSensorPanel, "span");
-        add(sensorListPanel, "span");
+        add(newSensorPanel, "span, wrap");
+        add(new JLabel("Filter:"), "split 2");
+        add(filterField, "width 100:200:300, wrap");
+        add(new JScrollPane(sensorTable), "span, width 540:540:540, height 100:200:400");
     }
 
     /**
@@ -62,77 +83,148 @@ public class SensorPanel extends JPanel {
     }
 
     /**
-     * Requests the current list of sensors and updates the provided panel to display them. Sensors
-     * will display in the order that they are created.
-     * @param p The Panel to populate with the current list of sensors
+     * Sets up sorting, filtering and the two button columns of the sensor table. Sensors
+     * sort by name and then type, the same order they had as a plain list.
      */
-    private void updateSensorList(JPanel p) {
-        p.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            p.add(sensorLabel, "width 300:300:300");
-            p.add(sensorToggleButton, "width 100:100:100");
-            p.add(sensorRemoveButton, "wrap");
+    private void configureSensorTable() {
+        sensorSorter.setSortKeys(List.of(
+                new RowSorter.SortKey(SensorTableModel.NAME_COLUMN, SortOrder.ASCENDING),
+                new RowSorter.SortKey(SensorTableModel.TYPE_COLUMN, SortOrder.ASCENDING)));
+        sensorSorter.setSortable(SensorTableModel.TOGGLE_COLUMN, false);
+        sensorSorter.setSortable(SensorTableModel.REMOVE_COLUMN, false);
+        sensorSorter.setSortsOnUpdates(true); //a sensor going active moves it when sorted by status
+        sensorTable.setRowSorter(sensorSorter);
+        sensorTable.setFillsViewportHeight(true);
+
+        TableCellRenderer buttonRenderer = new ButtonRenderer();
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setCellRenderer(buttonRenderer);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setCellRenderer(buttonRenderer);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.NAME_COLUMN).setPreferredWidth(160);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.TOGGLE_COLUMN).setPreferredWidth(100);
+        sensorTable.getColumnModel().getColumn(SensorTableModel.REMOVE_COLUMN).setPreferredWidth(120);
+
+        //the button columns are only painted, so handle their clicks on the table itself
+        sensorTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int viewRow = sensorTable.rowAtPoint(e.getPoint());
+                int viewColumn = sensorTable.columnAtPoint(e.getPoint());
+                if (viewRow < 0 || viewColumn < 0) {
+                    return;
+                }
+                Sensor s = sensorTableModel.getSensorAt(sensorTable.convertRowIndexToModel(viewRow));
+                if (sensorTableModel.isBusy(s)) {
+                    return;
+                }
+                switch (sensorTable.convertColumnIndexToModel(viewColumn)) {
+                    case SensorTableModel.TOGGLE_COLUMN -> setSensorActivity(s, !s.getActive());
+                    case SensorTableModel.REMOVE_COLUMN -> removeSensor(s);
+                }
+            }
         });
 
-        repaint();
-        revalidate();
-    }
-    public void updateSensorList() {
-        sensorListPanel.removeAll();
-        securityService.getSensors().stream().sorted().forEach(s -> {
-            JLabel sensorLabel = new JLabel(String.format("%s(%s): %s", s.getName(),  s.getSensorType().toString(),(s.getActive() ? "Active" : "Inactive")));
-            JButton sensorToggleButton = new JButton((s.getActive() ? "Deactivate" : "Activate"));
-            JButton sensorRemoveButton = new JButton("Remove Sensor");
-
-            sensorToggleButton.addActionListener(e -> setSensorActivity(s, !s.getActive()) );
-            sensorRemoveButton.addActionListener(e -> removeSensor(s));
-
-            //hard code some sizes, tsk tsk
-            sensorListPanel.add(sensorLabel, "width 300:300:300");
-            sensorListPanel.add(sensorToggleButton, "width 100:100:100");
-            sensorListPanel.add(sensorRemoveButton, "wrap");
+        filterField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyFilter();
+            }
         });
+    }
+
+    /**
+     * Shows only the sensors whose name or type contains the filter text, ignoring case.
+     */
+    private void applyFilter() {
+        String text = filterField.getText().trim();
+        sensorSorter.setRowFilter(text.isEmpty() ? null : RowFilter.regexFilter("(?i)" + Pattern.quote(text),
+                SensorTableModel.NAME_COLUMN, SensorTableModel.TYPE_COLUMN));
+    }
 
-        repaint();
-        revalidate();
+    /**
+     * Requests the current list of sensors and reloads the table with them. Use this after changes
+     * that may affect many sensors at once, such as arming the system.
+     */
+    public void updateSensorList() {
+        commandBus.submit(new SecurityCommand.GetSensors()).thenAccept(sensorTableModel::setSensors);
     }
+
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the securityService to change a sensor activation status and then refreshes that sensor's row.
+     * The row shows as busy until the change has been applied, and a change counts as a heartbeat, so
+     * an offline sensor comes back online.
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.setBusy(sensor, true);
+        commandBus.submit(new SecurityCommand.ChangeSensorActivation(sensor, isActive))
+                .thenRun(() -> sensorTableModel.setOffline(sensor, false))
+                .whenComplete((v, error) -> sensorTableModel.setBusy(sensor, false));
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor to the securityService and then adds its row to the table
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
-        if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+        if(sensorTableModel.getRowCount() < 4) {
+            commandBus.submit(new SecurityCommand.AddSensor(sensor), addNewSensorButton, "Adding...")
+                    .thenRun(() -> sensorTableModel.sensorAdded(sensor));
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor from the securityService and then remove its row from the table
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        sensorTableModel.setBusy(sensor, true);
+        commandBus.submit(new SecurityCommand.RemoveSensor(sensor))
+                .thenRun(() -> sensorTableModel.sensorRemoved(sensor))
+                .whenComplete((v, error) -> sensorTableModel.setBusy(sensor, false));
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        //no behavior necessary
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        //no behavior necessary
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        updateSensorList();
+    }
+
+    @Override
+    public void sensorOffline(Sensor sensor) {
+        sensorTableModel.setOffline(sensor, true);
+    }
+
+    /**
+     * Paints a cell as a button. A single button is shared by every cell it renders.
+     */
+    private static class ButtonRenderer extends JButton implements TableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            setText(String.valueOf(value));
+            return this;
+        }
     }
 }
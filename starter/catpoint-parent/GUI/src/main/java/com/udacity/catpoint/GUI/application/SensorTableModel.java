@@ -0,0 +1,154 @@
+package com.udacity.catpoint.GUI.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Table model holding the sensors shown in the {@link SensorPanel}. Rows are kept in insertion
+ * order and looked up by sensor id, so a change to one sensor only fires an update for its own
+ * row. Display order and filtering are left to the table's row sorter.
+ */
+public class SensorTableModel extends AbstractTableModel {
+
+    public static final int NAME_COLUMN = 0;
+    public static final int TYPE_COLUMN = 1;
+    public static final int STATUS_COLUMN = 2;
+    public static final int TOGGLE_COLUMN = 3;
+    public static final int REMOVE_COLUMN = 4;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Type", "Status", "", ""};
+
+    private final List<Sensor> rows = new ArrayList<>();
+    private final Map<UUID, Integer> rowIndex = new HashMap<>();
+    private final Set<UUID> busy = new HashSet<>();
+    private final Set<UUID> offline = new HashSet<>();
+
+    /**
+     * Replaces every row with the given sensors.
+     */
+    public void setSensors(Collection<Sensor> sensors) {
+        rows.clear();
+        rowIndex.clear();
+        for (Sensor sensor : sensors) {
+            rowIndex.put(sensor.getSensorId(), rows.size());
+            rows.add(sensor);
+        }
+        offline.retainAll(rowIndex.keySet());
+        fireTableDataChanged();
+    }
+
+    public void sensorAdded(Sensor sensor) {
+        if (rowIndex.containsKey(sensor.getSensorId())) {
+            sensorUpdated(sensor);
+            return;
+        }
+        int row = rows.size();
+        rowIndex.put(sensor.getSensorId(), row);
+        rows.add(sensor);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void sensorUpdated(Sensor sensor) {
+        Integer row = rowIndex.get(sensor.getSensorId());
+        if (row != null) {
+            rows.set(row, sensor);
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Removes a sensor's row. The rows after it move up one, keeping insertion order, and the table
+     * and its sorter are told only that this row was deleted.
+     */
+    public void sensorRemoved(Sensor sensor) {
+        Integer row = rowIndex.remove(sensor.getSensorId());
+        if (row == null) {
+            return;
+        }
+        offline.remove(sensor.getSensorId());
+        rows.remove((int) row);
+        for (int i = row; i < rows.size(); i++) {
+            rowIndex.put(rows.get(i).getSensorId(), i);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    /**
+     * Marks a sensor as having a command in progress, which replaces its buttons with a busy label.
+     */
+    public void setBusy(Sensor sensor, boolean isBusy) {
+        boolean changed = isBusy ? busy.add(sensor.getSensorId()) : busy.remove(sensor.getSensorId());
+        if (changed) {
+            sensorUpdated(sensor);
+        }
+    }
+
+    public boolean isBusy(Sensor sensor) {
+        return busy.contains(sensor.getSensorId());
+    }
+
+    /**
+     * Marks a sensor as having stopped sending heartbeats, which shows in its status column.
+     */
+    public void setOffline(Sensor sensor, boolean isOffline) {
+        boolean changed = isOffline ? offline.add(sensor.getSensorId()) : offline.remove(sensor.getSensorId());
+        if (changed) {
+            sensorUpdated(sensor);
+        }
+    }
+
+    public boolean isOffline(Sensor sensor) {
+        return offline.contains(sensor.getSensorId());
+    }
+
+    public Sensor getSensorAt(int row) {
+        return rows.get(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == TYPE_COLUMN ? SensorType.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Sensor sensor = rows.get(row);
+        if (column >= TOGGLE_COLUMN && busy.contains(sensor.getSensorId())) {
+            return "Working...";
+        }
+        return switch (column) {
+            case NAME_COLUMN -> sensor.getName();
+            case TYPE_COLUMN -> sensor.getSensorType();
+            case STATUS_COLUMN -> offline.contains(sensor.getSensorId()) ? "Offline"
+                    : sensor.getActive() ? "Active" : "Inactive";
+            case TOGGLE_COLUMN -> sensor.getActive() ? "Deactivate" : "Activate";
+            case REMOVE_COLUMN -> "Remove Sensor";
+            default -> throw new IndexOutOfBoundsException(column);
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package com.udacity.catpoint.GUI.application;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sits between the SecurityService and the panels so that bursts of status changes don't turn into
+ * bursts of repaints. Changes may arrive on any thread; only the latest value of each kind is kept,
+ * and they are handed to the panels on the EDT at most once per frame, through a single invokeLater.
+ * Offline reports are the exception: every sensor reported since the last flush is passed on.
+ */
+public class StatusUpdateCoalescer implements StatusListener {
+
+    public static final int DEFAULT_FRAMES_PER_SECOND = 60;
+
+    private final long frameNanos;
+    private final List<StatusListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<AlarmStatus> alarmStatus = new AtomicReference<>();
+    private final AtomicReference<Boolean> catDetected = new AtomicReference<>();
+    private final AtomicBoolean sensorsChanged = new AtomicBoolean();
+    private final Map<UUID, Sensor> offlineSensors = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile long lastFlushNanos = System.nanoTime();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ui-update-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StatusUpdateCoalescer(SecurityService securityService) {
+        this(securityService, DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    public StatusUpdateCoalescer(SecurityService securityService, int framesPerSecond) {
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        securityService.addStatusListener(this);
+    }
+
+    /**
+     * Registers a panel to receive the coalesced updates. Its methods are always called on the EDT.
+     */
+    public void addStatusListener(StatusListener statusListener) {
+        listeners.add(statusListener);
+    }
+
+    public void removeStatusListener(StatusListener statusListener) {
+        listeners.remove(statusListener);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        alarmStatus.set(status);
+        scheduleFlush();
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        this.catDetected.set(catDetected);
+        scheduleFlush();
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        sensorsChanged.set(true);
+        scheduleFlush();
+    }
+
+    @Override
+    public void sensorOffline(Sensor sensor) {
+        offlineSensors.put(sensor.getSensorId(), sensor);
+        scheduleFlush();
+    }
+
+    /**
+     * Schedules a flush unless one is already on its way, waiting until a full frame has passed
+     * since the last one.
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = lastFlushNanos + frameNanos - System.nanoTime();
+        if (delay <= 0) {
+            SwingUtilities.invokeLater(this::flush);
+        } else {
+            timer.schedule(() -> SwingUtilities.invokeLater(this::flush), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void flush() {
+        //clear the flag first, so a change that arrives while we read still gets its own flush
+        flushScheduled.set(false);
+        lastFlushNanos = System.nanoTime();
+
+        AlarmStatus status = alarmStatus.getAndSet(null);
+        Boolean cat = catDetected.getAndSet(null);
+        boolean sensors = sensorsChanged.getAndSet(false);
+        List<Sensor> offline = List.copyOf(offlineSensors.values());
+        offline.forEach(s -> offlineSensors.remove(s.getSensorId(), s));
+        for (StatusListener listener : listeners) {
+            if (status != null) {
+                listener.notify(status);
+            }
+            if (cat != null) {
+                listener.catDetected(cat);
+            }
+            if (sensors) {
+                listener.sensorStatusChanged();
+            }
+            offline.forEach(listener::sensorOffline);
+        }
+    }
+}
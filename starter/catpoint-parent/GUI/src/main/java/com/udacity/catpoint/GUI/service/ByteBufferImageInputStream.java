@@ -0,0 +1,46 @@
+package com.udacity.catpoint.GUI.service;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.nio.ByteBuffer;
+
+/**
+ * Lets ImageIO read straight from a buffer. The streams ImageIO makes for itself cache everything they
+ * read, in memory or a temporary file, so they can seek back; a buffer can seek on its own.
+ */
+class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer Read from its position to its limit; the position is left alone
+     */
+    ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read() {
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        bitOffset = 0;
+        return buffer.get((int) streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        bitOffset = 0;
+        int count = (int) Math.min(len, buffer.limit() - streamPos);
+        buffer.get((int) streamPos, b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+}
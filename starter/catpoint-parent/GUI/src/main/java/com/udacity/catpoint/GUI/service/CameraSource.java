@@ -0,0 +1,338 @@
+package com.udacity.catpoint.GUI.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Plays a recorded camera feed, a {@link FrameSequence}, into the system as a live camera would.
+ *
+ * Frames are decoded in parallel by a small pool of threads, a few frames ahead of the one being
+ * delivered, and handed to the sink one at a time, in order, at a steady rate. A frame that falls
+ * behind is delivered as soon as it is ready, and the frames after it are spaced from there rather
+ * than rushed to catch up. Frames that can't be decoded are skipped.
+ *
+ * Each decoding thread keeps its image readers, and frames are decoded straight into pixel buffers
+ * that are used again once the sink returns, so decoding doesn't allocate a new image per frame. The
+ * sink must therefore be done with a frame's pixels when it returns, which
+ * {@link SecurityService#processImage} is.
+ */
+public class CameraSource implements AutoCloseable {
+
+    private final FrameSequence frames;
+    private final Consumer<CameraImage> sink;
+    private final int decoders;
+    private final long intervalNanos;
+    private final boolean loop;
+
+    private final ExecutorService decodePool;
+    private final ThreadLocal<Map<String, ImageReader>> readers = ThreadLocal.withInitial(HashMap::new);
+    private final ConcurrentLinkedQueue<FrameBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final Thread feeder;
+    private final CompletableFuture<Stats> finished = new CompletableFuture<>();
+    private volatile boolean closed;
+
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile long startedAt;
+
+    /**
+     * Plays the feed into the service's {@link SecurityService#processImage} as the given camera.
+     */
+    public CameraSource(FrameSequence frames, SecurityService securityService, Camera camera, int decoders,
+                        double framesPerSecond, boolean loop) {
+        this(frames, image -> securityService.processImage(camera, image), decoders, framesPerSecond, loop);
+    }
+
+    /**
+     * @param sink Receives each frame on the source's own thread, and must be done with it when it returns
+     * @param decoders Threads that decode frames
+     * @param framesPerSecond Rate frames are delivered at, or 0 to deliver them as fast as they decode
+     * @param loop Whether to start again from the first frame after the last
+     */
+    public CameraSource(FrameSequence frames, Consumer<CameraImage> sink, int decoders, double framesPerSecond,
+                        boolean loop) {
+        if (decoders < 1 || framesPerSecond < 0) {
+            throw new IllegalArgumentException("Need at least one decoder and a rate of 0 or more");
+        }
+        this.frames = frames;
+        this.sink = sink;
+        this.decoders = decoders;
+        this.intervalNanos = framesPerSecond == 0 ? 0 : (long) (1e9 / framesPerSecond);
+        this.loop = loop;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.decodePool = Executors.newFixedThreadPool(decoders, r -> {
+            Thread thread = new Thread(r, "camera-decode-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.feeder = new Thread(this::feed, "camera-source");
+        feeder.setDaemon(true);
+    }
+
+    /**
+     * Decodes the frames of a file or folder as fast as they will go, without scanning them, and prints
+     * how many frames a second were decoded.
+     * Usage: {@code CameraSource <folder or MJPEG file> [decoders]}.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: CameraSource <folder or MJPEG file> [decoders]");
+            System.exit(2);
+        }
+        FrameSequence frames = FrameSequence.open(Path.of(args[0]));
+        int decoders = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try (CameraSource source = new CameraSource(frames, image -> { }, decoders, 0, false)) {
+            System.out.println(source.start().join());
+        }
+    }
+
+    /**
+     * Starts delivering frames.
+     * @return Completes once the last frame has been delivered, or the source is closed
+     */
+    public CompletableFuture<Stats> start() {
+        startedAt = System.nanoTime();
+        feeder.start();
+        return finished;
+    }
+
+    public Stats getStats() {
+        return new Stats(decoded.sum(), skipped.sum(), delivered.sum(), failed.sum(),
+                startedAt == 0 ? 0 : System.nanoTime() - startedAt, decodeNanos.sum(), decoders);
+    }
+
+    /**
+     * Delivers the frames in order, keeping the decoders busy on the ones after.
+     */
+    private void feed() {
+        int ahead = decoders * 2;
+        ArrayDeque<CompletableFuture<FrameBuffer>> decoding = new ArrayDeque<>(ahead);
+        int next = 0;
+        int skippedInARow = 0;
+        long due = System.nanoTime();
+        try {
+            while (!closed) {
+                while (decoding.size() < ahead && (loop || next < frames.size()) && frames.size() > 0) {
+                    ByteBuffer frame = frames.frame(next);
+                    next = loop && next + 1 == frames.size() ? 0 : next + 1;
+                    decoding.add(CompletableFuture.supplyAsync(() -> decode(frame), decodePool));
+                }
+                CompletableFuture<FrameBuffer> oldest = decoding.poll();
+                if (oldest == null) {
+                    break;
+                }
+                FrameBuffer buffer = oldest.join();
+                if (buffer == null) {
+                    if (++skippedInARow >= frames.size()) {
+                        break; //not one frame can be decoded; looping would only spin
+                    }
+                    continue;
+                }
+                skippedInARow = 0;
+                long now;
+                while (intervalNanos > 0 && (now = System.nanoTime()) < due && !closed) {
+                    LockSupport.parkNanos(due - now);
+                }
+                if (closed) {
+                    buffers.offer(buffer);
+                    break;
+                }
+                due = Math.max(due, System.nanoTime()) + intervalNanos;
+                deliver(buffer);
+            }
+        } finally {
+            decoding.forEach(f -> f.cancel(false));
+            finished.complete(getStats());
+        }
+    }
+
+    private void deliver(FrameBuffer buffer) {
+        try {
+            sink.accept(CameraImage.ofPixels(buffer.width, buffer.height, buffer.pixels));
+            delivered.increment();
+        } catch (RuntimeException e) {
+            failed.increment(); //a failed scan doesn't stop the camera
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Runs on a decoding thread.
+     * @return The decoded frame, or null if it can't be decoded
+     */
+    private FrameBuffer decode(ByteBuffer frame) {
+        long start = System.nanoTime();
+        ImageReader reader = readerFor(frame);
+        if (reader == null) {
+            skipped.increment();
+            return null;
+        }
+        try (ByteBufferImageInputStream in = new ByteBufferImageInputStream(frame)) {
+            reader.setInput(in, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            FrameBuffer buffer = takeBuffer(width, height);
+            if (decodesToIntRgb(reader)) {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(buffer.image);
+                reader.read(0, param);
+            } else { //such as grayscale or paletted pictures: decode as they are, then convert
+                reader.read(0).getRGB(0, 0, width, height, buffer.pixels, 0, width);
+            }
+            decoded.increment();
+            decodeNanos.add(System.nanoTime() - start);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            skipped.increment();
+            return null;
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    /**
+     * @return A reader for the frame's format kept by this thread, or null if the format is unknown
+     */
+    private ImageReader readerFor(ByteBuffer frame) {
+        String format = formatOf(frame);
+        if (format == null) {
+            return null;
+        }
+        return readers.get().computeIfAbsent(format, f -> {
+            Iterator<ImageReader> found = ImageIO.getImageReadersByFormatName(f);
+            return found.hasNext() ? found.next() : null;
+        });
+    }
+
+    private static String formatOf(ByteBuffer frame) {
+        int p = frame.position();
+        if (frame.remaining() < 4) {
+            return null;
+        }
+        int b0 = frame.get(p) & 0xFF;
+        int b1 = frame.get(p + 1) & 0xFF;
+        if (b0 == 0xFF && b1 == 0xD8) {
+            return "jpeg";
+        } else if (b0 == 0x89 && b1 == 'P' && frame.get(p + 2) == 'N' && frame.get(p + 3) == 'G') {
+            return "png";
+        } else if (b0 == 'G' && b1 == 'I' && frame.get(p + 2) == 'F') {
+            return "gif";
+        } else if (b0 == 'B' && b1 == 'M') {
+            return "bmp";
+        }
+        return null;
+    }
+
+    private static boolean decodesToIntRgb(ImageReader reader) throws IOException {
+        for (Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0); types.hasNext(); ) {
+            if (types.next().getBufferedImageType() == BufferedImage.TYPE_INT_RGB) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return A pixel buffer handed back by an earlier frame of the same size, or a new one
+     */
+    private FrameBuffer takeBuffer(int width, int height) {
+        FrameBuffer buffer = buffers.poll();
+        if (buffer != null && buffer.width == width && buffer.height == height) {
+            return buffer;
+        }
+        return new FrameBuffer(width, height); //the feed changed size; the old buffer is dropped
+    }
+
+    /**
+     * Stops delivering frames. A frame being delivered is finished first.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(feeder);
+        if (feeder.isAlive() && Thread.currentThread() != feeder) {
+            try {
+                feeder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        decodePool.shutdownNow();
+        finished.complete(getStats());
+    }
+
+    /**
+     * Pixels a frame is decoded into, and an image over them for ImageIO to decode into.
+     */
+    private static class FrameBuffer {
+        final int width;
+        final int height;
+        final int[] pixels;
+        final BufferedImage image;
+
+        FrameBuffer(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    /**
+     * @param elapsedNanos Time since the source started
+     * @param decodeNanos Time spent decoding, summed over the decoding threads
+     */
+    public record Stats(long decoded, long skipped, long delivered, long failed, long elapsedNanos,
+                        long decodeNanos, int decoders) {
+
+        /**
+         * @return Frames delivered per second since the source started
+         */
+        public double framesPerSecond() {
+            return elapsedNanos == 0 ? 0 : delivered * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return Frames per second the decoding threads can decode between them, going by how long
+         *         each frame took
+         */
+        public double decodeFramesPerSecond() {
+            return decodeNanos == 0 ? 0 : decoded * 1e9 * decoders / decodeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("decoded %d frames (%d skipped) on %d threads at %.1f frames/s, "
+                            + "delivered %d (%d failed) in %.1f s at %.1f frames/s",
+                    decoded, skipped, decoders, decodeFramesPerSecond(), delivered, failed, elapsedNanos / 1e9,
+                    framesPerSecond());
+        }
+    }
+}
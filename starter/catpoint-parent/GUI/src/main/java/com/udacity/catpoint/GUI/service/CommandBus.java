@@ -0,0 +1,121 @@
+package com.udacity.catpoint.GUI.service;
+
+import com.udacity.catpoint.security.service.SecurityService;
+
+import javax.swing.*;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs {@link SecurityCommand}s against the SecurityService on a background thread, so the EDT never
+ * waits on repository writes or image analysis. Commands run one at a time in the order they were
+ * submitted, which also keeps the SecurityService on a single thread.
+ *
+ * The returned futures are completed on the EDT, so callbacks attached to them may touch Swing components.
+ *
+ * Failures are also shown in a dialog, but at most one at a time for each kind of command and no more
+ * than once every {@link #ERROR_DIALOG_INTERVAL} after the last one was closed. Failures in between are
+ * counted and mentioned in the next dialog, so a camera stream failing every frame doesn't bury the
+ * window in dialogs.
+ */
+public class CommandBus {
+
+    public static final Duration ERROR_DIALOG_INTERVAL = Duration.ofSeconds(10);
+
+    private final SecurityService securityService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "security-commands");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Class<?>, FailureReport> failureReports = new HashMap<>(); //only touched on the EDT
+
+    private final Consumer<String> errorDialog;
+
+    public CommandBus(SecurityService securityService) {
+        this(securityService, message -> JOptionPane.showMessageDialog(null, message));
+    }
+
+    /**
+     * @param errorDialog Shows a failure to the user, and returns once the user has closed it
+     */
+    CommandBus(SecurityService securityService, Consumer<String> errorDialog) {
+        this.securityService = securityService;
+        this.errorDialog = errorDialog;
+    }
+
+    /**
+     * Queues a command. Failures are reported with a dialog as well as through the future.
+     * @return A future completed on the EDT with the command's result
+     */
+    public <T> CompletableFuture<T> submit(SecurityCommand<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                T value = command.execute(securityService);
+                SwingUtilities.invokeLater(() -> result.complete(value));
+            } catch (Throwable e) { //an Error fails the command too, rather than leaving its future hanging
+                SwingUtilities.invokeLater(() -> result.completeExceptionally(e));
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (error != null) {
+                reportFailure(command, error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs on the EDT. Shows the failure unless a dialog for the same kind of command is open or was
+     * closed too recently, in which case it is only counted.
+     */
+    private void reportFailure(SecurityCommand<?> command, Throwable cause) {
+        FailureReport report = failureReports.computeIfAbsent(command.getClass(), c -> new FailureReport());
+        if (report.showing || (report.closedAt != null
+                && System.nanoTime() - report.closedAt < ERROR_DIALOG_INTERVAL.toNanos())) {
+            report.unshown++;
+            return;
+        }
+        String message = "Unable to complete " + command + ": " + cause.getMessage();
+        if (report.unshown > 0) {
+            message += "\n(" + report.unshown + " more failed since the last message)";
+        }
+        report.unshown = 0;
+        report.showing = true;
+        try {
+            errorDialog.accept(message); //modal, so later failures arrive while it is open
+        } finally {
+            report.showing = false;
+            report.closedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Queues a command on behalf of a button. The button is disabled and shows the busy text until the
+     * command finishes.
+     * @param button The button that triggered the command
+     * @param busyText Text to show on the button while the command runs
+     */
+    public <T> CompletableFuture<T> submit(SecurityCommand<T> command, JButton button, String busyText) {
+        String text = button.getText();
+        button.setEnabled(false);
+        button.setText(busyText);
+        return submit(command).whenComplete((value, error) -> {
+            button.setText(text);
+            button.setEnabled(true);
+        });
+    }
+
+    private static class FailureReport {
+        boolean showing;
+        Long closedAt; //nanoTime, or null if never shown
+        int unshown;
+    }
+}
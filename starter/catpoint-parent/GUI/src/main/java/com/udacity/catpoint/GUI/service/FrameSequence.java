@@ -0,0 +1,176 @@
+package com.udacity.catpoint.GUI.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The encoded frames of a recorded camera feed, read straight from memory-mapped files. Each frame is a
+ * slice of a mapping, so no frame's bytes are copied to be split out, and the operating system pages
+ * them in as they are decoded.
+ *
+ * A feed is either a folder of pictures, played in name order, or a Motion JPEG file: JPEG frames back
+ * to back, possibly with multipart boundaries and headers between them, as saved from a camera's
+ * {@code multipart/x-mixed-replace} stream. Frames in a file are found by walking each JPEG's markers,
+ * so whatever lies between frames is skipped, and a JPEG thumbnail embedded in a frame isn't taken for
+ * a frame of its own. A file with no JPEG frames in it is taken to be a single picture.
+ */
+public class FrameSequence {
+
+    private final List<ByteBuffer> frames;
+
+    private FrameSequence(List<ByteBuffer> frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * Maps a folder of pictures or a Motion JPEG file.
+     * @throws UncheckedIOException If the files can't be read
+     * @throws IllegalArgumentException If a file is too large to map in one piece, 2GB or more
+     */
+    public static FrameSequence open(Path path) {
+        try {
+            if (Files.isDirectory(path)) {
+                List<ByteBuffer> frames = new ArrayList<>();
+                for (Path picture : listPictures(path)) {
+                    ByteBuffer mapped = map(picture);
+                    if (mapped.hasRemaining()) {
+                        frames.add(mapped);
+                    }
+                }
+                return new FrameSequence(frames);
+            }
+            ByteBuffer mapped = map(path);
+            List<ByteBuffer> frames = splitJpegs(mapped);
+            if (frames.isEmpty() && mapped.hasRemaining()) {
+                frames.add(mapped);
+            }
+            return new FrameSequence(frames);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read camera feed " + path, ioe);
+        }
+    }
+
+    public int size() {
+        return frames.size();
+    }
+
+    /**
+     * @return The frame's encoded bytes, a view of the mapped file with a position of its own
+     */
+    public ByteBuffer frame(int index) {
+        return frames.get(index).duplicate();
+    }
+
+    /**
+     * @return The pictures in a folder, in the order they are played: files named as JPEG, PNG, GIF or
+     *         BMP, sorted by name
+     */
+    public static List<Path> listPictures(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(f -> f.getFileName().toString().toLowerCase().matches(".*\\.(jpe?g|png|gif|bmp)"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(file + " is too large to map");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); //stays valid after closing
+        }
+    }
+
+    /**
+     * @return Each complete JPEG in the buffer, as slices of it. A frame cut short at the end is dropped.
+     */
+    static List<ByteBuffer> splitJpegs(ByteBuffer buffer) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        int limit = buffer.limit();
+        int position = 0;
+        while (true) {
+            int start = findStartOfImage(buffer, position, limit);
+            if (start < 0) {
+                return frames;
+            }
+            int end = findEndOfImage(buffer, start, limit);
+            if (end < 0) {
+                position = start + 2; //not a JPEG after all, or cut short; look for the next one
+            } else {
+                frames.add(buffer.slice(start, end - start));
+                position = end;
+            }
+        }
+    }
+
+    /**
+     * @return Index of the next SOI marker followed by another marker, or -1
+     */
+    private static int findStartOfImage(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i + 2 < limit; i++) {
+            if (buffer.get(i) == (byte) 0xFF && buffer.get(i + 1) == (byte) 0xD8 && buffer.get(i + 2) == (byte) 0xFF) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Walks the markers of the JPEG starting at {@code start}, skipping each segment by its length and
+     * scanning only entropy-coded data byte by byte.
+     * @return Index just past the JPEG's EOI marker, or -1 if it isn't a well-formed, complete JPEG
+     */
+    private static int findEndOfImage(ByteBuffer buffer, int start, int limit) {
+        int p = start + 2;
+        while (p + 1 < limit) {
+            if (buffer.get(p) != (byte) 0xFF) {
+                return -1;
+            }
+            int marker = buffer.get(p + 1) & 0xFF;
+            if (marker == 0xFF) { //fill byte
+                p++;
+                continue;
+            }
+            p += 2;
+            if (marker == 0xD9) { //EOI
+                return p;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) { //markers without a segment
+                continue;
+            }
+            if (p + 1 >= limit) {
+                return -1;
+            }
+            int length = ((buffer.get(p) & 0xFF) << 8) | (buffer.get(p + 1) & 0xFF);
+            if (length < 2) {
+                return -1;
+            }
+            p += length;
+            if (marker == 0xDA) { //SOS: entropy-coded data runs until the next marker that isn't stuffing or a restart
+                while (p + 1 < limit) {
+                    if (buffer.get(p) == (byte) 0xFF) {
+                        int next = buffer.get(p + 1) & 0xFF;
+                        if (next != 0x00 && (next < 0xD0 || next > 0xD7)) {
+                            break;
+                        }
+                        p += 2;
+                    } else {
+                        p++;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,73 @@
+package com.udacity.catpoint.GUI.service;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fast image downscaling for the camera view. Unlike {@code Image.getScaledInstance}, which is very
+ * slow for large photos, these methods draw into an existing image so the destination can be reused.
+ */
+public class ImageScaler {
+
+    //the images each thread halves into, largest first, kept while the source size stays the same
+    private static final ThreadLocal<List<BufferedImage>> halves = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * Creates an image in the screen's native pixel format, which is the fastest kind to paint.
+     */
+    public static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height);
+    }
+
+    /**
+     * Quick, low quality scale in a single nearest-neighbor pass. Good enough for a preview.
+     */
+    public static void drawPreview(BufferedImage source, BufferedImage destination) {
+        draw(source, destination, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    }
+
+    /**
+     * Good quality scale that halves the image with bilinear filtering until it is within a factor
+     * of two of the destination, then draws the last step into the destination. Each halving step
+     * only blends neighboring pixels, which avoids the aliasing of a single large bilinear step.
+     * The halved images are kept by the calling thread and reused for the next source of the same size.
+     */
+    public static void drawScaled(BufferedImage source, BufferedImage destination) {
+        List<BufferedImage> steps = halves.get();
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int step = 0;
+        while (width / 2 >= destination.getWidth() && height / 2 >= destination.getHeight()) {
+            width /= 2;
+            height /= 2;
+            BufferedImage half = step < steps.size() ? steps.get(step) : null;
+            if (half == null || half.getWidth() != width || half.getHeight() != height) {
+                half = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                if (step < steps.size()) {
+                    steps.set(step, half);
+                } else {
+                    steps.add(half);
+                }
+            }
+            draw(current, half, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            current = half;
+            step++;
+        }
+        draw(current, destination, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    private static void draw(BufferedImage source, BufferedImage destination, Object interpolation) {
+        Graphics2D g = destination.createGraphics();
+        g.setComposite(AlphaComposite.Src); //replace what the reused image held, even where the source is see-through
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.drawImage(source, 0, 0, destination.getWidth(), destination.getHeight(), null);
+        g.dispose();
+    }
+}
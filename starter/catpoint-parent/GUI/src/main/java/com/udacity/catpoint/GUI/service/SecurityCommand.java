@@ -0,0 +1,92 @@
+package com.udacity.catpoint.GUI.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An action the GUI wants the SecurityService to perform. Commands are immutable so they can be
+ * handed to the {@link CommandBus} thread safely.
+ * @param <T> The type of the command's result
+ */
+public interface SecurityCommand<T> {
+
+    T execute(SecurityService securityService);
+
+    record SetArmingStatus(ArmingStatus armingStatus) implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            securityService.setArmingStatus(armingStatus);
+            return null;
+        }
+    }
+
+    record ChangeSensorActivation(Sensor sensor, boolean active) implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            securityService.changeSensorActivationStatus(sensor, active);
+            return null;
+        }
+    }
+
+    record AddSensor(Sensor sensor) implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            securityService.addSensor(sensor);
+            return null;
+        }
+    }
+
+    record RemoveSensor(Sensor sensor) implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            securityService.removeSensor(sensor);
+            return null;
+        }
+    }
+
+    /**
+     * Scans a frame as coming from the given camera, whose latest answer is kept apart from other cameras'.
+     */
+    record ProcessImage(Camera camera, CameraImage image) implements SecurityCommand<Void> {
+
+        /**
+         * Scans a frame as coming from {@link Camera#DEFAULT}, as a picture loaded by hand does.
+         */
+        public ProcessImage(CameraImage image) {
+            this(Camera.DEFAULT, image);
+        }
+
+        @Override
+        public Void execute(SecurityService securityService) {
+            securityService.processImage(camera, image);
+            return null;
+        }
+    }
+
+    /**
+     * Forgets a camera that has stopped, and whatever it last saw.
+     */
+    record RemoveCamera(Camera camera) implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            securityService.removeCamera(camera);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the current sensors. The result is a copy, so the EDT never iterates the repository's own set.
+     */
+    record GetSensors() implements SecurityCommand<List<Sensor>> {
+        @Override
+        public List<Sensor> execute(SecurityService securityService) {
+            return new ArrayList<>(securityService.getSensors());
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.udacity.catpoint.GUI.service;
 
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
 import java.awt.*;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Simple "service" for providing style information.
@@ -9,4 +14,27 @@ public class StyleService {
 
     public final static Font HEADING_FONT = new Font("Sans Serif", Font.BOLD, 24);
 
+    private static final Map<AlarmStatus, Color> ALARM_COLORS = new EnumMap<>(Map.of(
+            AlarmStatus.NO_ALARM, new Color(120,200,30),
+            AlarmStatus.PENDING_ALARM, new Color(200,150,20),
+            AlarmStatus.ALARM, new Color(250,80,50)));
+
+    private static final Map<ArmingStatus, Color> ARMING_COLORS = new EnumMap<>(Map.of(
+            ArmingStatus.DISARMED, new Color(120,200,30),
+            ArmingStatus.ARMED_HOME, new Color(190,180,50),
+            ArmingStatus.ARMED_AWAY, new Color(170,30,150)));
+
+    /**
+     * @return The color used to display the given alarm status
+     */
+    public static Color getColor(AlarmStatus status) {
+        return ALARM_COLORS.get(status);
+    }
+
+    /**
+     * @return The color used to display the given arming status
+     */
+    public static Color getColor(ArmingStatus status) {
+        return ARMING_COLORS.get(status);
+    }
 }
@@ -0,0 +1,65 @@
+package com.udacity.catpoint.GUI.application;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTable;
+import javax.swing.table.TableRowSorter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorTableModelTest {
+
+    private final SensorTableModel model = new SensorTableModel();
+    private final TableRowSorter<SensorTableModel> sorter = new TableRowSorter<>(model);
+
+    public SensorTableModelTest() {
+        new JTable(model).setRowSorter(sorter); //the table passes the model's events on to the sorter
+    }
+
+    private List<String> namesInViewOrder() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < sorter.getViewRowCount(); i++) {
+            names.add(model.getSensorAt(sorter.convertRowIndexToModel(i)).getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void sensorRemoved_sortedTable_keepsSortOrder() {
+        sorter.toggleSortOrder(SensorTableModel.NAME_COLUMN);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 20; i > 0; i--) {
+            sensors.add(new Sensor(String.format("Sensor %02d", i), SensorType.DOOR));
+        }
+        sensors.forEach(model::sensorAdded);
+
+        model.sensorRemoved(sensors.get(0)); //"Sensor 20", first row of the model and last of the view
+        model.sensorRemoved(sensors.get(19)); //"Sensor 01", the other way round
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 2; i < 20; i++) {
+            expected.add(String.format("Sensor %02d", i));
+        }
+        assertEquals(expected, namesInViewOrder());
+    }
+
+    @Test
+    public void sensorRemoved_laterRowsStillFoundById() {
+        Sensor first = new Sensor("First", SensorType.DOOR);
+        Sensor second = new Sensor("Second", SensorType.DOOR);
+        Sensor third = new Sensor("Third", SensorType.DOOR);
+        List.of(first, second, third).forEach(model::sensorAdded);
+
+        model.sensorRemoved(first);
+        third.setActive(true);
+        model.sensorUpdated(third);
+
+        assertEquals(2, model.getRowCount());
+        assertSame(second, model.getSensorAt(0));
+        assertEquals("Active", model.getValueAt(1, SensorTableModel.STATUS_COLUMN));
+    }
+}
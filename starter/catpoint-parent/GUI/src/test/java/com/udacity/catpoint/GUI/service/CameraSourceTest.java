@@ -0,0 +1,81 @@
+package com.udacity.catpoint.GUI.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraSourceTest {
+
+    private static final Color[] COLORS = {Color.RED, Color.GREEN, Color.BLUE};
+
+    private static FrameSequence mjpeg(Path folder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Color color : COLORS) {
+            out.writeBytes(FrameSequenceTest.jpeg(32, 24, color));
+        }
+        Path file = folder.resolve("feed.mjpeg");
+        Files.write(file, out.toByteArray());
+        return FrameSequence.open(file);
+    }
+
+    /**
+     * @return Index into {@link #COLORS} of the frame's strongest channel
+     */
+    private static int colorOf(CameraImage image) {
+        int rgb = image.getPixels()[image.getPixels().length / 2];
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        return red > green && red > blue ? 0 : green > blue ? 1 : 2;
+    }
+
+    @Test
+    public void looping_reusesAFewPixelBuffersAndDeliversFramesInOrder(@TempDir Path folder) throws Exception {
+        int decoders = 2;
+        Set<int[]> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Integer> colors = new ArrayList<>();
+        CountDownLatch enough = new CountDownLatch(300);
+
+        try (CameraSource source = new CameraSource(mjpeg(folder), image -> {
+            buffers.add(image.getPixels());
+            colors.add(colorOf(image));
+            enough.countDown();
+        }, decoders, 0, true)) {
+            source.start();
+            assertTrue(enough.await(30, TimeUnit.SECONDS));
+        }
+
+        //closing waits for the frame being delivered, so the sink's collections are settled
+        assertTrue(buffers.size() <= decoders * 2 + 1,
+                buffers.size() + " pixel buffers for " + colors.size() + " frames");
+        for (int i = 0; i < colors.size(); i++) {
+            assertEquals(i % COLORS.length, colors.get(i), "frame " + i);
+        }
+    }
+
+    @Test
+    public void notLooping_finishesAfterTheLastFrame(@TempDir Path folder) throws Exception {
+        List<Integer> colors = new ArrayList<>();
+        try (CameraSource source = new CameraSource(mjpeg(folder), image -> colors.add(colorOf(image)), 2, 0, false)) {
+            CameraSource.Stats stats = source.start().get(30, TimeUnit.SECONDS);
+            assertEquals(COLORS.length, stats.delivered());
+            assertEquals(0, stats.skipped());
+        }
+        assertEquals(List.of(0, 1, 2), colors);
+    }
+}
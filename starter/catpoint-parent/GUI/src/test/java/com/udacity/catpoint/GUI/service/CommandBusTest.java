@@ -0,0 +1,69 @@
+package com.udacity.catpoint.GUI.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandBusTest {
+
+    private final List<String> dialogs = new ArrayList<>(); //only touched on the EDT
+    private final CommandBus commandBus = new CommandBus(
+            new SecurityService(new InMemorySecurityRepositoryImpl(), new FakeImageService()), dialogs::add);
+
+    private record Failing(Throwable error) implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            if (error instanceof Error e) {
+                throw e;
+            }
+            throw (RuntimeException) error;
+        }
+    }
+
+    private record AlsoFailing() implements SecurityCommand<Void> {
+        @Override
+        public Void execute(SecurityService securityService) {
+            throw new IllegalStateException("also broken");
+        }
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        return e.getCause();
+    }
+
+    private List<String> dialogsShown() throws Exception {
+        List<String> shown = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> shown.addAll(dialogs));
+        return shown;
+    }
+
+    @Test
+    public void submit_commandThrowsError_failsFutureAndKeepsRunning() throws Exception {
+        assertTrue(failureOf(commandBus.submit(new Failing(new AssertionError("broken")))) instanceof AssertionError);
+        assertTrue(failureOf(commandBus.submit(new AlsoFailing())) instanceof IllegalStateException);
+        assertEquals(2, dialogsShown().size());
+    }
+
+    @Test
+    public void submit_repeatedFailures_showOneDialogPerKindOfCommand() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            failureOf(commandBus.submit(new Failing(new IllegalStateException("broken " + i))));
+        }
+        failureOf(commandBus.submit(new AlsoFailing()));
+
+        List<String> shown = dialogsShown();
+        assertEquals(2, shown.size(), shown.toString());
+        assertTrue(shown.get(0).contains("broken 0"), shown.get(0));
+        assertTrue(shown.get(1).contains("also broken"), shown.get(1));
+    }
+}
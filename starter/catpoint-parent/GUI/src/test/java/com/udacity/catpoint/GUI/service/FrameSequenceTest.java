@@ -0,0 +1,121 @@
+package com.udacity.catpoint.GUI.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameSequenceTest {
+
+    static byte[] jpeg(int width, int height, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, "jpeg", out));
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] multipartHeader(byte[] frame) {
+        return ("--frame\r\nContent-Type: image/jpeg\r\nContent-Length: " + frame.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] bytes(ByteBuffer frame) {
+        byte[] bytes = new byte[frame.remaining()];
+        frame.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void splitJpegs_multipartStream_findsEachFrameBetweenTheHeaders() throws IOException {
+        byte[] red = jpeg(16, 8, Color.RED);
+        byte[] blue = jpeg(8, 16, Color.BLUE);
+        byte[] stream = concat(multipartHeader(red), red, "\r\n".getBytes(StandardCharsets.US_ASCII),
+                multipartHeader(blue), blue, "\r\n--frame--\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        List<ByteBuffer> frames = FrameSequence.splitJpegs(ByteBuffer.wrap(stream));
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(red, bytes(frames.get(0)));
+        assertArrayEquals(blue, bytes(frames.get(1)));
+    }
+
+    @Test
+    public void splitJpegs_thumbnailInsideExifSegment_staysPartOfItsFrame() throws IOException {
+        byte[] thumbnail = jpeg(4, 4, Color.GREEN);
+        byte[] exif = concat("Exif\0\0".getBytes(StandardCharsets.US_ASCII), thumbnail);
+        int length = exif.length + 2;
+        byte[] app1 = concat(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length}, exif);
+        byte[] picture = jpeg(16, 16, Color.RED);
+        //SOI, then the APP1 segment, then the rest of the picture
+        byte[] withThumbnail = concat(Arrays.copyOf(picture, 2), app1, Arrays.copyOfRange(picture, 2, picture.length));
+
+        List<ByteBuffer> frames = FrameSequence.splitJpegs(ByteBuffer.wrap(concat(withThumbnail, withThumbnail)));
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(withThumbnail, bytes(frames.get(0)));
+        assertArrayEquals(withThumbnail, bytes(frames.get(1)));
+    }
+
+    @Test
+    public void splitJpegs_lastFrameCutShort_isDropped() throws IOException {
+        byte[] whole = jpeg(16, 16, Color.RED);
+        byte[] cut = Arrays.copyOf(jpeg(16, 16, Color.BLUE), whole.length / 2);
+
+        List<ByteBuffer> frames = FrameSequence.splitJpegs(ByteBuffer.wrap(concat(whole, cut)));
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(whole, bytes(frames.get(0)));
+    }
+
+    @Test
+    public void splitJpegs_fillBytesBeforeAMarker_areSkipped() throws IOException {
+        byte[] picture = jpeg(16, 16, Color.RED);
+        byte[] filled = concat(Arrays.copyOf(picture, 2), new byte[]{(byte) 0xFF, (byte) 0xFF},
+                Arrays.copyOfRange(picture, 2, picture.length));
+
+        List<ByteBuffer> frames = FrameSequence.splitJpegs(ByteBuffer.wrap(concat(filled, picture)));
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(filled, bytes(frames.get(0)));
+        assertArrayEquals(picture, bytes(frames.get(1)));
+    }
+
+    @Test
+    public void open_folder_playsPicturesInNameOrder(@TempDir Path folder) throws IOException {
+        byte[] first = jpeg(8, 8, Color.RED);
+        byte[] second = jpeg(8, 8, Color.BLUE);
+        Files.write(folder.resolve("b.jpg"), second);
+        Files.write(folder.resolve("a.JPEG"), first);
+        Files.writeString(folder.resolve("notes.txt"), "not a picture");
+
+        assertEquals(List.of(folder.resolve("a.JPEG"), folder.resolve("b.jpg")), FrameSequence.listPictures(folder));
+        FrameSequence frames = FrameSequence.open(folder);
+        assertEquals(2, frames.size());
+        assertArrayEquals(first, bytes(frames.frame(0)));
+        assertArrayEquals(second, bytes(frames.frame(1)));
+    }
+}
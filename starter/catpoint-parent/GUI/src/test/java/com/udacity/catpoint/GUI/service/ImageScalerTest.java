@@ -0,0 +1,42 @@
+package com.udacity.catpoint.GUI.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageScalerTest {
+
+    private static BufferedImage filled(int width, int height, Color color, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    public void drawScaled_sameSizeAgain_replacesEarlierFrame() {
+        BufferedImage destination = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        ImageScaler.drawScaled(filled(640, 480, Color.RED, BufferedImage.TYPE_INT_RGB), destination);
+        assertEquals(Color.RED.getRGB(), destination.getRGB(20, 15));
+
+        //a see-through frame must not show the earlier frame left in the reused halving images
+        ImageScaler.drawScaled(filled(640, 480, new Color(0, 0, 255, 0), BufferedImage.TYPE_INT_ARGB), destination);
+        assertEquals(0xFF000000, destination.getRGB(20, 15));
+    }
+
+    @Test
+    public void drawScaled_differentSizes_scaleEachCorrectly() {
+        BufferedImage destination = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        ImageScaler.drawScaled(filled(640, 480, Color.GREEN, BufferedImage.TYPE_INT_RGB), destination);
+        ImageScaler.drawScaled(filled(1000, 100, Color.BLUE, BufferedImage.TYPE_INT_RGB), destination);
+        assertEquals(Color.BLUE.getRGB(), destination.getRGB(39, 29));
+        ImageScaler.drawScaled(filled(640, 480, Color.GREEN, BufferedImage.TYPE_INT_RGB), destination);
+        assertEquals(Color.GREEN.getRGB(), destination.getRGB(0, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.udacity.catpoint.image.data;
+
+import java.util.Objects;
+
+/**
+ * A single camera frame, independent of any UI toolkit. A frame is either encoded (the bytes of a
+ * JPEG or PNG file, exactly as the camera or file produced them) or raw pixels packed as ARGB ints,
+ * one int per pixel in row-major order.
+ */
+public final class CameraImage {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final byte[] encoded;
+
+    private CameraImage(int width, int height, int[] pixels, byte[] encoded) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.encoded = encoded;
+    }
+
+    /**
+     * Wraps raw ARGB pixels. The array is used as-is, not copied.
+     * @param width Width in pixels
+     * @param height Height in pixels
+     * @param argb Pixels in row-major order, {@code width * height} long
+     */
+    public static CameraImage ofPixels(int width, int height, int[] argb) {
+        Objects.requireNonNull(argb);
+        if (width <= 0 || height <= 0 || argb.length < width * height) {
+            throw new IllegalArgumentException("Expected " + width + "x" + height + " pixels, got " + argb.length);
+        }
+        return new CameraImage(width, height, argb, null);
+    }
+
+    /**
+     * Wraps an encoded image such as the contents of a JPEG or PNG file. The array is used as-is, not copied.
+     * @param bytes The encoded image
+     */
+    public static CameraImage ofEncoded(byte[] bytes) {
+        return new CameraImage(0, 0, null, Objects.requireNonNull(bytes));
+    }
+
+    public boolean hasPixels() {
+        return pixels != null;
+    }
+
+    public boolean hasEncoded() {
+        return encoded != null;
+    }
+
+    /**
+     * @return Width in pixels, or 0 for an encoded image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height in pixels, or 0 for an encoded image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public byte[] getEncoded() {
+        return encoded;
+    }
+}
@@ -0,0 +1,265 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClient;
+import software.amazon.awssdk.services.rekognition.RekognitionAsyncClientBuilder;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Image Recognition Service like {@link AwsImageService}, but built on Rekognition's asynchronous
+ * client, so one caller can have many classifications in progress at once instead of one per round
+ * trip. Frames can be handed over a batch at a time, and each frame's future completes as soon as its
+ * own result arrives, whatever the order.
+ *
+ * At most {@code maxInFlight} requests are sent at once; further frames wait in order until one
+ * finishes. The client's connection pool is sized to match, so every request in flight has a
+ * connection of its own and none waits for one, and idle connections are kept for a minute so bursts
+ * of frames a few seconds apart don't pay for new connections each time.
+ *
+ * Uses the same config.properties as {@link AwsImageService}. The client is built on the first
+ * classification.
+ */
+public class AsyncAwsImageService implements IImageService, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncAwsImageService.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    private final Properties config; //null to read config.properties when the client is built
+    private final int maxInFlight;
+    private RekognitionAsyncClient client;
+
+    private final ArrayDeque<Request> waiting = new ArrayDeque<>();
+    private int inFlight;
+    private long completed;
+    private long failed;
+    private boolean closed;
+
+    /**
+     * Reads config.properties, and the {@code catpoint.aws.maxInFlight} system property for the
+     * number of requests in flight, when the first image is classified.
+     */
+    public AsyncAwsImageService() {
+        this(null, Integer.getInteger("catpoint.aws.maxInFlight", DEFAULT_MAX_IN_FLIGHT));
+    }
+
+    /**
+     * @param config Settings as config.properties would have them
+     * @param maxInFlight Most requests sent at once, and the size of the connection pool
+     */
+    public AsyncAwsImageService(Properties config, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.config = config;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Classifies one frame, waiting for the result. Other callers' requests stay in flight meanwhile.
+     */
+    @Override
+    public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+        try {
+            return imageContainsCatAsync(image, confidenceThreshhold).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return Completes with whether the frame contains a cat once its result arrives
+     */
+    public CompletableFuture<Boolean> imageContainsCatAsync(CameraImage image, float confidenceThreshhold) {
+        Request request = new Request(image, confidenceThreshhold);
+        boolean send;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Image service is closed");
+            }
+            send = inFlight < maxInFlight;
+            if (send) {
+                inFlight++;
+            } else {
+                waiting.add(request);
+            }
+        }
+        if (send) {
+            send(request);
+        }
+        return request.future;
+    }
+
+    /**
+     * Queues a batch of frames. Each future completes as its own result arrives.
+     * @return Futures in the order of the frames
+     */
+    public List<CompletableFuture<Boolean>> imageContainsCat(List<CameraImage> images, float confidenceThreshhold) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(images.size());
+        for (CameraImage image : images) {
+            futures.add(imageContainsCatAsync(image, confidenceThreshhold));
+        }
+        return futures;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return Number of frames waiting for a request to finish before they are sent
+     */
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Sends the frame, and in its place each waiting frame whose request fails before it is even sent.
+     */
+    private void send(Request request) {
+        while (request != null) {
+            CompletableFuture<DetectLabelsResponse> response;
+            try {
+                DetectLabelsRequest detectLabelsRequest =
+                        AwsImageService.detectLabelsRequest(request.image, request.confidenceThreshhold);
+                response = client().detectLabels(detectLabelsRequest);
+            } catch (IOException ioe) {
+                log.error("Error building image byte array", ioe);
+                Request next = release(true);
+                request.future.complete(false);
+                request = next;
+                continue;
+            } catch (RuntimeException e) {
+                Request next = release(false);
+                request.future.completeExceptionally(e);
+                request = next;
+                continue;
+            }
+            if (!response.isDone()) {
+                Request sent = request;
+                response.whenComplete((labels, error) -> {
+                    //the next frame goes out before the caller gets this result, so what the caller does with
+                    //it doesn't hold up the next request
+                    send(release(error == null));
+                    complete(sent, labels, error);
+                });
+                return;
+            }
+            //already answered, so this runs here and now
+            Request next = release(!response.isCompletedExceptionally());
+            Request answered = request;
+            response.whenComplete((labels, error) -> complete(answered, labels, error));
+            request = next;
+        }
+    }
+
+    private static void complete(Request request, DetectLabelsResponse labels, Throwable error) {
+        if (error != null) {
+            request.future.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+        } else {
+            AwsImageService.logLabelsForFun(labels);
+            request.future.complete(AwsImageService.containsCat(labels));
+        }
+    }
+
+    /**
+     * Counts a request as finished.
+     * @return The waiting frame to send in its place, or null if none is waiting
+     */
+    private synchronized Request release(boolean succeeded) {
+        if (succeeded) {
+            completed++;
+        } else {
+            failed++;
+        }
+        Request next = closed ? null : waiting.poll();
+        if (next == null) {
+            inFlight--;
+        }
+        return next;
+    }
+
+    private synchronized RekognitionAsyncClient client() {
+        if (client == null) {
+            client = buildClient();
+        }
+        return client;
+    }
+
+    private RekognitionAsyncClient buildClient() {
+        Properties props = config != null ? config : AwsImageService.loadConfig();
+        NettyNioAsyncHttpClient.Builder http = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxInFlight)
+                .maxPendingConnectionAcquires(maxInFlight)
+                .connectionAcquisitionTimeout(Duration.ofSeconds(10))
+                .connectionTimeout(Duration.ofSeconds(5))
+                .connectionMaxIdleTime(Duration.ofMinutes(1));
+        RekognitionAsyncClientBuilder builder = RekognitionAsyncClient.builder()
+                .httpClientBuilder(http)
+                .credentialsProvider(AwsImageService.credentials(props))
+                .region(Region.of(props.getProperty("aws.region")));
+        AwsImageService.endpoint(props).ifPresent(builder::endpointOverride);
+        return builder.build();
+    }
+
+    /**
+     * Cancels the frames still waiting and closes the client. Requests in flight may fail.
+     */
+    @Override
+    public void close() {
+        List<Request> cancelled;
+        RekognitionAsyncClient c;
+        synchronized (this) {
+            closed = true;
+            cancelled = new ArrayList<>(waiting);
+            waiting.clear();
+            c = client;
+            client = null;
+        }
+        cancelled.forEach(request -> request.future.completeExceptionally(new CancellationException("Image service closed")));
+        if (c != null) {
+            c.close();
+        }
+    }
+
+    private static class Request {
+        final CameraImage image;
+        final float confidenceThreshhold;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        Request(CameraImage image, float confidenceThreshhold) {
+            this.image = image;
+            this.confidenceThreshhold = confidenceThreshhold;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Provides {@link AsyncAwsImageService}. Like {@link AwsImageServiceProvider}, creating one is cheap.
+ */
+public class AsyncAwsImageServiceProvider implements ImageServiceProvider {
+
+    @Override
+    public String name() {
+        return "aws-async";
+    }
+
+    @Override
+    public IImageService create() {
+        AwsImageServiceProvider.requireSdk(AwsImageServiceProvider.REKOGNITION);
+        AwsImageServiceProvider.requireSdk("software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient");
+        return new AsyncAwsImageService();
+    }
+}
@@ -1,22 +1,24 @@
 package com.udacity.catpoint.image.service;
 
+import com.udacity.catpoint.image.data.CameraImage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.util.Optional;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -32,32 +34,76 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *    and optionally aws.endpoint=[a URL to send requests to instead of AWS, such as a local stub]
  */
 public class AwsImageService  implements IImageService {
 
-    private Logger log = LoggerFactory.getLogger(AwsImageService.class);
+    private static final Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    private static volatile RekognitionClient rekognitionClient;
 
+    /**
+     * Does nothing expensive: the shared client is built, and the SDK loaded, on the first classification.
+     */
     public AwsImageService() {
+    }
+
+    /**
+     * @return The client shared by every instance, built on first use
+     * @throws IllegalStateException If config.properties can't be read; building is tried again next time
+     */
+    private static RekognitionClient client() {
+        RekognitionClient client = rekognitionClient;
+        if (client == null) {
+            synchronized (AwsImageService.class) {
+                client = rekognitionClient;
+                if (client == null) {
+                    client = buildClient();
+                    rekognitionClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private static RekognitionClient buildClient() {
+        Properties props = loadConfig();
+        RekognitionClientBuilder builder = RekognitionClient.builder()
+                .credentialsProvider(credentials(props))
+                .region(Region.of(props.getProperty("aws.region")));
+        endpoint(props).ifPresent(builder::endpointOverride);
+        return builder.build();
+    }
+
+    /**
+     * @return The settings in config.properties
+     * @throws IllegalStateException If there is no config.properties
+     */
+    static Properties loadConfig() {
         Properties props = new Properties();
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+        try (InputStream is = AwsImageService.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                throw new IOException("config.properties not found");
+            }
             props.load(is);
-        } catch (IOException ioe ) {
+        } catch (IOException ioe) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
-            return;
+            throw new IllegalStateException("Unable to initialize AWS Rekognition", ioe);
         }
+        return props;
+    }
 
-        String awsId = props.getProperty("aws.id");
-        String awsSecret = props.getProperty("aws.secret");
-        String awsRegion = props.getProperty("aws.region");
+    static AwsCredentialsProvider credentials(Properties props) {
+        AwsCredentials awsCredentials = AwsBasicCredentials.create(props.getProperty("aws.id"), props.getProperty("aws.secret"));
+        return StaticCredentialsProvider.create(awsCredentials);
+    }
 
-        AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .region(Region.of(awsRegion))
-                .build();
+    /**
+     * @return The optional aws.endpoint setting, for pointing the client at something other than AWS
+     */
+    static Optional<URI> endpoint(Properties props) {
+        return Optional.ofNullable(props.getProperty("aws.endpoint")).map(URI::create);
     }
 
     /**
@@ -66,22 +112,30 @@ public class AwsImageService  implements IImageService {
      * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
      * @return
      */
-    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+    public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+        DetectLabelsRequest detectLabelsRequest;
+        try {
+            detectLabelsRequest = detectLabelsRequest(image, confidenceThreshhold);
         } catch (IOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
-        DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
+        DetectLabelsResponse response = client().detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        return containsCat(response);
+    }
+
+    static DetectLabelsRequest detectLabelsRequest(CameraImage image, float confidenceThreshhold) throws IOException {
+        byte[] bytes = image.hasEncoded() ? image.getEncoded() : JpegEncoder.encode(image);
+        Image awsImage = Image.builder().bytes(SdkBytes.fromByteArray(bytes)).build();
+        return DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+    }
+
+    static boolean containsCat(DetectLabelsResponse response) {
+        return response.labels().stream().anyMatch(l -> l.name().toLowerCase().contains("cat"));
     }
 
-    private void logLabelsForFun(DetectLabelsResponse response) {
+    static void logLabelsForFun(DetectLabelsResponse response) {
         log.info(response.labels().stream()
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
                 .collect(Collectors.joining(", ")));
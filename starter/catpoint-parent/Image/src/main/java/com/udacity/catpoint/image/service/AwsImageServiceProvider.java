@@ -0,0 +1,34 @@
+package com.udacity.catpoint.image.service;
+
+/**
+ * Provides {@link AwsImageService}. Creating one is cheap: the AWS client is only built, and the SDK
+ * only loaded, when the first image is classified.
+ */
+public class AwsImageServiceProvider implements ImageServiceProvider {
+
+    static final String REKOGNITION = "software.amazon.awssdk.services.rekognition.RekognitionClient";
+
+    @Override
+    public String name() {
+        return "aws";
+    }
+
+    @Override
+    public IImageService create() {
+        requireSdk(REKOGNITION);
+        return new AwsImageService();
+    }
+
+    /**
+     * @throws IllegalStateException If the part of the AWS SDK holding the class can't be seen, as on the
+     *         module path without {@code --add-modules}
+     */
+    static void requireSdk(String className) {
+        try {
+            Class.forName(className, false, AwsImageServiceProvider.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("The AWS SDK isn't available: " + className + " can't be found. "
+                    + "On the module path, add the SDK's modules with --add-modules");
+        }
+    }
+}
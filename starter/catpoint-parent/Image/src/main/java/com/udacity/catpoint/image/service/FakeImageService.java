@@ -1,6 +1,7 @@
 package com.udacity.catpoint.image.service;
 
-import java.awt.image.BufferedImage;
+import com.udacity.catpoint.image.data.CameraImage;
+
 import java.util.Random;
 
 /**
@@ -9,7 +10,7 @@ import java.util.Random;
 public class FakeImageService implements IImageService {
     private final Random r = new Random();
 
-    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+    public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
         return r.nextBoolean();
     }
 }
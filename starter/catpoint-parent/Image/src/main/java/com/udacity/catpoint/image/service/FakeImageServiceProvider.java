@@ -0,0 +1,14 @@
+package com.udacity.catpoint.image.service;
+
+public class FakeImageServiceProvider implements ImageServiceProvider {
+
+    @Override
+    public String name() {
+        return "fake";
+    }
+
+    @Override
+    public IImageService create() {
+        return new FakeImageService();
+    }
+}
@@ -1,7 +1,7 @@
 package com.udacity.catpoint.image.service;
 
-import java.awt.image.BufferedImage;
+import com.udacity.catpoint.image.data.CameraImage;
 
 public interface IImageService {
-    boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
+    boolean imageContainsCat(CameraImage image, float confidenceThreshhold);
 }
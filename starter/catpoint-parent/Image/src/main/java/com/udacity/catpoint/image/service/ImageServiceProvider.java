@@ -0,0 +1,42 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+/**
+ * Makes image services of one kind, so the image service can be picked by name at startup rather than
+ * wired into the application. Providers are found with {@link ServiceLoader}, and every one is loaded to
+ * be asked its name, so they should be cheap to load and leave any heavy set-up, such as loading the
+ * AWS SDK, to the services they create.
+ */
+public interface ImageServiceProvider {
+
+    /**
+     * @return Name used to pick this provider, such as {@code fake} or {@code aws}
+     */
+    String name();
+
+    IImageService create();
+
+    /**
+     * Creates the image service named by the {@code catpoint.imageService} system property, {@code fake}
+     * by default.
+     */
+    static IImageService configured() {
+        return create(System.getProperty("catpoint.imageService", "fake"));
+    }
+
+    /**
+     * @throws IllegalArgumentException If no provider has that name
+     */
+    static IImageService create(String name) {
+        ServiceLoader<ImageServiceProvider> providers = ServiceLoader.load(ImageServiceProvider.class);
+        for (ImageServiceProvider provider : providers) {
+            if (provider.name().equals(name)) {
+                return provider.create();
+            }
+        }
+        throw new IllegalArgumentException("No image service called " + name + ", available are "
+                + providers.stream().map(p -> p.get().name()).collect(Collectors.joining(", ")));
+    }
+}
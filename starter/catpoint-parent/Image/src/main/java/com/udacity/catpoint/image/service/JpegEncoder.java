@@ -0,0 +1,35 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes raw pixel frames as JPEG for services that only take encoded images. This is the only place the
+ * image module touches AWT, kept apart so that java.desktop is only needed once a raw frame is sent.
+ */
+final class JpegEncoder {
+
+    private JpegEncoder() {
+    }
+
+    /**
+     * @throws IllegalStateException If java.desktop isn't available, as on the module path when nothing
+     *         else requires it
+     */
+    static byte[] encode(CameraImage image) throws IOException {
+        if (ModuleLayer.boot().findModule("java.desktop").isEmpty()) {
+            throw new IllegalStateException("Raw pixel frames need java.desktop to be encoded; "
+                    + "add it with --add-modules java.desktop");
+        }
+        BufferedImage buffered = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        buffered.setRGB(0, 0, image.getWidth(), image.getHeight(), image.getPixels(), 0, image.getWidth());
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            ImageIO.write(buffered, "jpg", os);
+            return os.toByteArray();
+        }
+    }
+}
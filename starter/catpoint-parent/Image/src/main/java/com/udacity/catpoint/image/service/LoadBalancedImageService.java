@@ -0,0 +1,204 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Image service that spreads classifications over several backends, so image throughput isn't limited
+ * to what one backend or one client connection can do.
+ *
+ * Each request goes to the backend with the lowest score, which with {@link Strategy#LEAST_OUTSTANDING}
+ * is the number of requests it has in progress and with {@link Strategy#EWMA_LATENCY} is that times its
+ * recent latency. Scores are divided by the backend's weight, so a backend of weight 2 is given about
+ * twice the work of one of weight 1. A backend that has been failing has its score multiplied by up to
+ * {@value #ERROR_PENALTY}, so it isn't handed work just because it fails quickly. A backend never has
+ * more than its {@code maxConcurrent} requests in progress; when every backend is full, callers wait for
+ * a free one.
+ *
+ * A backend that throws is counted as failing and the request is tried on the next best backend. Only
+ * when every backend has failed the request does the last failure reach the caller.
+ */
+public class LoadBalancedImageService implements IImageService {
+
+    /**
+     * How a backend is picked for each request.
+     */
+    public enum Strategy {
+        /** Fewest requests in progress, relative to weight. */
+        LEAST_OUTSTANDING,
+        /** Lowest recent latency times requests in progress, relative to weight. */
+        EWMA_LATENCY
+    }
+
+    /**
+     * Weight of the newest latency in the moving average, so it mostly reflects the last ten or so requests.
+     */
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double ERROR_PENALTY = 50;
+
+    private final BackendState[] backends;
+    private final Strategy strategy;
+    private int nextStart; //rotates the starting point, so ties don't all go to the first backend
+
+    /**
+     * @param backends Backends to spread requests over, at least one
+     */
+    public LoadBalancedImageService(List<Backend> backends, Strategy strategy) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one backend is needed");
+        }
+        this.backends = backends.stream().map(BackendState::new).toArray(BackendState[]::new);
+        this.strategy = strategy;
+    }
+
+    @Override
+    public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+        boolean[] tried = new boolean[backends.length];
+        RuntimeException failure = null;
+        for (int attempt = 0; attempt < backends.length; attempt++) {
+            BackendState backend = acquire(tried);
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                boolean cat = backend.backend.service().imageContainsCat(image, confidenceThreshhold);
+                failed = false;
+                return cat;
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally { //whatever the backend throws, its slot is given back
+                release(backend, System.nanoTime() - start, failed);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * @return Statistics for each backend, in the order the backends were given
+     */
+    public synchronized List<BackendStats> getStats() {
+        List<BackendStats> stats = new ArrayList<>(backends.length);
+        for (BackendState backend : backends) {
+            stats.add(new BackendStats(backend.backend.name(), backend.requests, backend.errors, backend.outstanding,
+                    backend.errorRate, Duration.ofNanos((long) backend.ewmaNanos),
+                    Duration.ofNanos(backend.requests == 0 ? 0 : backend.totalNanos / backend.requests),
+                    Duration.ofNanos(backend.maxNanos)));
+        }
+        return stats;
+    }
+
+    /**
+     * Waits for the best backend not tried yet that has room for another request, and counts the
+     * request as in progress there.
+     */
+    private synchronized BackendState acquire(boolean[] tried) {
+        while (true) {
+            int best = -1;
+            double bestScore = Double.MAX_VALUE;
+            int start = nextStart;
+            double unmeasured = unmeasuredLatency();
+            for (int n = 0; n < backends.length; n++) {
+                int i = (start + n) % backends.length;
+                BackendState backend = backends[i];
+                if (tried[i] || backend.outstanding >= backend.backend.maxConcurrent()) {
+                    continue;
+                }
+                double score = score(backend, unmeasured);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                nextStart = (start + 1) % backends.length;
+                tried[best] = true;
+                backends[best].outstanding++;
+                return backends[best];
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an image backend", e);
+            }
+        }
+    }
+
+    private double score(BackendState backend, double unmeasured) {
+        double load = backend.outstanding + 1;
+        if (strategy == Strategy.EWMA_LATENCY) {
+            load *= backend.ewmaNanos > 0 ? backend.ewmaNanos : unmeasured;
+        }
+        return load * (1 + ERROR_PENALTY * backend.errorRate) / backend.backend.weight();
+    }
+
+    /**
+     * @return Latency assumed for a backend that hasn't classified anything yet: the best one measured,
+     *         so it gets a fair try without being preferred over everything
+     */
+    private double unmeasuredLatency() {
+        double best = Double.MAX_VALUE;
+        for (BackendState backend : backends) {
+            if (backend.ewmaNanos > 0) {
+                best = Math.min(best, backend.ewmaNanos);
+            }
+        }
+        return best == Double.MAX_VALUE ? 1 : best;
+    }
+
+    private synchronized void release(BackendState backend, long nanos, boolean failed) {
+        backend.outstanding--;
+        backend.requests++;
+        if (failed) {
+            backend.errors++;
+        }
+        backend.totalNanos += nanos;
+        backend.maxNanos = Math.max(backend.maxNanos, nanos);
+        backend.errorRate += EWMA_ALPHA * ((failed ? 1 : 0) - backend.errorRate);
+        if (!failed) { //a quick failure says nothing about how quickly the backend classifies
+            backend.ewmaNanos = backend.ewmaNanos == 0
+                    ? nanos
+                    : backend.ewmaNanos + EWMA_ALPHA * (nanos - backend.ewmaNanos);
+        }
+        notifyAll();
+    }
+
+    /**
+     * One backend and how it is to be used.
+     * @param weight Share of the work relative to the other backends
+     * @param maxConcurrent Most requests the backend is given at once
+     */
+    public record Backend(String name, IImageService service, int weight, int maxConcurrent) {
+
+        public Backend {
+            if (weight < 1 || maxConcurrent < 1) {
+                throw new IllegalArgumentException("Backend " + name + " needs a positive weight and concurrency");
+            }
+        }
+    }
+
+    /**
+     * A backend's numbers so far. The moving averages weigh recent requests most; failed requests count
+     * towards the error rate and the mean and max latency, but not the moving latency.
+     */
+    public record BackendStats(String name, long requests, long errors, int outstanding, double errorRate,
+                               Duration ewmaLatency, Duration meanLatency, Duration maxLatency) {
+    }
+
+    private static class BackendState {
+        private final Backend backend;
+        private int outstanding;
+        private long requests;
+        private long errors;
+        private long totalNanos;
+        private long maxNanos;
+        private double ewmaNanos;
+        private double errorRate;
+
+        BackendState(Backend backend) {
+            this.backend = backend;
+        }
+    }
+}
@@ -1,11 +1,20 @@
 module Image {
 
     exports com.udacity.catpoint.image.service;
+    exports com.udacity.catpoint.image.data;
     requires org.slf4j;
-    requires software.amazon.awssdk.auth;
-    requires software.amazon.awssdk.core;
-    requires software.amazon.awssdk.regions;
-    requires software.amazon.awssdk.services.rekognition;
-    requires java.desktop;
+    //the AWS services are optional: on the module path, add the SDK with --add-modules to use them
+    requires static software.amazon.awssdk.auth;
+    requires static software.amazon.awssdk.core;
+    requires static software.amazon.awssdk.regions;
+    requires static software.amazon.awssdk.services.rekognition;
+    requires static software.amazon.awssdk.http.nio.netty;
+    requires static java.desktop; //only to encode raw pixel frames for AWS, see JpegEncoder
+
+    uses com.udacity.catpoint.image.service.ImageServiceProvider;
+    provides com.udacity.catpoint.image.service.ImageServiceProvider with
+            com.udacity.catpoint.image.service.FakeImageServiceProvider,
+            com.udacity.catpoint.image.service.AwsImageServiceProvider,
+            com.udacity.catpoint.image.service.AsyncAwsImageServiceProvider;
 
 }
@@ -0,0 +1,177 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.LoadBalancedImageService.Backend;
+import com.udacity.catpoint.image.service.LoadBalancedImageService.BackendStats;
+import com.udacity.catpoint.image.service.LoadBalancedImageService.Strategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadBalancedImageServiceTest {
+
+    private static final CameraImage IMAGE = CameraImage.ofPixels(1, 1, new int[]{0});
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void stopCallers() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void weights_shareOutConcurrentRequests() throws Exception {
+        Gate heavy = new Gate();
+        Gate light = new Gate();
+        LoadBalancedImageService service = new LoadBalancedImageService(List.of(
+                new Backend("heavy", heavy, 2, 100), new Backend("light", light, 1, 100)), Strategy.LEAST_OUTSTANDING);
+
+        List<Future<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(callers.submit(() -> service.imageContainsCat(IMAGE, 50)));
+            awaitArrivals(heavy, light, i + 1); //one at a time, so each sees the one before in progress
+        }
+        assertEquals(4, heavy.arrived.availablePermits());
+        assertEquals(2, light.arrived.availablePermits());
+
+        heavy.release.countDown();
+        light.release.countDown();
+        for (Future<Boolean> call : calls) {
+            assertTrue(call.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void fullBackends_makeCallersWait() throws Exception {
+        Gate gate = new Gate();
+        LoadBalancedImageService service = new LoadBalancedImageService(List.of(
+                new Backend("only", gate, 1, 2)), Strategy.LEAST_OUTSTANDING);
+
+        List<Future<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(callers.submit(() -> service.imageContainsCat(IMAGE, 50)));
+        }
+        assertTrue(gate.arrived.tryAcquire(2, 5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(0, gate.arrived.availablePermits(), "a third request reached a backend with room for two");
+        assertEquals(2, service.getStats().get(0).outstanding());
+
+        gate.release.countDown();
+        for (Future<Boolean> call : calls) {
+            assertTrue(call.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(3, service.getStats().get(0).requests());
+        assertEquals(0, service.getStats().get(0).outstanding());
+    }
+
+    @Test
+    public void ewmaLatency_prefersTheFasterBackend() {
+        LoadBalancedImageService service = new LoadBalancedImageService(List.of(
+                new Backend("slow", sleeping(20), 1, 10), new Backend("fast", sleeping(1), 1, 10)),
+                Strategy.EWMA_LATENCY);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(service.imageContainsCat(IMAGE, 50));
+        }
+        BackendStats slow = service.getStats().get(0);
+        BackendStats fast = service.getStats().get(1);
+        assertTrue(fast.requests() >= 18, "fast backend got " + fast.requests() + " of 20");
+        assertTrue(fast.ewmaLatency().compareTo(slow.ewmaLatency()) < 0);
+    }
+
+    @Test
+    public void failingBackend_isRetriedElsewhereAndThenAvoided() {
+        LoadBalancedImageService service = new LoadBalancedImageService(List.of(
+                new Backend("broken", failing("broken"), 1, 10), new Backend("working", sleeping(0), 1, 10)),
+                Strategy.LEAST_OUTSTANDING);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(service.imageContainsCat(IMAGE, 50));
+        }
+        BackendStats broken = service.getStats().get(0);
+        BackendStats working = service.getStats().get(1);
+        assertEquals(broken.requests(), broken.errors());
+        assertTrue(broken.requests() >= 1 && broken.requests() <= 2, "broken backend got " + broken.requests());
+        assertEquals(20, working.requests());
+        assertTrue(broken.errorRate() > 0);
+    }
+
+    @Test
+    public void everyBackendFailing_throwsTheLastFailure() {
+        LoadBalancedImageService service = new LoadBalancedImageService(List.of(
+                new Backend("first", failing("first"), 1, 10), new Backend("second", failing("second"), 1, 10)),
+                Strategy.LEAST_OUTSTANDING);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.imageContainsCat(IMAGE, 50));
+        //each backend was tried once, and the failure is whichever was tried last
+        assertEquals(1, service.getStats().get(0).requests());
+        assertEquals(1, service.getStats().get(1).requests());
+        assertTrue(List.of("first", "second").contains(e.getMessage()), e.getMessage());
+    }
+
+    @Test
+    public void backendThrowingAnError_givesItsSlotBack() {
+        LoadBalancedImageService service = new LoadBalancedImageService(List.of(
+                new Backend("only", (image, confidence) -> {
+                    throw new AssertionError("out of memory, say");
+                }, 1, 1)), Strategy.LEAST_OUTSTANDING);
+
+        assertThrows(AssertionError.class, () -> service.imageContainsCat(IMAGE, 50));
+        assertEquals(0, service.getStats().get(0).outstanding());
+        assertThrows(AssertionError.class, () -> service.imageContainsCat(IMAGE, 50)); //rather than waiting forever
+    }
+
+    private static void awaitArrivals(Gate a, Gate b, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (a.arrived.availablePermits() + b.arrived.availablePermits() < count) {
+            assertTrue(System.nanoTime() < deadline, "request never reached a backend");
+            Thread.sleep(1);
+        }
+    }
+
+    private static IImageService sleeping(long millis) {
+        return (image, confidence) -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+    }
+
+    private static IImageService failing(String message) {
+        return (image, confidence) -> {
+            throw new IllegalStateException(message);
+        };
+    }
+
+    /**
+     * Counts the requests that reach it and holds them until released.
+     */
+    private static class Gate implements IImageService {
+        private final Semaphore arrived = new Semaphore(0);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+            arrived.release();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+}
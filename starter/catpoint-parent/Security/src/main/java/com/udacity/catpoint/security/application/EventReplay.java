@@ -0,0 +1,228 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.IImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EmbeddedDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.EventHistory;
+import com.udacity.catpoint.security.data.HistoryEvent;
+import com.udacity.catpoint.security.data.HistoryEventType;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.AlarmTransitionTable;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.TimingWheel;
+import com.udacity.catpoint.security.service.VirtualClock;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Replays a recorded {@link EventHistory} through a SecurityService as fast as it will go, to
+ * reproduce incidents, check rule changes against real traffic, or measure repositories and image
+ * services on a realistic workload.
+ *
+ * Sensor, arming and camera events are fed to the service in order. Time comes from a
+ * {@link VirtualClock} set to each event's timestamp, so entry and exit delays expire exactly as they
+ * did when the events were recorded, however fast the replay runs. Recorded alarm changes are not fed
+ * in; they are what the replayed rules are checked against.
+ *
+ * Camera events either replay the recorded answer, or send a blank frame to a real image service.
+ *
+ * Usage: {@code EventReplay <history directory>}. The repository is an in-memory embedded database.
+ */
+public class EventReplay implements StatusListener {
+
+    private static final CameraImage BLANK_FRAME = CameraImage.ofPixels(1, 1, new int[1]);
+
+    private final SecurityRepository repository;
+    private final VirtualClock clock = new VirtualClock(0);
+    private final TimingWheel timers = new TimingWheel(clock, 1); //fine ticks, so delays end when they did
+    private final SecurityService securityService;
+    private final RecordedImageResults recordedResults;
+
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private final long[][] transitions = new long[AlarmStatus.values().length][AlarmStatus.values().length];
+    private final long[] eventCounts = new long[HistoryEventType.values().length];
+    private AlarmStatus lastAlarmStatus;
+    private long mismatches;
+
+    /**
+     * Replays camera events with the answers that were recorded.
+     */
+    public EventReplay(SecurityRepository repository, Duration entryDelay, Duration exitDelay,
+                       AlarmTransitionTable rules) {
+        this(repository, new RecordedImageResults(), entryDelay, exitDelay, rules);
+    }
+
+    /**
+     * Sends every camera event to the given image service instead of replaying its recorded answer.
+     */
+    public EventReplay(SecurityRepository repository, IImageService imageService, Duration entryDelay,
+                       Duration exitDelay, AlarmTransitionTable rules) {
+        this.repository = repository;
+        this.recordedResults = imageService instanceof RecordedImageResults recorded ? recorded : null;
+        this.securityService = new SecurityService(repository, imageService, timers, entryDelay, exitDelay, rules);
+        repository.getSensors().forEach(s -> sensors.put(s.getSensorId(), s));
+        lastAlarmStatus = repository.getAlarmStatus();
+        securityService.addStatusListener(this);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: EventReplay <history directory>");
+            System.exit(2);
+        }
+        try (EventHistory history = new EventHistory(Path.of(args[0]));
+             EmbeddedDatabaseSecurityRepositoryImpl repository = new EmbeddedDatabaseSecurityRepositoryImpl(
+                     "jdbc:h2:mem:replay-" + UUID.randomUUID())) {
+            EventReplay replay = new EventReplay(repository,
+                    Duration.ofSeconds(Long.getLong("catpoint.entryDelaySeconds", 30)),
+                    Duration.ofSeconds(Long.getLong("catpoint.exitDelaySeconds", 0)),
+                    AlarmTransitionTable.configured());
+            System.out.println(replay.replay(history, 0, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Replays every event in the time range.
+     */
+    public Report replay(EventHistory history, long fromMillis, long toMillis) {
+        long start = System.nanoTime();
+        history.query(fromMillis, toMillis, null, this::apply);
+        return report(System.nanoTime() - start);
+    }
+
+    public Report replay(Iterable<HistoryEvent> events) {
+        long start = System.nanoTime();
+        events.forEach(this::apply);
+        return report(System.nanoTime() - start);
+    }
+
+    /**
+     * Feeds one recorded event to the service, after first letting any timers that were due by then run.
+     */
+    public void apply(HistoryEvent event) {
+        clock.set(event.timestamp());
+        timers.advance();
+        eventCounts[event.type().ordinal()]++;
+        switch (event.type()) {
+            case SENSOR -> securityService.changeSensorActivationStatus(sensor(event.sensorId()), event.newStatus() == 1);
+            case ARMING_STATUS -> securityService.setArmingStatus(ArmingStatus.values()[event.newStatus()]);
+            case CAT_DETECTION -> {
+                if (recordedResults != null) {
+                    recordedResults.next = event.newStatus() == 1;
+                }
+                securityService.processImage(BLANK_FRAME);
+            }
+            case ALARM_STATUS -> {
+                if (event.newStatus() >= 0 && securityService.getAlarmStatus() != AlarmStatus.values()[event.newStatus()]) {
+                    mismatches++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The sensor with this id, added to the repository the first time it shows up
+     */
+    private Sensor sensor(UUID sensorId) {
+        return sensors.computeIfAbsent(sensorId, id -> {
+            Sensor sensor = new Sensor("Replayed " + id.toString().substring(0, 8), SensorType.DOOR, id);
+            securityService.addSensor(sensor);
+            return sensor;
+        });
+    }
+
+    private Report report(long nanos) {
+        long events = 0;
+        for (long count : eventCounts) {
+            events += count;
+        }
+        int active = (int) repository.getSensors().stream().filter(Sensor::getActive).count();
+        long[][] transitionsCopy = new long[transitions.length][];
+        for (int i = 0; i < transitions.length; i++) {
+            transitionsCopy[i] = transitions[i].clone();
+        }
+        return new Report(events, nanos, repository.getAlarmStatus(), repository.getArmingStatus(),
+                sensors.size(), active, transitionsCopy, mismatches);
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        if (lastAlarmStatus != null) {
+            transitions[lastAlarmStatus.ordinal()][status.ordinal()]++;
+        }
+        lastAlarmStatus = status;
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        //counted as an event already
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        //no behavior necessary
+    }
+
+    @Override
+    public void sensorOffline(Sensor sensor) {
+        //no behavior necessary
+    }
+
+    /**
+     * Outcome of a replay.
+     * @param events Number of recorded events read, including the alarm changes that were only compared
+     * @param transitions Count of alarm status changes, indexed by old and new {@link AlarmStatus} ordinal.
+     *                    Setting the alarm to the status it already had counts too.
+     * @param mismatches Recorded alarm changes the replayed service did not agree with
+     */
+    public record Report(long events, long nanos, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                         int sensors, int activeSensors, long[][] transitions, long mismatches) {
+
+        public double eventsPerSecond() {
+            return nanos == 0 ? 0 : events * 1e9 / nanos;
+        }
+
+        public long transitions(AlarmStatus from, AlarmStatus to) {
+            return transitions[from.ordinal()][to.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("replayed %d events in %.1f ms (%.0f events/s)%n",
+                    events, nanos / 1e6, eventsPerSecond()));
+            out.append(String.format("final state: alarm %s, arming %s, %d of %d sensors active%n",
+                    alarmStatus, armingStatus, activeSensors, sensors));
+            out.append(String.format("alarm changes that differ from the recording: %d%n", mismatches));
+            out.append("alarm transitions:\n");
+            for (AlarmStatus from : AlarmStatus.values()) {
+                for (AlarmStatus to : AlarmStatus.values()) {
+                    if (transitions(from, to) > 0) {
+                        out.append(String.format("  %s -> %s: %d%n", from, to, transitions(from, to)));
+                    }
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Image service that gives back whatever the recording says the real one answered.
+     */
+    private static class RecordedImageResults implements IImageService {
+        private boolean next;
+
+        @Override
+        public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.udacity.catpoint.security.application;
+
+import com.sun.management.ThreadMXBean;
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EmbeddedDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.AlarmTransitionTable;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.TimingWheel;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Drives a SecurityService with synthetic traffic at a fixed rate, to find out how much it can take
+ * before rolling out.
+ *
+ * The traffic is a mix of door sensors opening and closing in short bursts, a few motion sensors
+ * flapping, occasional window changes, camera frames sent through {@link FakeImageService}, and an
+ * arming change every so often. Each thread owns its own share of the sensors and of the schedule.
+ *
+ * Every operation has a time it should start at. Latency is measured from that time rather than from
+ * when the operation actually got sent, so when the service stalls, the requests that pile up behind
+ * the stall are charged for the wait, as they would be with real sensors that do not hold back. This
+ * avoids coordinated omission. The service time, measured from the actual send, is reported
+ * alongside for comparison.
+ *
+ * Usage: {@code LoadGenerator}, configured with the {@code catpoint.load.*} system properties listed on
+ * {@link Settings#fromSystemProperties()}. The repository is an in-memory embedded database; setting
+ * {@code catpoint.repository} to {@code memory} uses a plain in-memory one instead, to measure the
+ * service on its own, and {@code pretend} the pretend one under a throwaway preferences node. The
+ * pretend repository keeps all sensors in one preferences value, which caps it at a few dozen sensors.
+ */
+public class LoadGenerator {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final ArmingStatus[] ARMING_CYCLE = {
+            ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY, ArmingStatus.DISARMED};
+
+    private final SecurityService securityService;
+    private final Settings settings;
+    private final CameraImage frame = CameraImage.ofPixels(64, 48, new int[64 * 48]);
+    private final List<Sensor> doors = new ArrayList<>();
+    private final List<Sensor> windows = new ArrayList<>();
+    private final List<Sensor> motions = new ArrayList<>();
+
+    /**
+     * Adds the simulated sensors to the service.
+     */
+    public LoadGenerator(SecurityService securityService, Settings settings) {
+        this.securityService = securityService;
+        this.settings = settings;
+        for (SensorType type : SensorType.values()) {
+            for (int i = 0; i < settings.sensorsPerType(); i++) {
+                Sensor sensor = new Sensor("Load " + type + " " + i, type);
+                securityService.addSensor(sensor);
+                switch (type) {
+                    case DOOR -> doors.add(sensor);
+                    case WINDOW -> windows.add(sensor);
+                    case MOTION -> motions.add(sensor);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws BackingStoreException {
+        Settings settings = Settings.fromSystemProperties();
+        Preferences node = Preferences.userRoot().node("catpoint-load/" + UUID.randomUUID());
+        SecurityRepository repository = switch (System.getProperty("catpoint.repository", "embedded")) {
+            case "pretend" -> new PretendDatabaseSecurityRepositoryImpl(node);
+            case "memory" -> new InMemorySecurityRepositoryImpl();
+            default -> new EmbeddedDatabaseSecurityRepositoryImpl("jdbc:h2:mem:load-" + UUID.randomUUID());
+        };
+        try (TimingWheel timers = new TimingWheel(Clock.systemUTC(), 100)) {
+            timers.start();
+            SecurityService securityService = new SecurityService(repository, new FakeImageService(), timers,
+                    Duration.ofSeconds(Long.getLong("catpoint.entryDelaySeconds", 30)),
+                    Duration.ofSeconds(Long.getLong("catpoint.exitDelaySeconds", 0)),
+                    AlarmTransitionTable.configured());
+            System.out.println(new LoadGenerator(securityService, settings).run());
+        } finally {
+            if (repository instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    System.err.println("could not close repository: " + e);
+                }
+            }
+            node.removeNode();
+        }
+    }
+
+    /**
+     * Sends the configured load and waits for it to finish.
+     */
+    public Report run() {
+        int threads = settings.threads();
+        long intervalNanos = (long) (1e9 / settings.rate());
+        long operations = (long) (settings.rate() * settings.duration().toNanos() / 1e9);
+        long armingEvery = Math.max(1, (long) (settings.rate() * settings.armingPeriod().toNanos() / 1e9));
+
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        long gcCollections = -gcCollections();
+        long gcMillis = -gcMillis();
+        long start = System.nanoTime() + Duration.ofMillis(50).toNanos(); //give every thread time to get going
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker(t, start, intervalNanos, operations, armingEvery);
+            running[t] = new Thread(workers[t], "load-" + t);
+            running[t].start();
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for load to finish", e);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        gcCollections += gcCollections();
+        gcMillis += gcMillis();
+
+        LatencyHistogram responseTime = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        long allocated = 0;
+        for (Worker worker : workers) {
+            responseTime.add(worker.responseTime);
+            serviceTime.add(worker.serviceTime);
+            allocated += worker.allocated;
+        }
+        return new Report(operations, nanos, settings.rate(), responseTime, serviceTime, gcCollections, gcMillis,
+                allocated);
+    }
+
+    private static long gcCollections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(c -> c > 0).sum();
+    }
+
+    /**
+     * Sends every operation whose number is its own modulo the thread count, each at its scheduled time.
+     */
+    private class Worker implements Runnable {
+        private final int thread;
+        private final long start;
+        private final long intervalNanos;
+        private final long operations;
+        private final long armingEvery;
+        private final SplittableRandom random;
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private long allocated;
+
+        private Sensor burstDoor;
+        private int burstRemaining;
+
+        Worker(int thread, long start, long intervalNanos, long operations, long armingEvery) {
+            this.thread = thread;
+            this.start = start;
+            this.intervalNanos = intervalNanos;
+            this.operations = operations;
+            this.armingEvery = armingEvery;
+            this.random = new SplittableRandom(settings.seed() + thread);
+        }
+
+        @Override
+        public void run() {
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            for (long i = thread; i < operations; i += settings.threads()) {
+                long intended = start + i * intervalNanos;
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                send(i);
+                long end = System.nanoTime();
+                responseTime.record(end - intended);
+                serviceTime.record(end - now);
+            }
+            allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+
+        private void send(long operation) {
+            if (operation % armingEvery == 0) {
+                securityService.setArmingStatus(ARMING_CYCLE[(int) (operation / armingEvery % ARMING_CYCLE.length)]);
+                return;
+            }
+            if (burstRemaining > 0) {
+                burstRemaining--;
+                toggle(burstDoor);
+                return;
+            }
+            double choice = random.nextDouble();
+            if (choice < settings.cameraShare()) {
+                securityService.processImage(frame);
+            } else if (choice < 0.5) {
+                //a handful of motion sensors that keep tripping, like ones facing a window with curtains
+                Sensor flapping = own(motions, Math.max(1, motions.size() / 10));
+                if (flapping != null) {
+                    toggle(flapping);
+                }
+            } else if (choice < 0.9) {
+                burstDoor = own(doors, doors.size());
+                if (burstDoor != null) {
+                    burstRemaining = 1 + random.nextInt(4); //opened and closed, maybe a few more times
+                    toggle(burstDoor);
+                }
+            } else {
+                Sensor window = own(windows, windows.size());
+                if (window != null) {
+                    toggle(window);
+                }
+            }
+        }
+
+        /**
+         * @return A random one of this thread's sensors among the first few of the list, or null if it has none
+         */
+        private Sensor own(List<Sensor> sensors, int among) {
+            int threads = settings.threads();
+            int owned = (among - thread + threads - 1) / threads;
+            return owned <= 0 ? null : sensors.get(thread + random.nextInt(owned) * threads);
+        }
+
+        private void toggle(Sensor sensor) {
+            securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        }
+    }
+
+    /**
+     * @param sensorsPerType Number of sensors of each {@link SensorType}
+     * @param rate Operations per second across all threads
+     * @param armingPeriod Time between arming changes
+     * @param cameraShare Fraction of the other operations that are camera frames
+     * @param seed Seed for the traffic mix, so runs can be repeated
+     */
+    public record Settings(int sensorsPerType, int threads, double rate, Duration duration,
+                           Duration armingPeriod, double cameraShare, long seed) {
+
+        public Settings {
+            if (sensorsPerType < 1 || threads < 1 || rate <= 0 || duration.isNegative() || armingPeriod.isZero()
+                    || armingPeriod.isNegative() || cameraShare < 0 || cameraShare > 0.5) {
+                throw new IllegalArgumentException("Invalid load settings: " + this);
+            }
+        }
+
+        /**
+         * Reads {@code catpoint.load.sensorsPerType} (default 25), {@code catpoint.load.threads} (8),
+         * {@code catpoint.load.rate} (2000 per second), {@code catpoint.load.durationSeconds} (30),
+         * {@code catpoint.load.armingPeriodSeconds} (5), {@code catpoint.load.cameraShare} (0.05) and
+         * {@code catpoint.load.seed} (1).
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("catpoint.load.sensorsPerType", 25),
+                    Integer.getInteger("catpoint.load.threads", 8),
+                    Double.parseDouble(System.getProperty("catpoint.load.rate", "2000")),
+                    Duration.ofSeconds(Long.getLong("catpoint.load.durationSeconds", 30)),
+                    Duration.ofSeconds(Long.getLong("catpoint.load.armingPeriodSeconds", 5)),
+                    Double.parseDouble(System.getProperty("catpoint.load.cameraShare", "0.05")),
+                    Long.getLong("catpoint.load.seed", 1));
+        }
+    }
+
+    /**
+     * Outcome of a load run.
+     * @param responseTime Latency from when each operation was due to be sent until it returned
+     * @param serviceTime Latency from when each operation was actually sent until it returned
+     * @param gcCollections Garbage collections during the run, across all collectors
+     * @param allocatedBytes Bytes allocated by the load threads, which includes what the service allocated for them
+     */
+    public record Report(long operations, long nanos, double targetRate, LatencyHistogram responseTime,
+                         LatencyHistogram serviceTime, long gcCollections, long gcMillis, long allocatedBytes) {
+
+        public double operationsPerSecond() {
+            return nanos == 0 ? 0 : operations * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("sent %d operations in %.1f s (%.0f/s, target %.0f/s)%n",
+                    operations, nanos / 1e9, operationsPerSecond(), targetRate));
+            out.append(String.format("gc: %d collections, %d ms, %.0f bytes allocated per operation%n",
+                    gcCollections, gcMillis, operations == 0 ? 0.0 : (double) allocatedBytes / operations));
+            out.append(String.format("%-10s %14s %14s%n", "percentile", "response (us)", "service (us)"));
+            for (double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+                out.append(String.format("%-10s %14.1f %14.1f%n", percentile,
+                        responseTime.getValueAtPercentile(percentile) / 1e3,
+                        serviceTime.getValueAtPercentile(percentile) / 1e3));
+            }
+            out.append(String.format("%-10s %14.1f %14.1f%n", "max", responseTime.getMax() / 1e3,
+                    serviceTime.getMax() / 1e3));
+            return out.toString();
+        }
+    }
+}
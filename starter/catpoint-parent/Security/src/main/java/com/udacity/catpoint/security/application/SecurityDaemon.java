@@ -0,0 +1,395 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.ImageServiceProvider;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.EventHistory;
+import com.udacity.catpoint.security.data.ReplicatingSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.ReplicationStandby;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.SecurityRepositoryProvider;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.data.HistoryEvent;
+import com.udacity.catpoint.security.data.HistoryEventType;
+import com.udacity.catpoint.security.service.AlarmTransitionTable;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.SensorDebouncer;
+import com.udacity.catpoint.security.service.TimingWheel;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Headless entry point that runs the security system without any UI. Nothing on this path loads
+ * AWT, so it runs happily with {@code -Djava.awt.headless=true}.
+ *
+ * Commands are read one per line from standard input and status changes are printed to standard out:
+ * <pre>
+ *   status
+ *   arm home | arm away | disarm
+ *   add DOOR|WINDOW|MOTION name
+ *   remove name
+ *   activate name | deactivate name
+ *   heartbeat name
+ *   history [minutes] [sensor name]
+ *   scan path/to/image.jpg [camera name]
+ *   quit
+ * </pre>
+ *
+ * Setting {@code catpoint.sensorTimeoutSeconds} reports sensors that go that long without a heartbeat,
+ * {@code catpoint.alarmRules} names a rule file to use instead of the built-in alarm rules, and
+ * {@code catpoint.history} names a directory to keep the event history in. Setting
+ * {@code catpoint.debounce} to true passes activate and deactivate commands through a
+ * {@link SensorDebouncer} with the default policies, as readings from real sensors would be.
+ * {@code catpoint.repository} picks where state is kept: {@code pretend} (the default) for user
+ * preferences, {@code embedded} for the embedded database, {@code memory} to keep nothing, or the name of
+ * any other {@link SecurityRepositoryProvider}. {@code catpoint.imageService} likewise names the
+ * {@link ImageServiceProvider} that classifies scanned images, {@code fake} by default.
+ *
+ * Two daemons can run as a hot-standby pair. One started with {@code catpoint.standbyPort} waits as
+ * the standby, copying the primary's state into its own repository, and takes over when it reads
+ * {@code promote}. One started with {@code catpoint.replicateTo} set to that standby's
+ * {@code host:port} runs as the primary and streams every change to it; its status command also
+ * reports how far behind the standby is.
+ *
+ * Setting {@code catpoint.httpPort} also serves the state to dashboards through a {@link StatusServer}.
+ * It listens on the loopback interface only, unless {@code catpoint.httpHost} names another address to
+ * listen on, such as {@code 0.0.0.0} for every interface.
+ */
+public class SecurityDaemon implements StatusListener {
+
+    private final SecurityService securityService;
+    private final EventHistory history;
+    private final SensorDebouncer debouncer;
+    private final PrintStream out;
+
+    private ReplicatingSecurityRepositoryImpl replication;
+
+    public SecurityDaemon(SecurityService securityService, PrintStream out) {
+        this(securityService, null, out);
+    }
+
+    /**
+     * @param history History for the history command to read, or null if none is kept
+     */
+    public SecurityDaemon(SecurityService securityService, EventHistory history, PrintStream out) {
+        this(securityService, history, null, out);
+    }
+
+    /**
+     * @param debouncer Debouncer that sensor changes go through, or null to send them straight to the service
+     */
+    public SecurityDaemon(SecurityService securityService, EventHistory history, SensorDebouncer debouncer,
+                          PrintStream out) {
+        this.securityService = securityService;
+        this.history = history;
+        this.debouncer = debouncer;
+        this.out = out;
+        securityService.addStatusListener(this);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        SecurityRepository repository = SecurityRepositoryProvider.configured();
+        Integer standbyPort = Integer.getInteger("catpoint.standbyPort");
+        if (standbyPort != null) {
+            repository = standBy(repository, standbyPort, in, System.out);
+            if (repository == null) {
+                return;
+            }
+        }
+        ReplicatingSecurityRepositoryImpl replication = null;
+        String replicateTo = System.getProperty("catpoint.replicateTo");
+        if (replicateTo != null) {
+            int colon = replicateTo.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("catpoint.replicateTo must be host:port, not " + replicateTo);
+            }
+            replication = new ReplicatingSecurityRepositoryImpl(repository, new InetSocketAddress(
+                    replicateTo.substring(0, colon), Integer.parseInt(replicateTo.substring(colon + 1)))).start();
+            repository = replication;
+        }
+        TimingWheel timers = new TimingWheel(Clock.systemUTC(), 100);
+        timers.start();
+        SecurityService securityService = new SecurityService(repository, ImageServiceProvider.configured(), timers,
+                Duration.ofSeconds(Long.getLong("catpoint.entryDelaySeconds", 30)),
+                Duration.ofSeconds(Long.getLong("catpoint.exitDelaySeconds", 0)),
+                AlarmTransitionTable.configured());
+        long sensorTimeout = Long.getLong("catpoint.sensorTimeoutSeconds", 0);
+        if (sensorTimeout > 0) {
+            securityService.trackLiveness(Clock.systemUTC(), Duration.ofSeconds(sensorTimeout), Duration.ofSeconds(1))
+                    .start();
+        }
+        String historyDirectory = System.getProperty("catpoint.history");
+        EventHistory history = historyDirectory == null ? null : new EventHistory(Path.of(historyDirectory));
+        if (history != null) {
+            securityService.recordHistory(history);
+        }
+        SensorDebouncer debouncer = null;
+        if (Boolean.getBoolean("catpoint.debounce")) {
+            debouncer = new SensorDebouncer(Clock.systemUTC(), SensorDebouncer.Policy.defaults(), securityService);
+            debouncer.start(Duration.ofMillis(100));
+        }
+        Integer httpPort = Integer.getInteger("catpoint.httpPort");
+        if (httpPort != null) {
+            String httpHost = System.getProperty("catpoint.httpHost");
+            InetSocketAddress address = httpHost == null
+                    ? new InetSocketAddress(InetAddress.getLoopbackAddress(), httpPort)
+                    : new InetSocketAddress(httpHost, httpPort);
+            new StatusServer(securityService, address, 4).start();
+        }
+        SecurityDaemon daemon = new SecurityDaemon(securityService, history, debouncer, System.out);
+        daemon.replication = replication;
+        daemon.printStatus();
+        try (in) {
+            String line;
+            while ((line = in.readLine()) != null && daemon.execute(line.trim())) {
+                //keep reading commands
+            }
+        }
+    }
+
+    /**
+     * Runs as the standby until told to take over.
+     * @return The repository holding the primary's state, or null if told to quit instead
+     */
+    private static SecurityRepository standBy(SecurityRepository repository, int port, BufferedReader in,
+                                              PrintStream out) throws IOException {
+        ReplicationStandby standby = new ReplicationStandby(repository, port).start();
+        out.println("standby on port " + standby.getPort() + ", type promote to take over");
+        String line;
+        while ((line = in.readLine()) != null) {
+            switch (line.trim()) {
+                case "promote" -> {
+                    SecurityRepository promoted = standby.promote();
+                    out.println("promoted at change " + standby.getApplied());
+                    return promoted;
+                }
+                case "quit" -> {
+                    standby.close();
+                    return null;
+                }
+                case "" -> { }
+                default -> {
+                    out.println((standby.isConnected() ? "replicating" : "waiting for primary")
+                            + ", applied " + standby.getApplied() + " changes in " + standby.getBatchesApplied()
+                            + " batches");
+                    if (standby.getFailures() > 0) {
+                        out.println(standby.getFailures() + " changes couldn't be applied, the last because of "
+                                + standby.getLastFailure());
+                    }
+                }
+            }
+        }
+        standby.close();
+        return null;
+    }
+
+    /**
+     * Runs a single command. A command with arguments it can't use prints its usage and does nothing.
+     * @param command The command line, see the class comment for the syntax
+     * @return false once the daemon should stop
+     */
+    public boolean execute(String command) throws IOException {
+        String[] parts = command.split("\\s+", 3);
+        switch (parts[0]) {
+            case "" -> { }
+            case "quit" -> {
+                return false;
+            }
+            case "status" -> printStatus();
+            case "disarm" -> setArmingStatus(ArmingStatus.DISARMED);
+            case "arm" -> {
+                switch (parts.length == 2 ? parts[1] : "") {
+                    case "home" -> setArmingStatus(ArmingStatus.ARMED_HOME);
+                    case "away" -> setArmingStatus(ArmingStatus.ARMED_AWAY);
+                    default -> out.println("usage: arm home|away");
+                }
+            }
+            case "add" -> {
+                Optional<SensorType> type = parts.length < 3 ? Optional.empty() : sensorType(parts[1]);
+                if (type.isEmpty()) {
+                    out.println("usage: add DOOR|WINDOW|MOTION name");
+                } else {
+                    securityService.addSensor(new Sensor(parts[2], type.get()));
+                }
+            }
+            case "remove" -> findSensor(parts).ifPresent(this::removeSensor);
+            case "activate" -> findSensor(parts).ifPresent(s -> changeSensorActivationStatus(s, true));
+            case "deactivate" -> findSensor(parts).ifPresent(s -> changeSensorActivationStatus(s, false));
+            case "heartbeat" -> findSensor(parts).ifPresent(securityService::heartbeat);
+            case "history" -> printHistory(parts);
+            case "scan" -> {
+                if (parts.length < 2) {
+                    out.println("usage: scan path/to/image [camera name]");
+                } else {
+                    scan(parts[1], parts.length > 2 ? findCamera(parts[2]) : Camera.DEFAULT);
+                }
+            }
+            default -> out.println("unknown command: " + parts[0]);
+        }
+        return true;
+    }
+
+    private static Optional<SensorType> sensorType(String name) {
+        try {
+            return Optional.of(SensorType.valueOf(name.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void scan(String file, Camera camera) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Path.of(file));
+        } catch (IOException | InvalidPathException e) {
+            out.println("unable to read " + file + ": " + e);
+            return;
+        }
+        securityService.processImage(camera, CameraImage.ofEncoded(bytes));
+    }
+
+    private void setArmingStatus(ArmingStatus armingStatus) {
+        securityService.setArmingStatus(armingStatus);
+        out.println("arming: " + armingStatus);
+    }
+
+    private void changeSensorActivationStatus(Sensor sensor, boolean active) {
+        if (debouncer == null) {
+            securityService.changeSensorActivationStatus(sensor, active);
+        } else {
+            debouncer.submit(sensor, active);
+            securityService.heartbeat(sensor); //held back or not, the sensor did report in
+        }
+    }
+
+    private void removeSensor(Sensor sensor) {
+        if (debouncer != null) {
+            debouncer.remove(sensor);
+        }
+        securityService.removeSensor(sensor);
+    }
+
+    private Optional<Sensor> findSensor(String[] parts) {
+        String name = sensorName(parts);
+        Optional<Sensor> sensor = securityService.getSensors().stream()
+                .filter(s -> s.getName().equals(name))
+                .findFirst();
+        if (sensor.isEmpty()) {
+            out.println("no sensor named " + name);
+        }
+        return sensor;
+    }
+
+    /**
+     * @return The camera with this name, registered as a new camera if there isn't one yet
+     */
+    private Camera findCamera(String name) {
+        return securityService.getCameras().stream()
+                .filter(c -> c.name().equals(name))
+                .findFirst()
+                .orElseGet(() -> new Camera(name));
+    }
+
+    private static String sensorName(String[] parts) {
+        if (parts.length < 2) {
+            return "";
+        }
+        return parts.length > 2 ? parts[1] + " " + parts[2] : parts[1];
+    }
+
+    private void printHistory(String[] parts) {
+        if (history == null) {
+            out.println("no history kept, set catpoint.history to keep one");
+            return;
+        }
+        long minutes;
+        try {
+            minutes = parts.length > 1 ? Long.parseLong(parts[1]) : 60;
+        } catch (NumberFormatException e) {
+            out.println("usage: history [minutes] [sensor name]");
+            return;
+        }
+        Optional<Sensor> sensor = parts.length > 2 ? findSensor(new String[]{parts[0], parts[2]}) : Optional.empty();
+        if (parts.length > 2 && sensor.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        history.query(now - Duration.ofMinutes(minutes).toMillis(), now, sensor.map(Sensor::getSensorId).orElse(null),
+                this::printEvent);
+    }
+
+    private void printEvent(HistoryEvent event) {
+        String subject = switch (event.type()) {
+            case SENSOR -> "sensor " + securityService.getSensors().stream()
+                    .filter(s -> s.getSensorId().equals(event.sensorId()))
+                    .map(Sensor::getName)
+                    .findFirst().orElse(String.valueOf(event.sensorId()));
+            case ALARM_STATUS -> "alarm";
+            case ARMING_STATUS -> "arming";
+            case CAT_DETECTION -> "camera";
+        };
+        out.printf("  %tF %<tT %s: %s -> %s%n", event.timestamp(), subject,
+                statusName(event.type(), event.oldStatus()), statusName(event.type(), event.newStatus()));
+    }
+
+    private static String statusName(HistoryEventType type, int status) {
+        if (status < 0) {
+            return "unknown";
+        }
+        return switch (type) {
+            case SENSOR -> status == 1 ? "Active" : "Inactive";
+            case ALARM_STATUS -> AlarmStatus.values()[status].toString();
+            case ARMING_STATUS -> ArmingStatus.values()[status].toString();
+            case CAT_DETECTION -> status == 1 ? "cat" : "no cat";
+        };
+    }
+
+    private void printStatus() {
+        out.printf("alarm: %s, arming: %s%n", securityService.getAlarmStatus(), securityService.getArmingStatus());
+        securityService.getSensors().forEach(s -> out.printf("  %s(%s): %s%n",
+                s.getName(), s.getSensorType(), s.getActive() ? "Active" : "Inactive"));
+        securityService.getCameras().forEach(c -> out.printf("  camera %s: %s%n",
+                c.name(), securityService.isCatDetected(c) ? "cat" : "no cat"));
+        if (replication != null) {
+            out.printf("  standby: %s, applied %d of %d changes, %d ms behind%n",
+                    replication.isConnected() ? "connected" : "not connected", replication.getAcknowledged(),
+                    replication.getSequence(), replication.getLag().toMillis());
+        }
+    }
+
+    @Override
+    public void notify(AlarmStatus status) {
+        out.println("alarm: " + status);
+    }
+
+    @Override
+    public void catDetected(boolean catDetected) {
+        out.println(catDetected ? "camera: cat detected" : "camera: no cat");
+    }
+
+    @Override
+    public void sensorStatusChanged() {
+        out.println("sensors reset");
+    }
+
+    @Override
+    public void sensorOffline(Sensor sensor) {
+        out.println("sensor offline: " + sensor.getName());
+    }
+}
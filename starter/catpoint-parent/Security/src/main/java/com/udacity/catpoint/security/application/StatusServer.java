@@ -0,0 +1,360 @@
+package com.udacity.catpoint.security.application;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.StateChange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the system state as JSON at {@code /status} on the JDK's built-in HTTP server, for dashboards
+ * that want to watch the system without the Swing UI.
+ *
+ * The state has a version that goes up with every {@link StateChange}, and the version, after a tag
+ * picked at random when the server is made, is the response's ETag; the tag keeps a client that saw
+ * version 5 of an earlier server from being told it is up to date with this one's. The JSON for a
+ * version is built once, the first time it is asked for, and the same
+ * bytes are served to everyone after that. A request whose {@code If-None-Match} names the current
+ * version gets 304 without anything being built.
+ *
+ * Adding {@code wait=seconds} to such a request makes it a long poll: instead of 304 straight away,
+ * the response is held back until the state changes or the wait runs out. A held-back request is only
+ * an entry in a list, not a parked thread, so thousands of idle watchers cost almost nothing. When the
+ * state changes or a wait runs out, one thread hands the requests back to the request threads to be
+ * answered, so a slow client holds up no one but itself.
+ */
+public class StatusServer implements AutoCloseable {
+
+    public static final Duration MAX_WAIT = Duration.ofSeconds(60);
+
+    private static final Gson gson = new Gson();
+    private static final long SWEEP_MILLIS = 250;
+
+    private final SecurityService securityService;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService notifier; //hands long polls back to be answered, on change or timeout
+    private final String epoch = Long.toString(new SecureRandom().nextLong() >>> 1, 36);
+
+    private volatile long version;
+    private final Object building = new Object(); //never held by anyone holding the service's lock
+    private volatile Snapshot snapshot = new Snapshot(-1, null, null);
+    private final List<Waiter> waiters = new ArrayList<>();
+    private Flow.Subscription subscription;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder serializations = new LongAdder();
+
+    /**
+     * @param address Address to listen on; port 0 picks a free port
+     * @param threads Threads that handle requests. Long polls don't hold one while they wait.
+     */
+    public StatusServer(SecurityService securityService, InetSocketAddress address, int threads) throws IOException {
+        this.securityService = securityService;
+        this.server = HttpServer.create(address, 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.handlers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "status-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.notifier = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "status-notify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/status", this::handle);
+    }
+
+    /**
+     * Starts following the service's changes and serving requests.
+     */
+    public StatusServer start() {
+        securityService.getStateChanges().subscribe(new Flow.Subscriber<StateChange>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                synchronized (StatusServer.this) {
+                    subscription = s;
+                }
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(StateChange change) {
+                changed();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                changed();
+            }
+
+            @Override
+            public void onComplete() {
+                changed();
+            }
+        });
+        notifier.scheduleWithFixedDelay(this::expireWaiters, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return Current state version, the ETag value's last part
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Number of 200 responses sent
+     */
+    public long getServed() {
+        return served.sum();
+    }
+
+    /**
+     * @return Number of 304 responses sent
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * @return Number of times the JSON was built, at most once per version
+     */
+    public long getSerializations() {
+        return serializations.sum();
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    private void changed() {
+        synchronized (this) {
+            version++;
+        }
+        notifier.execute(this::wakeWaiters);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        long seen = parseETag(exchange.getRequestHeaders().getFirst("If-None-Match"));
+        long wait = Math.min(parseWait(exchange.getRequestURI().getRawQuery()), MAX_WAIT.toMillis());
+        synchronized (this) {
+            if (seen == version && wait > 0) {
+                waiters.add(new Waiter(exchange, seen, System.nanoTime() + wait * 1_000_000));
+                return; //answered later by the notifier thread
+            }
+        }
+        respond(exchange, seen);
+    }
+
+    /**
+     * Sends 304 if the client already has the current version, otherwise the current JSON.
+     */
+    private void respond(HttpExchange exchange, long seen) {
+        try (exchange) {
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            long current = version;
+            if (seen == current) {
+                exchange.getResponseHeaders().set("ETag", etag(current));
+                notModified.increment(); //counted before the client can see it, so a count read after is exact
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            Snapshot body = snapshot();
+            exchange.getResponseHeaders().set("ETag", body.etag());
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            served.increment();
+            exchange.sendResponseHeaders(200, body.json().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body.json());
+            }
+        } catch (IOException e) {
+            //the client went away
+        }
+    }
+
+    /**
+     * @return The JSON for the current version, built now if it hasn't been yet
+     */
+    private Snapshot snapshot() {
+        synchronized (building) {
+            long current = version;
+            if (snapshot.version() != current) {
+                //changes are published before the service finishes making them, but never while it is being
+                //read, so one read sees every change counted in the version, and all of it at once
+                Map<String, Object> state = securityService.read(service -> {
+                    Map<String, Object> read = new LinkedHashMap<>();
+                    read.put("version", current);
+                    read.put("alarmStatus", service.getAlarmStatus());
+                    read.put("armingStatus", service.getArmingStatus());
+                    List<Map<String, Object>> sensors = new ArrayList<>();
+                    for (Sensor sensor : service.getSensors()) {
+                        Map<String, Object> json = new LinkedHashMap<>();
+                        json.put("id", sensor.getSensorId().toString());
+                        json.put("name", sensor.getName());
+                        json.put("type", sensor.getSensorType());
+                        json.put("active", sensor.getActive());
+                        sensors.add(json);
+                    }
+                    read.put("sensors", sensors);
+                    return read;
+                });
+                snapshot = new Snapshot(current, gson.toJson(state).getBytes(StandardCharsets.UTF_8), etag(current));
+                serializations.increment();
+            }
+            return snapshot;
+        }
+    }
+
+    private void wakeWaiters() {
+        List<Waiter> woken = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (waiter.seen() != version) {
+                    it.remove();
+                    woken.add(waiter);
+                }
+            }
+        }
+        respondLater(woken);
+    }
+
+    private void expireWaiters() {
+        long now = System.nanoTime();
+        List<Waiter> expired = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (now - waiter.deadline() >= 0) {
+                    it.remove();
+                    expired.add(waiter);
+                }
+            }
+        }
+        respondLater(expired);
+    }
+
+    /**
+     * Answers held-back requests on the request threads, so writing to them doesn't hold up the notifier.
+     */
+    private void respondLater(List<Waiter> waiters) {
+        for (Waiter waiter : waiters) {
+            try {
+                handlers.execute(() -> respond(waiter.exchange(), waiter.seen()));
+            } catch (RejectedExecutionException e) {
+                respond(waiter.exchange(), waiter.seen()); //closing
+            }
+        }
+    }
+
+    private String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * @return The version named by an If-None-Match header, or -1 if it names none of this server's
+     */
+    private long parseETag(String header) {
+        if (header == null) {
+            return -1;
+        }
+        String value = header.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        String prefix = "\"" + epoch + "-";
+        if (!value.startsWith(prefix) || value.length() <= prefix.length() + 1 || !value.endsWith("\"")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring(prefix.length(), value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return Milliseconds from a {@code wait=seconds} query parameter, or 0 if there is none
+     */
+    private static long parseWait(String query) {
+        if (query == null) {
+            return 0;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("wait=")) {
+                try {
+                    return Math.max(0, (long) (Double.parseDouble(parameter.substring(5)) * 1000));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stops serving, answers any held-back requests with what they already have and stops following
+     * the service.
+     */
+    @Override
+    public void close() {
+        Flow.Subscription s;
+        List<Waiter> pending;
+        synchronized (this) {
+            s = subscription;
+            subscription = null;
+            pending = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        if (s != null) {
+            s.cancel();
+        }
+        pending.forEach(waiter -> respond(waiter.exchange(), waiter.seen()));
+        server.stop(0);
+        notifier.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private record Snapshot(long version, byte[] json, String etag) {
+    }
+
+    private record Waiter(HttpExchange exchange, long seen, long deadline) {
+    }
+}
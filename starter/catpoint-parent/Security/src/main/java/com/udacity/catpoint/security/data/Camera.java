@@ -0,0 +1,19 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.UUID;
+
+/**
+ * A camera whose frames are scanned for cats. Each camera's latest answer is kept separately, so one
+ * camera seeing nothing doesn't cancel out another that sees a cat.
+ */
+public record Camera(UUID cameraId, String name) {
+
+    /**
+     * The camera that frames with no camera of their own are taken to come from.
+     */
+    public static final Camera DEFAULT = new Camera(new UUID(0, 0), "Camera");
+
+    public Camera(String name) {
+        this(UUID.randomUUID(), name);
+    }
+}
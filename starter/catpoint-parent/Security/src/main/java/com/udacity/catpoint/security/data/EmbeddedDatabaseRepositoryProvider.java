@@ -0,0 +1,19 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * Provides {@link EmbeddedDatabaseSecurityRepositoryImpl} at the URL in {@code catpoint.repository.url},
+ * or the default file database if that isn't set.
+ */
+public class EmbeddedDatabaseRepositoryProvider implements SecurityRepositoryProvider {
+
+    @Override
+    public String name() {
+        return "embedded";
+    }
+
+    @Override
+    public SecurityRepository create() {
+        return new EmbeddedDatabaseSecurityRepositoryImpl(
+                System.getProperty("catpoint.repository.url", EmbeddedDatabaseSecurityRepositoryImpl.DEFAULT_URL));
+    }
+}
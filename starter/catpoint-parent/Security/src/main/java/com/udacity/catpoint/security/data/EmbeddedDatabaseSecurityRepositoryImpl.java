@@ -0,0 +1,243 @@
+package com.udacity.catpoint.security.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Repository implementation backed by an embedded, in-process H2 database. A single connection
+ * and a handful of prepared statements are opened when the repository is created and reused
+ * until it is closed.
+ *
+ * Sensors are stored in a table keyed by their UUID, so adding, removing or updating a sensor
+ * costs the same no matter how many sensors are stored. Bulk updates are sent as one JDBC batch.
+ */
+public class EmbeddedDatabaseSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    public static final String DEFAULT_URL = "jdbc:h2:./catpoint";
+
+    //status keys
+    private static final String ALARM_STATUS = "ALARM_STATUS";
+    private static final String ARMING_STATUS = "ARMING_STATUS";
+
+    private static final String CREATE_SENSORS = "CREATE TABLE IF NOT EXISTS sensors (" +
+            "sensor_id UUID PRIMARY KEY, " +
+            "name VARCHAR(255) NOT NULL, " +
+            "sensor_type VARCHAR(16) NOT NULL, " +
+            "active BOOLEAN NOT NULL)";
+    private static final String CREATE_STATUS = "CREATE TABLE IF NOT EXISTS system_status (" +
+            "status_key VARCHAR(32) PRIMARY KEY, " +
+            "status_value VARCHAR(32) NOT NULL)";
+
+    private final Connection connection;
+    private final PreparedStatement upsertSensor;
+    private final PreparedStatement deleteSensor;
+    private final PreparedStatement upsertStatus;
+    private final PreparedStatement resetSensors;
+
+    //in-memory copy of the sensors table so reads never hit the database
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    //sorted, read-only copy handed out by getSensors; only rebuilt once sensors are added, removed or replaced
+    private Set<Sensor> sorted;
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    public EmbeddedDatabaseSecurityRepositoryImpl() {
+        this(DEFAULT_URL);
+    }
+
+    /**
+     * Opens (or creates) the database at the given JDBC url. Use a url such as
+     * {@code jdbc:h2:mem:catpoint} for a database that only lives in memory.
+     * @param jdbcUrl The url of the embedded database
+     */
+    public EmbeddedDatabaseSecurityRepositoryImpl(String jdbcUrl) {
+        try {
+            connection = DriverManager.getConnection(jdbcUrl);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_SENSORS);
+                statement.execute(CREATE_STATUS);
+            }
+            upsertSensor = connection.prepareStatement(
+                    "MERGE INTO sensors (sensor_id, name, sensor_type, active) KEY (sensor_id) VALUES (?, ?, ?, ?)");
+            deleteSensor = connection.prepareStatement("DELETE FROM sensors WHERE sensor_id = ?");
+            upsertStatus = connection.prepareStatement(
+                    "MERGE INTO system_status (status_key, status_value) KEY (status_key) VALUES (?, ?)");
+            resetSensors = connection.prepareStatement("UPDATE sensors SET active = FALSE WHERE active");
+            load();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to open security database at " + jdbcUrl, e);
+        }
+    }
+
+    /**
+     * Reads the stored system state into memory. Called once when the repository is opened.
+     */
+    private void load() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT sensor_id, name, sensor_type, active FROM sensors")) {
+                while (rs.next()) {
+                    Sensor sensor = new Sensor(rs.getString(2), SensorType.valueOf(rs.getString(3)),
+                            rs.getObject(1, UUID.class));
+                    sensor.setActive(rs.getBoolean(4));
+                    sensors.put(sensor.getSensorId(), sensor);
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT status_key, status_value FROM system_status")) {
+                while (rs.next()) {
+                    switch (rs.getString(1)) {
+                        case ALARM_STATUS -> alarmStatus = AlarmStatus.valueOf(rs.getString(2));
+                        case ARMING_STATUS -> armingStatus = ArmingStatus.valueOf(rs.getString(2));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        updateSensor(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        try {
+            deleteSensor.setObject(1, sensor.getSensorId());
+            deleteSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to remove sensor " + sensor.getSensorId(), e);
+        }
+        if (sensors.remove(sensor.getSensorId()) != null) {
+            sorted = null;
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        try {
+            bindSensor(sensor);
+            upsertSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to store sensor " + sensor.getSensorId(), e);
+        }
+        store(sensor);
+    }
+
+    private void store(Sensor sensor) {
+        if (sensors.put(sensor.getSensorId(), sensor) != sensor) {
+            sorted = null;
+        }
+    }
+
+    /**
+     * Writes all the provided sensors in a single batch and transaction.
+     * @param updated The sensors to update
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> updated) {
+        if (updated.isEmpty()) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(false);
+            try {
+                for (Sensor sensor : updated) {
+                    bindSensor(sensor);
+                    upsertSensor.addBatch();
+                }
+                upsertSensor.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                upsertSensor.clearBatch();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to store " + updated.size() + " sensors", e);
+        }
+        updated.forEach(this::store);
+    }
+
+    private void bindSensor(Sensor sensor) throws SQLException {
+        upsertSensor.setObject(1, sensor.getSensorId());
+        upsertSensor.setString(2, sensor.getName());
+        upsertSensor.setString(3, sensor.getSensorType().name());
+        upsertSensor.setBoolean(4, sensor.getActive());
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        writeStatus(ALARM_STATUS, alarmStatus.name());
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        writeStatus(ARMING_STATUS, armingStatus.name());
+        this.armingStatus = armingStatus;
+    }
+
+    private void writeStatus(String key, String value) {
+        try {
+            upsertStatus.setString(1, key);
+            upsertStatus.setString(2, value);
+            upsertStatus.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to store " + key, e);
+        }
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        if (sorted == null) {
+            sorted = Collections.unmodifiableSet(new TreeSet<>(sensors.values()));
+        }
+        return sorted;
+    }
+
+    @Override
+    public Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public void resetSensors() {
+        try {
+            resetSensors.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to reset sensors", e);
+        }
+        sensors.values().forEach(sensor -> sensor.setActive(false));
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to close security database", e);
+        }
+    }
+}
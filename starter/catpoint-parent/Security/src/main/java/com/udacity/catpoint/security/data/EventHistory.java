@@ -0,0 +1,445 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only record of sensor changes, alarm and arming changes and cat detections, kept in a
+ * directory of memory-mapped segment files.
+ *
+ * Every event is a fixed 16 byte record: timestamp (long), sensor slot (int, -1 for none), type, old
+ * status and new status (bytes) and a spare byte. Segments hold a fixed number of records behind a
+ * small header (magic, version, record count). Each segment keeps the timestamp of every 1024th
+ * record in memory, so a time range query binary searches that sparse index and then scans forward.
+ *
+ * Sensors are stored by slot rather than by id, and the slot numbers are kept in sensors.dat: one
+ * 16 byte id per slot, in slot order. A new segment is started when the current one is full or older
+ * than the maximum age, and whole segments are deleted once everything in them is past the retention.
+ * A segment is deleted once no query is still reading it. Windows won't delete a file while it is still
+ * mapped, and a mapping only goes once its buffer is garbage collected, so a delete refused by the file
+ * system is tried again each time a new segment is started.
+ *
+ * Timestamps never go backwards: an event stamped earlier than the last one is stored at the time of
+ * the last one, so each segment stays sorted.
+ */
+public class EventHistory implements AutoCloseable {
+
+    public static final int RECORD_SIZE = 16;
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    private static final int MAGIC = 0x43544556; //"CTEV"
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int INDEX_INTERVAL = 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SENSORS_FILE = "sensors.dat";
+
+    private final Path directory;
+    private final Clock clock;
+    private final int segmentRecords;
+    private final long maxSegmentAgeMillis;
+    private final long retentionMillis;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private Segment active;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private final Queue<Path> undeleted = new ConcurrentLinkedQueue<>(); //retired segments the file system kept
+
+    private final FileChannel sensorsFile;
+    private final Map<UUID, Integer> sensorSlots = new ConcurrentHashMap<>();
+    private final List<UUID> slotSensors = new CopyOnWriteArrayList<>();
+
+    /**
+     * Opens the history in a directory with the default sizes: 16MB segments, a new segment at least
+     * every hour, and a week of retention.
+     */
+    public EventHistory(Path directory) {
+        this(directory, Clock.systemUTC(), DEFAULT_SEGMENT_RECORDS, Duration.ofHours(1), Duration.ofDays(7));
+    }
+
+    /**
+     * Opens the history in a directory, creating it if needed and picking up any segments already there.
+     * @param segmentRecords How many records fit in one segment
+     * @param maxSegmentAge How long a segment is written to before a new one is started
+     * @param retention How long events are kept. Whole segments are deleted, so some events may be kept
+     *                  for up to one segment longer.
+     */
+    public EventHistory(Path directory, Clock clock, int segmentRecords, Duration maxSegmentAge, Duration retention) {
+        this.directory = directory;
+        this.clock = clock;
+        this.segmentRecords = segmentRecords;
+        this.maxSegmentAgeMillis = maxSegmentAge.toMillis();
+        this.retentionMillis = retention.toMillis();
+        try {
+            Files.createDirectories(directory);
+            sensorsFile = FileChannel.open(directory.resolve(SENSORS_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            loadSensorSlots();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                    segments.add(Segment.open(file));
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        if (!segments.isEmpty()) {
+            active = segments.get(segments.size() - 1);
+            if (active.count > 0) {
+                lastTimestamp = active.lastTimestamp;
+            }
+        }
+    }
+
+    private void loadSensorSlots() throws IOException {
+        ByteBuffer ids = ByteBuffer.allocate((int) sensorsFile.size());
+        while (ids.hasRemaining() && sensorsFile.read(ids, ids.position()) >= 0) {
+            //keep reading until the whole file is in
+        }
+        ids.flip();
+        while (ids.remaining() >= 16) {
+            UUID id = new UUID(ids.getLong(), ids.getLong());
+            sensorSlots.put(id, slotSensors.size());
+            slotSensors.add(id);
+        }
+    }
+
+    /**
+     * @return The slot stored in records for this sensor, assigned on first use
+     */
+    public synchronized int sensorSlot(UUID sensorId) {
+        Integer slot = sensorSlots.get(sensorId);
+        if (slot != null) {
+            return slot;
+        }
+        ByteBuffer id = ByteBuffer.allocate(16)
+                .putLong(sensorId.getMostSignificantBits())
+                .putLong(sensorId.getLeastSignificantBits())
+                .flip();
+        try {
+            sensorsFile.write(id, (long) slotSensors.size() * 16);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        slotSensors.add(sensorId);
+        sensorSlots.put(sensorId, slotSensors.size() - 1);
+        return slotSensors.size() - 1;
+    }
+
+    public void recordSensor(UUID sensorId, boolean wasActive, boolean active) {
+        append(clock.millis(), HistoryEventType.SENSOR, sensorSlot(sensorId), wasActive ? 1 : 0, active ? 1 : 0);
+    }
+
+    public void recordAlarmStatus(AlarmStatus oldStatus, AlarmStatus newStatus) {
+        append(clock.millis(), HistoryEventType.ALARM_STATUS, -1, ordinal(oldStatus), ordinal(newStatus));
+    }
+
+    public void recordArmingStatus(ArmingStatus oldStatus, ArmingStatus newStatus) {
+        append(clock.millis(), HistoryEventType.ARMING_STATUS, -1, ordinal(oldStatus), ordinal(newStatus));
+    }
+
+    public void recordCatDetection(boolean hadCat, boolean hasCat) {
+        append(clock.millis(), HistoryEventType.CAT_DETECTION, -1, hadCat ? 1 : 0, hasCat ? 1 : 0);
+    }
+
+    private static int ordinal(Enum<?> status) {
+        return status == null ? -1 : status.ordinal();
+    }
+
+    /**
+     * Appends one record. This is the whole write path: a few puts into the mapped segment.
+     * @param sensorSlot Slot from {@link #sensorSlot(UUID)}, or -1
+     */
+    public synchronized void append(long timestamp, HistoryEventType type, int sensorSlot, int oldStatus, int newStatus) {
+        timestamp = Math.max(timestamp, lastTimestamp);
+        if (active == null || active.count == active.capacity
+                || (active.count > 0 && timestamp - active.firstTimestamp >= maxSegmentAgeMillis)) {
+            roll(timestamp);
+        }
+        active.append(timestamp, sensorSlot, (byte) type.ordinal(), (byte) oldStatus, (byte) newStatus);
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Starts a new segment and drops any old ones that are entirely past the retention.
+     */
+    private void roll(long now) {
+        try {
+            if (active != null) {
+                active.buffer.force();
+            }
+            sensorsFile.force(true);
+            long sequence = active == null ? 0 : active.sequence + 1;
+            active = Segment.create(directory.resolve(String.format("%016x%s", sequence, SEGMENT_SUFFIX)),
+                    sequence, segmentRecords);
+            segments.add(active);
+            for (int i = undeleted.size(); i > 0; i--) {
+                Path file = undeleted.poll();
+                if (file != null) {
+                    delete(file);
+                }
+            }
+            for (Segment segment : segments) {
+                if (segment != active && segment.lastTimestamp < now - retentionMillis) {
+                    segments.remove(segment);
+                    if (segment.retire()) {
+                        delete(segment.file);
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Finds the events in a time range, oldest first.
+     * @param fromMillis Start of the range, inclusive
+     * @param toMillis End of the range, inclusive
+     * @param sensorId Only return events for this sensor, or null for every event
+     */
+    public List<HistoryEvent> query(long fromMillis, long toMillis, UUID sensorId) {
+        List<HistoryEvent> events = new ArrayList<>();
+        query(fromMillis, toMillis, sensorId, events::add);
+        return events;
+    }
+
+    public void query(long fromMillis, long toMillis, UUID sensorId, Consumer<HistoryEvent> consumer) {
+        int slot = -1;
+        if (sensorId != null) {
+            Integer known = sensorSlots.get(sensorId);
+            if (known == null) {
+                return;
+            }
+            slot = known;
+        }
+        HistoryEventType[] types = HistoryEventType.values();
+        for (Segment segment : segments) {
+            int count = segment.count; //records below this are complete
+            if (count == 0 || segment.firstTimestamp > toMillis || segment.lastTimestamp < fromMillis) {
+                continue;
+            }
+            if (!segment.acquire()) {
+                continue; //deleted since the list was read
+            }
+            try {
+                scan(segment, count, fromMillis, toMillis, sensorId, slot, types, consumer);
+            } finally {
+                if (segment.release()) {
+                    try {
+                        delete(segment.file);
+                    } catch (IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a retired segment's file, or leaves it to be tried again if the file system refuses while
+     * the mapping is still alive.
+     */
+    private void delete(Path file) throws IOException {
+        try {
+            Files.deleteIfExists(file);
+        } catch (FileSystemException fse) {
+            undeleted.add(file);
+        }
+    }
+
+    /**
+     * Passes on the segment's records in the range. The caller keeps the segment acquired meanwhile.
+     */
+    private void scan(Segment segment, int count, long fromMillis, long toMillis, UUID sensorId, int slot,
+                      HistoryEventType[] types, Consumer<HistoryEvent> consumer) {
+        for (int i = segment.firstAtOrAfter(fromMillis, count); i < count; i++) {
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            long timestamp = segment.buffer.getLong(offset);
+            if (timestamp > toMillis) {
+                break;
+            }
+            int recordSlot = segment.buffer.getInt(offset + 8);
+            if (timestamp < fromMillis || (sensorId != null && recordSlot != slot)) {
+                continue;
+            }
+            consumer.accept(new HistoryEvent(timestamp, types[segment.buffer.get(offset + 12)],
+                    recordSlot < 0 ? null : slotSensors.get(recordSlot),
+                    segment.buffer.get(offset + 13), segment.buffer.get(offset + 14)));
+        }
+    }
+
+    /**
+     * @return The number of segment files currently kept
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (active != null) {
+                active.buffer.force();
+            }
+            sensorsFile.force(true);
+            sensorsFile.close();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * One mapped segment file. Only the writer changes it; readers look at records below
+     * {@link #count}, which is published after each record is complete.
+     */
+    private static final class Segment {
+        private final Path file;
+        private final long sequence;
+        private MappedByteBuffer buffer; //dropped once retired and unread, so the mapping can be collected
+        private final int capacity;
+        private final long[] index; //timestamp of every INDEX_INTERVAL-th record
+        private volatile int count;
+        private volatile long firstTimestamp;
+        private volatile long lastTimestamp;
+        private int readers;     //queries reading the buffer, guarded by the segment
+        private boolean retired; //deleted once no query is reading it, guarded by the segment
+
+        private Segment(Path file, long sequence, MappedByteBuffer buffer, int capacity) {
+            this.file = file;
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.index = new long[(capacity + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+        }
+
+        static Segment create(Path file, long sequence, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER_SIZE + (long) capacity * RECORD_SIZE);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(COUNT_OFFSET, 0);
+                return new Segment(file, sequence, buffer, capacity);
+            }
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Not a catpoint event segment: " + file);
+                }
+                String name = file.getFileName().toString();
+                long sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+                Segment segment = new Segment(file, sequence, buffer, (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+                int count = buffer.getInt(COUNT_OFFSET);
+                for (int i = 0; i < count; i += INDEX_INTERVAL) {
+                    segment.index[i / INDEX_INTERVAL] = buffer.getLong(HEADER_SIZE + i * RECORD_SIZE);
+                }
+                if (count > 0) {
+                    segment.firstTimestamp = buffer.getLong(HEADER_SIZE);
+                    segment.lastTimestamp = buffer.getLong(HEADER_SIZE + (count - 1) * RECORD_SIZE);
+                }
+                segment.count = count;
+                return segment;
+            }
+        }
+
+        /**
+         * Keeps the segment mapped while a query reads it.
+         * @return false if the segment has been retired, and must not be read
+         */
+        synchronized boolean acquire() {
+            if (retired) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        /**
+         * @return true if the segment was retired meanwhile and this was its last reader, so its file can
+         *         now be deleted
+         */
+        synchronized boolean release() {
+            if (--readers == 0 && retired) {
+                buffer = null;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Stops the segment being read, now or when the last query reading it finishes.
+         * @return true if no query is reading it, so its file can be deleted now
+         */
+        synchronized boolean retire() {
+            retired = true;
+            if (readers == 0) {
+                buffer = null;
+                return true;
+            }
+            return false;
+        }
+
+        void append(long timestamp, int sensorSlot, byte type, byte oldStatus, byte newStatus) {
+            int i = count;
+            int offset = HEADER_SIZE + i * RECORD_SIZE;
+            buffer.putLong(offset, timestamp);
+            buffer.putInt(offset + 8, sensorSlot);
+            buffer.put(offset + 12, type);
+            buffer.put(offset + 13, oldStatus);
+            buffer.put(offset + 14, newStatus);
+            if (i % INDEX_INTERVAL == 0) {
+                index[i / INDEX_INTERVAL] = timestamp;
+            }
+            if (i == 0) {
+                firstTimestamp = timestamp;
+            }
+            lastTimestamp = timestamp;
+            buffer.putInt(COUNT_OFFSET, i + 1);
+            count = i + 1;
+        }
+
+        /**
+         * @return A record position at or before the first record stamped at or after the time
+         */
+        int firstAtOrAfter(long timestamp, int count) {
+            int entries = (count + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+            int low = 0;
+            int high = entries; //find the first index entry at or after the time
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (index[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            //records just before that entry may still be at or after the time
+            return Math.max(0, low - 1) * INDEX_INTERVAL;
+        }
+    }
+}
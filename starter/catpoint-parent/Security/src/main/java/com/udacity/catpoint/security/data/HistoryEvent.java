@@ -0,0 +1,14 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.UUID;
+
+/**
+ * One entry read back from the {@link EventHistory}.
+ * @param timestamp When it happened, in epoch millis
+ * @param sensorId The sensor involved, or null for events that aren't about a sensor
+ * @param oldStatus Status before the event, see {@link HistoryEventType} for what the numbers mean.
+ *                  -1 if it wasn't known.
+ * @param newStatus Status after the event
+ */
+public record HistoryEvent(long timestamp, HistoryEventType type, UUID sensorId, int oldStatus, int newStatus) {
+}
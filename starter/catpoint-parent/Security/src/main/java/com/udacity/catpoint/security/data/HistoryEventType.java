@@ -0,0 +1,15 @@
+package com.udacity.catpoint.security.data;
+
+/**
+ * Kinds of event kept in the {@link EventHistory}, and what their old and new status values mean.
+ */
+public enum HistoryEventType {
+    /** A sensor changed activation. The statuses are 1 for active and 0 for inactive. */
+    SENSOR,
+    /** The alarm status changed. The statuses are {@link AlarmStatus} ordinals. */
+    ALARM_STATUS,
+    /** The arming status changed. The statuses are {@link ArmingStatus} ordinals. */
+    ARMING_STATUS,
+    /** The camera was checked for a cat. The statuses are 1 for a cat and 0 for none. */
+    CAT_DETECTION
+}
@@ -0,0 +1,14 @@
+package com.udacity.catpoint.security.data;
+
+public class InMemoryRepositoryProvider implements SecurityRepositoryProvider {
+
+    @Override
+    public String name() {
+        return "memory";
+    }
+
+    @Override
+    public SecurityRepository create() {
+        return new InMemorySecurityRepositoryImpl();
+    }
+}
@@ -0,0 +1,69 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repository that keeps its state in memory only, for load runs, replays and tests that don't need
+ * it to outlive the process. Updating a sensor that is already stored doesn't allocate, so it adds
+ * nothing to the cost of the service's activation path.
+ */
+public class InMemorySecurityRepositoryImpl implements SecurityRepository {
+
+    private final Map<UUID, Sensor> sensors = new ConcurrentHashMap<>();
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.put(sensor.getSensorId(), sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor.getSensorId());
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        sensors.put(sensor.getSensorId(), sensor);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return new TreeSet<>(sensors.values());
+    }
+
+    @Override
+    public Sensor findSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    @Override
+    public void resetSensors() {
+        sensors.values().forEach(s -> s.setActive(false));
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
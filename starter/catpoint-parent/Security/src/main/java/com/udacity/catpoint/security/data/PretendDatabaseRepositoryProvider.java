@@ -0,0 +1,14 @@
+package com.udacity.catpoint.security.data;
+
+public class PretendDatabaseRepositoryProvider implements SecurityRepositoryProvider {
+
+    @Override
+    public String name() {
+        return "pretend";
+    }
+
+    @Override
+    public SecurityRepository create() {
+        return new PretendDatabaseSecurityRepositoryImpl();
+    }
+}
@@ -26,10 +26,20 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
 
-    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
     private static final Gson gson = new Gson(); //used to serialize objects into JSON
 
+    private final Preferences prefs;
+
     public PretendDatabaseSecurityRepositoryImpl() {
+        this(Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class));
+    }
+
+    /**
+     * Creates a repository that keeps its state under the given preferences node, so several
+     * repositories (or tests) can each have their own.
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Preferences prefs) {
+        this.prefs = prefs;
         //load system state from prefs, or else default
         alarmStatus = AlarmStatus.valueOf(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString()));
         armingStatus = ArmingStatus.valueOf(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString()));
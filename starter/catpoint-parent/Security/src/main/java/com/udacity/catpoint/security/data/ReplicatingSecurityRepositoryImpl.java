@@ -0,0 +1,376 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository decorator for the primary of a hot-standby pair. Every change is made to the backing
+ * repository and also streamed to a {@link ReplicationStandby}, which makes the same change to its own
+ * repository and can take over with that state if the primary goes away.
+ *
+ * Changes are encoded as they are made, in the order they are made, and numbered. A sender thread
+ * ships whatever has built up since its last write as one batch, so batches grow on their own when
+ * changes come in faster than the network takes them. Batches are pipelined: the sender doesn't wait
+ * for the standby's acknowledgement before sending the next one, and acknowledgements are read on a
+ * thread of their own. Changes never wait for the network either.
+ *
+ * While no standby is connected changes aren't recorded at all. The sender keeps reconnecting, and
+ * each new connection starts with the complete current state, so a standby that restarts or missed
+ * changes catches up in one step.
+ */
+public class ReplicatingSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private static final long RECONNECT_MILLIS = 200;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final SecurityRepository backing;
+    private final InetSocketAddress standby;
+
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream(4096);
+    private final DataOutputStream batchOut = new DataOutputStream(batch);
+    private int batchRecords;
+    private long batchStartedAt;
+    private final ArrayDeque<long[]> inFlight = new ArrayDeque<>(); //last sequence and start time of each unacknowledged batch
+
+    private long sequence;
+    private long acknowledged;
+    private long recordsSent;
+    private long bytesSent;
+    private long batchesSent;
+    private long lastLagNanos;
+    private long maxLagNanos;
+
+    private Socket connection;
+    private Thread sender;
+    private boolean running;
+
+    /**
+     * @param backing The primary's own repository, which is read from and written to as usual
+     * @param standby Where the standby listens
+     */
+    public ReplicatingSecurityRepositoryImpl(SecurityRepository backing, InetSocketAddress standby) {
+        this.backing = backing;
+        this.standby = standby;
+    }
+
+    /**
+     * Starts the sender thread, which connects to the standby and keeps reconnecting when it has to.
+     */
+    public synchronized ReplicatingSecurityRepositoryImpl start() {
+        if (sender == null) {
+            running = true;
+            sender = new Thread(this::send, "replication-sender");
+            sender.setDaemon(true);
+            sender.start();
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        backing.addSensor(sensor);
+        record(ReplicationProtocol.ADD_SENSOR, out -> ReplicationProtocol.writeSensor(out, sensor));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        backing.removeSensor(sensor);
+        record(ReplicationProtocol.REMOVE_SENSOR, out -> ReplicationProtocol.writeSensor(out, sensor));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        backing.updateSensor(sensor);
+        record(ReplicationProtocol.UPDATE_SENSOR, out -> ReplicationProtocol.writeSensor(out, sensor));
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        backing.updateSensors(sensors);
+        record(ReplicationProtocol.UPDATE_SENSORS, out -> ReplicationProtocol.writeSensors(out, sensors));
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        backing.setAlarmStatus(alarmStatus);
+        record(ReplicationProtocol.ALARM_STATUS, out -> out.writeByte(alarmStatus.ordinal()));
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        backing.setArmingStatus(armingStatus);
+        record(ReplicationProtocol.ARMING_STATUS, out -> out.writeByte(armingStatus.ordinal()));
+    }
+
+    @Override
+    public synchronized void resetSensors() {
+        backing.resetSensors();
+        record(ReplicationProtocol.RESET_SENSORS, out -> { });
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return backing.getSensors();
+    }
+
+    @Override
+    public Sensor findSensor(UUID sensorId) {
+        return backing.findSensor(sensorId);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return backing.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return backing.getArmingStatus();
+    }
+
+    /**
+     * @return True while a standby is connected and receiving changes
+     */
+    public synchronized boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * @return Sequence number of the last change recorded for the standby
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return Sequence number of the last change the standby has applied
+     */
+    public synchronized long getAcknowledged() {
+        return acknowledged;
+    }
+
+    public synchronized long getRecordsSent() {
+        return recordsSent;
+    }
+
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized long getBatchesSent() {
+        return batchesSent;
+    }
+
+    /**
+     * @return How long the oldest change the standby hasn't applied yet has been waiting, or zero if it
+     *         is up to date
+     */
+    public synchronized Duration getLag() {
+        long oldest = batchRecords > 0 ? batchStartedAt : inFlight.isEmpty() ? 0 : inFlight.peek()[1];
+        return oldest == 0 ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - oldest);
+    }
+
+    /**
+     * @return Time from the first change of the last acknowledged batch to its acknowledgement
+     */
+    public synchronized Duration getLastBatchLag() {
+        return Duration.ofNanos(lastLagNanos);
+    }
+
+    public synchronized Duration getMaxBatchLag() {
+        return Duration.ofNanos(maxLagNanos);
+    }
+
+    /**
+     * Waits until the standby has applied every change recorded so far, as before a planned handover.
+     * @return False if it hasn't by the timeout, or no standby is connected
+     */
+    public synchronized boolean awaitReplicated(Duration timeout) throws InterruptedException {
+        long target = sequence;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (acknowledged < target) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || connection == null) {
+                return false;
+            }
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+        return true;
+    }
+
+    /**
+     * Encodes a change for the standby, if one is connected, and wakes the sender.
+     */
+    private void record(byte type, RecordBody body) {
+        if (connection == null) {
+            return; //the next connection starts with the full state
+        }
+        try {
+            batchOut.writeByte(type);
+            body.write(batchOut);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //writing to memory doesn't fail
+        }
+        if (batchRecords == 0) {
+            batchStartedAt = System.nanoTime();
+        }
+        batchRecords++;
+        sequence++;
+        notifyAll();
+    }
+
+    private void send() {
+        while (isRunning()) {
+            try (Socket socket = new Socket()) {
+                socket.connect(standby, CONNECT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                out.writeInt(ReplicationProtocol.MAGIC);
+                out.writeInt(ReplicationProtocol.VERSION);
+                synchronized (this) {
+                    batch.reset();
+                    batchRecords = 0;
+                    inFlight.clear();
+                    acknowledged = sequence;
+                    connection = socket;
+                    record(ReplicationProtocol.FULL_STATE, o -> ReplicationProtocol.writeFullState(o,
+                            backing.getAlarmStatus(), backing.getArmingStatus(), backing.getSensors()));
+                }
+                InputStream acks = socket.getInputStream();
+                Thread reader = new Thread(() -> readAcks(socket, acks), "replication-acks");
+                reader.setDaemon(true);
+                reader.start();
+                sendBatches(socket, out);
+            } catch (IOException e) {
+                //standby not there or gone, try again shortly
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                synchronized (this) {
+                    connection = null;
+                    batch.reset();
+                    batchRecords = 0;
+                    inFlight.clear();
+                    notifyAll();
+                }
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sendBatches(Socket socket, DataOutputStream out) throws IOException, InterruptedException {
+        while (true) {
+            byte[] records;
+            int count;
+            long last;
+            synchronized (this) {
+                while (running && batchRecords == 0 && !socket.isClosed()) {
+                    wait(RECONNECT_MILLIS);
+                }
+                if (!running || socket.isClosed()) {
+                    return;
+                }
+                records = batch.toByteArray();
+                count = batchRecords;
+                last = sequence;
+                inFlight.add(new long[] {last, batchStartedAt});
+                batch.reset();
+                batchRecords = 0;
+            }
+            out.writeInt(count);
+            out.writeLong(last);
+            out.writeInt(records.length);
+            out.write(records);
+            out.flush();
+            synchronized (this) {
+                recordsSent += count;
+                bytesSent += 16 + records.length;
+                batchesSent++;
+            }
+        }
+    }
+
+    private void readAcks(Socket socket, InputStream acks) {
+        try {
+            DataInputStream in = new DataInputStream(acks);
+            while (true) {
+                long applied = in.readLong();
+                long now = System.nanoTime();
+                synchronized (this) {
+                    while (!inFlight.isEmpty() && inFlight.peek()[0] <= applied) {
+                        lastLagNanos = now - inFlight.poll()[1];
+                        maxLagNanos = Math.max(maxLagNanos, lastLagNanos);
+                    }
+                    acknowledged = Math.max(acknowledged, applied);
+                    notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            try {
+                socket.close(); //wakes the sender, which reconnects
+            } catch (IOException ignored) {
+                //already closed
+            }
+        }
+    }
+
+    private synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops replicating and closes the backing repository if it can be closed.
+     */
+    @Override
+    public void close() {
+        Thread stopping;
+        synchronized (this) {
+            running = false;
+            stopping = sender;
+            sender = null;
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    //closing anyway
+                }
+            }
+            notifyAll();
+        }
+        if (stopping != null) {
+            stopping.interrupt();
+            try {
+                stopping.join(CONNECT_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (backing instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to close backing repository", e);
+            }
+        }
+    }
+
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
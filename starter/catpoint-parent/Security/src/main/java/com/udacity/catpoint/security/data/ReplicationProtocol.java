@@ -0,0 +1,107 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Wire format shared by {@link ReplicatingSecurityRepositoryImpl} and {@link ReplicationStandby}.
+ *
+ * The primary opens with the magic and version as ints, then sends batches: record count (int),
+ * sequence number of the last record (long), byte length (int) and the records. Each record is a
+ * type byte followed by its payload. A sensor is written as its id (two longs), type ordinal (byte),
+ * active flag (byte) and name (modified UTF-8). The standby answers each batch it has applied with
+ * the batch's last sequence number (long).
+ *
+ * A connection always starts with a {@link #FULL_STATE} record, so the standby never depends on what
+ * it was sent over an earlier connection.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x43545250; //"CTRP"
+    static final int VERSION = 1;
+
+    static final byte FULL_STATE = 1;
+    static final byte ADD_SENSOR = 2;
+    static final byte REMOVE_SENSOR = 3;
+    static final byte UPDATE_SENSOR = 4;
+    static final byte UPDATE_SENSORS = 5;
+    static final byte ALARM_STATUS = 6;
+    static final byte ARMING_STATUS = 7;
+    static final byte RESET_SENSORS = 8;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeFullState(DataOutput out, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                               Collection<Sensor> sensors) throws IOException {
+        out.writeByte(alarmStatus.ordinal());
+        out.writeByte(armingStatus.ordinal());
+        writeSensors(out, sensors);
+    }
+
+    static void writeSensors(DataOutput out, Collection<Sensor> sensors) throws IOException {
+        out.writeInt(sensors.size());
+        for (Sensor sensor : sensors) {
+            writeSensor(out, sensor);
+        }
+    }
+
+    static void writeSensor(DataOutput out, Sensor sensor) throws IOException {
+        out.writeLong(sensor.getSensorId().getMostSignificantBits());
+        out.writeLong(sensor.getSensorId().getLeastSignificantBits());
+        out.writeByte(sensor.getSensorType().ordinal());
+        out.writeBoolean(Boolean.TRUE.equals(sensor.getActive()));
+        out.writeUTF(sensor.getName() == null ? "" : sensor.getName());
+    }
+
+    static Sensor readSensor(DataInput in) throws IOException {
+        UUID id = new UUID(in.readLong(), in.readLong());
+        SensorType type = SensorType.values()[in.readUnsignedByte()];
+        boolean active = in.readBoolean();
+        Sensor sensor = new Sensor(in.readUTF(), type, id);
+        sensor.setActive(active);
+        return sensor;
+    }
+
+    private static List<Sensor> readSensors(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<Sensor> sensors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sensors.add(readSensor(in));
+        }
+        return sensors;
+    }
+
+    /**
+     * Reads one record and makes the same change to the target repository.
+     */
+    static void apply(DataInput in, SecurityRepository target) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case FULL_STATE -> {
+                AlarmStatus alarmStatus = AlarmStatus.values()[in.readUnsignedByte()];
+                ArmingStatus armingStatus = ArmingStatus.values()[in.readUnsignedByte()];
+                List<Sensor> sensors = readSensors(in);
+                for (Sensor sensor : List.copyOf(target.getSensors())) {
+                    target.removeSensor(sensor);
+                }
+                sensors.forEach(target::addSensor);
+                target.setAlarmStatus(alarmStatus);
+                target.setArmingStatus(armingStatus);
+            }
+            case ADD_SENSOR -> target.addSensor(readSensor(in));
+            case REMOVE_SENSOR -> target.removeSensor(readSensor(in));
+            case UPDATE_SENSOR -> target.updateSensor(readSensor(in));
+            case UPDATE_SENSORS -> target.updateSensors(readSensors(in));
+            case ALARM_STATUS -> target.setAlarmStatus(AlarmStatus.values()[in.readUnsignedByte()]);
+            case ARMING_STATUS -> target.setArmingStatus(ArmingStatus.values()[in.readUnsignedByte()]);
+            case RESET_SENSORS -> target.resetSensors();
+            default -> throw new IOException("Unknown replication record type " + type);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Receiving end of a hot-standby pair. Listens for a {@link ReplicatingSecurityRepositoryImpl} and
+ * makes every change it streams to the standby's own repository, so that repository always holds
+ * the primary's state as of some recent change.
+ *
+ * Batches are applied whole and acknowledged once applied. {@link #promote()} waits for the batch
+ * being applied, if any, then stops replicating, so the repository it returns is never half way
+ * through a batch and taking over costs no more than that wait.
+ */
+public class ReplicationStandby implements AutoCloseable {
+
+    private final SecurityRepository repository;
+    private final ServerSocket server;
+
+    private Socket connection;
+    private Thread receiver;
+    private boolean promoted;
+    private long applied;
+    private long recordsApplied;
+    private long batchesApplied;
+    private long failures;
+    private RuntimeException lastFailure;
+
+    /**
+     * Listens on the loopback interface.
+     * @param port Port to listen on, or 0 for any free port
+     */
+    public ReplicationStandby(SecurityRepository repository, int port) throws IOException {
+        this(repository, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public ReplicationStandby(SecurityRepository repository, InetSocketAddress address) throws IOException {
+        this.repository = repository;
+        this.server = new ServerSocket();
+        server.bind(address);
+    }
+
+    /**
+     * Starts accepting the primary on a daemon thread. One primary is served at a time; a new
+     * connection is accepted when the current one ends.
+     */
+    public synchronized ReplicationStandby start() {
+        if (receiver == null) {
+            receiver = new Thread(this::receive, "replication-standby");
+            receiver.setDaemon(true);
+            receiver.start();
+        }
+        return this;
+    }
+
+    /**
+     * @return The port the standby listens on
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public synchronized boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * @return Sequence number of the last change applied
+     */
+    public synchronized long getApplied() {
+        return applied;
+    }
+
+    public synchronized long getRecordsApplied() {
+        return recordsApplied;
+    }
+
+    public synchronized long getBatchesApplied() {
+        return batchesApplied;
+    }
+
+    /**
+     * @return Number of times a change couldn't be applied, each of which dropped the primary until it
+     *         reconnected with its full state
+     */
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Why a change last couldn't be applied, or null if none has failed
+     */
+    public synchronized RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops replicating and hands over the repository, so this process can carry on as the primary.
+     * Changes the old primary sends from now on are ignored.
+     */
+    public synchronized SecurityRepository promote() {
+        promoted = true;
+        closeQuietly();
+        return repository;
+    }
+
+    private void receive() {
+        while (!isPromoted()) {
+            try (Socket socket = server.accept()) {
+                synchronized (this) {
+                    if (promoted) {
+                        return;
+                    }
+                    connection = socket;
+                }
+                socket.setTcpNoDelay(true);
+                serve(socket);
+            } catch (IOException e) {
+                //primary went away or the server was closed; wait for the next primary unless promoted
+            } catch (RuntimeException e) {
+                //a change the repository couldn't make, or a record it couldn't read; dropping the primary
+                //makes it reconnect and start over from its full state, which also undoes a half-applied batch
+                synchronized (this) {
+                    failures++;
+                    lastFailure = e;
+                }
+            } finally {
+                synchronized (this) {
+                    connection = null;
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        DataOutputStream acks = new DataOutputStream(socket.getOutputStream());
+        if (in.readInt() != ReplicationProtocol.MAGIC || in.readInt() != ReplicationProtocol.VERSION) {
+            throw new IOException("Not a catpoint replication stream");
+        }
+        byte[] records = new byte[0];
+        while (true) {
+            int count = in.readInt();
+            long last = in.readLong();
+            int length = in.readInt();
+            if (records.length < length) {
+                records = new byte[Math.max(length, records.length * 2)];
+            }
+            in.readFully(records, 0, length);
+            synchronized (this) {
+                if (promoted) {
+                    return;
+                }
+                DataInputStream batch = new DataInputStream(new ByteArrayInputStream(records, 0, length));
+                for (int i = 0; i < count; i++) {
+                    ReplicationProtocol.apply(batch, repository);
+                }
+                applied = last;
+                recordsApplied += count;
+                batchesApplied++;
+            }
+            acks.writeLong(last);
+            acks.flush();
+        }
+    }
+
+    private synchronized boolean isPromoted() {
+        return promoted;
+    }
+
+    private void closeQuietly() {
+        try {
+            server.close();
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (IOException ignored) {
+            //closing anyway
+        }
+    }
+
+    /**
+     * Stops replicating without handing over the repository.
+     */
+    @Override
+    public synchronized void close() {
+        promoted = true;
+        closeQuietly();
+    }
+}
@@ -1,6 +1,8 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Interface showing the methods our security repository will need to support
@@ -17,5 +19,27 @@ public interface SecurityRepository {
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * Updates several sensors at once. Implementations that can write in bulk should
+     * override this, the default simply updates the sensors one at a time.
+     * @param sensors The sensors to update
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    /**
+     * Looks a sensor up by id. Implementations that keep sensors by id should override this, the
+     * default searches {@link #getSensors()}.
+     * @return The repository's current instance of the sensor, or null if there is none
+     */
+    default Sensor findSensor(UUID sensorId) {
+        for (Sensor sensor : getSensors()) {
+            if (sensor.getSensorId().equals(sensorId)) {
+                return sensor;
+            }
+        }
+        return null;
+    }
 
 }
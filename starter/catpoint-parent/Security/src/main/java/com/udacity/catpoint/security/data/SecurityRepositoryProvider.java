@@ -0,0 +1,41 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+/**
+ * Makes security repositories of one kind, found with {@link ServiceLoader}, so the repository can be
+ * picked by name at startup in the same way as the
+ * {@link com.udacity.catpoint.image.service.ImageServiceProvider image service}.
+ */
+public interface SecurityRepositoryProvider {
+
+    /**
+     * @return Name used to pick this provider, such as {@code pretend}, {@code embedded} or {@code memory}
+     */
+    String name();
+
+    SecurityRepository create();
+
+    /**
+     * Creates the repository named by the {@code catpoint.repository} system property, {@code pretend}
+     * by default.
+     */
+    static SecurityRepository configured() {
+        return create(System.getProperty("catpoint.repository", "pretend"));
+    }
+
+    /**
+     * @throws IllegalArgumentException If no provider has that name
+     */
+    static SecurityRepository create(String name) {
+        ServiceLoader<SecurityRepositoryProvider> providers = ServiceLoader.load(SecurityRepositoryProvider.class);
+        for (SecurityRepositoryProvider provider : providers) {
+            if (provider.name().equals(name)) {
+                return provider.create();
+            }
+        }
+        throw new IllegalArgumentException("No repository called " + name + ", available are "
+                + providers.stream().map(p -> p.get().name()).collect(Collectors.joining(", ")));
+    }
+}
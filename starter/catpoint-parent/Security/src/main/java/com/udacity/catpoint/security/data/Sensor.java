@@ -1,9 +1,5 @@
 package com.udacity.catpoint.security.data;
 
-
-import com.google.common.collect.ComparisonChain;
-
-import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -41,7 +37,7 @@ public class Sensor implements Comparable<Sensor> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(sensorId);
+        return sensorId.hashCode();
     }
 
     public String getName() {
@@ -76,12 +72,18 @@ public class Sensor implements Comparable<Sensor> {
         this.sensorId = sensorId;
     }
 
+    /**
+     * Orders by name, then type name, then id. Written out by hand so comparing doesn't allocate.
+     */
     @Override
     public int compareTo(Sensor o) {
-        return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
-                .result();
+        int result = this.name.compareTo(o.name);
+        if (result == 0) {
+            result = this.sensorType.name().compareTo(o.sensorType.name());
+        }
+        if (result == 0) {
+            result = this.sensorId.compareTo(o.sensorId);
+        }
+        return result;
     }
 }
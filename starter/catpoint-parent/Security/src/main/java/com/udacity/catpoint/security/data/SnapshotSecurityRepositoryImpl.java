@@ -0,0 +1,204 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Repository that makes startup fast by answering from a memory-mapped {@link StateSnapshot} while
+ * the real repository is still being built on a background thread.
+ *
+ * Alarm and arming status are read straight from the snapshot header, so they are available in
+ * constant time no matter how many sensors there are. Sensors are only decoded from the snapshot
+ * if someone asks for them before the backing repository is ready. Every write goes to the backing
+ * repository, which remains the source of truth; the snapshot is refreshed in place for status
+ * changes and written again, as a new generation, on {@link #saveSnapshot()} and {@link #close()}.
+ */
+public class SnapshotSecurityRepositoryImpl implements SecurityRepository, AutoCloseable {
+
+    private final Path snapshotFile;
+    private final CompletableFuture<SecurityRepository> backing;
+
+    private StateSnapshot snapshot;
+    private Set<Sensor> snapshotSensors;
+
+    /**
+     * @param snapshotFile Where the snapshot is read from and saved to, with a generation number added
+     *                     to the name. It need not exist yet.
+     * @param backingRepository Builds the authoritative repository. Called once, in the background.
+     */
+    public SnapshotSecurityRepositoryImpl(Path snapshotFile, Supplier<SecurityRepository> backingRepository) {
+        this.snapshotFile = snapshotFile;
+        this.snapshot = openSnapshot(snapshotFile);
+        this.backing = CompletableFuture.supplyAsync(backingRepository, runnable -> {
+            Thread thread = new Thread(runnable, "catpoint-repository-loader");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        //the first run has no snapshot yet, so write one as soon as we can
+        if (snapshot == null) {
+            backing.thenRun(this::saveSnapshot);
+        }
+    }
+
+    private static StateSnapshot openSnapshot(Path file) {
+        try {
+            return StateSnapshot.open(file);
+        } catch (IOException e) {
+            return null; //a missing or unreadable snapshot just means we wait for the backing repository
+        }
+    }
+
+    /**
+     * @return A future that completes once the backing repository has been loaded
+     */
+    public CompletableFuture<Void> hydrated() {
+        return backing.thenApply(repository -> null);
+    }
+
+    private SecurityRepository repository() {
+        return backing.join();
+    }
+
+    private synchronized boolean useSnapshot() {
+        return snapshot != null && !backing.isDone();
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        repository().addSensor(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        repository().removeSensor(sensor);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        repository().updateSensor(sensor);
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        repository().updateSensors(sensors);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        repository().setAlarmStatus(alarmStatus);
+        synchronized (this) {
+            if (snapshot != null) {
+                snapshot.setAlarmStatus(alarmStatus);
+            }
+        }
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        repository().setArmingStatus(armingStatus);
+        synchronized (this) {
+            if (snapshot != null) {
+                snapshot.setArmingStatus(armingStatus);
+            }
+        }
+    }
+
+    /**
+     * Returns the backing repository's sensors, or the sensors decoded from the snapshot if the
+     * backing repository is still loading. Snapshot sensors come in the backing repository's order and
+     * are decoded as they are iterated, once each, so the first call returns straight away however many
+     * sensors there are.
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        synchronized (this) {
+            if (useSnapshot()) {
+                if (snapshotSensors == null) {
+                    snapshotSensors = snapshot.sensors();
+                }
+                return snapshotSensors;
+            }
+            snapshotSensors = null;
+        }
+        return repository().getSensors();
+    }
+
+    /**
+     * Waits for the backing repository, like every change does, so the sensor found is the one a change
+     * to it would update rather than a copy decoded from the snapshot.
+     */
+    @Override
+    public Sensor findSensor(UUID sensorId) {
+        return repository().findSensor(sensorId);
+    }
+
+    @Override
+    public void resetSensors() {
+        repository().resetSensors();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        synchronized (this) {
+            if (useSnapshot()) {
+                return snapshot.getAlarmStatus();
+            }
+        }
+        return repository().getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        synchronized (this) {
+            if (useSnapshot()) {
+                return snapshot.getArmingStatus();
+            }
+        }
+        return repository().getArmingStatus();
+    }
+
+    /**
+     * Writes a new generation of the snapshot from the backing repository's current state and maps it.
+     */
+    public synchronized void saveSnapshot() {
+        SecurityRepository repository = repository();
+        try {
+            if (snapshot != null) {
+                snapshot.close();
+                snapshot = null;
+            }
+            StateSnapshot.write(snapshotFile, repository.getAlarmStatus(), repository.getArmingStatus(),
+                    repository.getSensors());
+            snapshot = StateSnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save snapshot to " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Saves a fresh snapshot for the next startup and releases the mapped file.
+     */
+    @Override
+    public synchronized void close() {
+        saveSnapshot();
+        try {
+            snapshot.close();
+            snapshot = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (repository() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to close backing repository", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary copy of the system state, read through a memory-mapped file. The alarm and arming
+ * status sit at fixed offsets in the header, so they can be read (and updated in place) without
+ * touching the sensor records that follow.
+ *
+ * Layout: magic, version, alarm ordinal, arming ordinal and sensor count as ints, then one record per
+ * sensor made of the id (two longs), type ordinal (byte), active flag (byte), name length (short) and
+ * the UTF-8 name.
+ *
+ * Each write goes to a new generation file next to the snapshot's path, {@code catpoint.snapshot.1},
+ * {@code catpoint.snapshot.2} and so on, and the newest is the one opened. A file that is still mapped
+ * can't be replaced or deleted on Windows, and a mapping lasts until it is garbage collected, so a
+ * snapshot is never written over the one being read. Older generations are deleted once they can be.
+ */
+final class StateSnapshot implements AutoCloseable {
+
+    private static final int MAGIC = 0x43415450; //"CATP"
+    private static final int VERSION = 1;
+
+    private static final int ALARM_OFFSET = 8;
+    private static final int ARMING_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    private static final int HEADER_SIZE = 20;
+    private static final int RECORD_FIXED_SIZE = 20;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private StateSnapshot(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Maps the newest generation of a snapshot. Only the header is validated, sensor records are
+     * decoded as {@link #sensors()} reaches them.
+     * @param file The snapshot's path, without a generation
+     * @return The mapped snapshot
+     * @throws NoSuchFileException if no snapshot has been written yet
+     * @throws IOException if the file cannot be mapped or is not a snapshot
+     */
+    static StateSnapshot open(Path file) throws IOException {
+        List<Path> generations = generations(file);
+        if (generations.isEmpty()) {
+            throw new NoSuchFileException(file.toString());
+        }
+        file = generations.get(generations.size() - 1);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a catpoint snapshot: " + file);
+            }
+            return new StateSnapshot(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a complete snapshot as the next generation, first to a temporary file that is then moved
+     * into place, so a reader never sees a half-written snapshot. Sensors are stored in the order given.
+     * @throws IllegalArgumentException if a sensor's name is longer than 65535 bytes in UTF-8
+     */
+    static void write(Path file, AlarmStatus alarmStatus, ArmingStatus armingStatus,
+                      Collection<Sensor> sensors) throws IOException {
+        List<byte[]> names = new ArrayList<>(sensors.size());
+        int size = HEADER_SIZE;
+        for (Sensor sensor : sensors) {
+            byte[] name = sensor.getName() == null ? new byte[0] : sensor.getName().getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Sensor name is too long for a snapshot: " + name.length + " bytes");
+            }
+            names.add(name);
+            size += RECORD_FIXED_SIZE + name.length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION)
+                .putInt(alarmStatus.ordinal()).putInt(armingStatus.ordinal())
+                .putInt(sensors.size());
+        int i = 0;
+        for (Sensor sensor : sensors) {
+            byte[] name = names.get(i++);
+            out.putLong(sensor.getSensorId().getMostSignificantBits())
+                    .putLong(sensor.getSensorId().getLeastSignificantBits())
+                    .put((byte) sensor.getSensorType().ordinal())
+                    .put((byte) (sensor.getActive() ? 1 : 0))
+                    .putShort((short) name.length)
+                    .put(name);
+        }
+        out.flip();
+
+        List<Path> older = generations(file);
+        long generation = older.isEmpty() ? 1 : generationOf(older.get(older.size() - 1)) + 1;
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file.resolveSibling(file.getFileName() + "." + generation), StandardCopyOption.ATOMIC_MOVE);
+        for (Path old : older) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                //still mapped somewhere; a later write deletes it
+            }
+        }
+    }
+
+    /**
+     * @return The snapshot's generation files, oldest first
+     */
+    private static List<Path> generations(Path file) throws IOException {
+        Path folder = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+        if (!Files.isDirectory(folder)) {
+            return List.of();
+        }
+        try (Stream<Path> siblings = Files.list(folder)) {
+            return siblings.filter(sibling -> {
+                        String name = sibling.getFileName().toString();
+                        return name.startsWith(prefix) && name.substring(prefix.length()).matches("\\d{1,18}");
+                    })
+                    .sorted(Comparator.comparingLong(StateSnapshot::generationOf))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long generationOf(Path generation) {
+        String name = generation.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    AlarmStatus getAlarmStatus() {
+        return AlarmStatus.values()[buffer.getInt(ALARM_OFFSET)];
+    }
+
+    ArmingStatus getArmingStatus() {
+        return ArmingStatus.values()[buffer.getInt(ARMING_OFFSET)];
+    }
+
+    int getSensorCount() {
+        return buffer.getInt(COUNT_OFFSET);
+    }
+
+    void setAlarmStatus(AlarmStatus alarmStatus) {
+        buffer.putInt(ALARM_OFFSET, alarmStatus.ordinal());
+    }
+
+    void setArmingStatus(ArmingStatus armingStatus) {
+        buffer.putInt(ARMING_OFFSET, armingStatus.ordinal());
+    }
+
+    /**
+     * The snapshot's sensors, in the order they were written. Its size is known straight away, and each
+     * record is only decoded when iteration first reaches it, so a caller that looks at a few sensors
+     * doesn't wait for all of them to be decoded. Decoded sensors are kept, so every iteration returns
+     * the same instances.
+     */
+    Set<Sensor> sensors() {
+        return new Sensors();
+    }
+
+    private final class Sensors extends AbstractSet<Sensor> {
+        private final Sensor[] decoded = new Sensor[getSensorCount()];
+        private final ByteBuffer in = buffer.duplicate().position(HEADER_SIZE);
+        private int decodedCount;
+
+        private synchronized Sensor get(int index) {
+            SensorType[] types = SensorType.values();
+            while (decodedCount <= index) {
+                UUID id = new UUID(in.getLong(), in.getLong());
+                SensorType type = types[in.get()];
+                boolean active = in.get() != 0;
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                Sensor sensor = new Sensor(new String(name, StandardCharsets.UTF_8), type, id);
+                sensor.setActive(active);
+                decoded[decodedCount++] = sensor;
+            }
+            return decoded[index];
+        }
+
+        @Override
+        public Iterator<Sensor> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < decoded.length;
+                }
+
+                @Override
+                public Sensor next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(next++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return decoded.length;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,22 @@
+package com.udacity.catpoint.security.service;
+
+/**
+ * Things that can happen to the security system, as seen by the {@link AlarmTransitionTable}.
+ */
+public enum AlarmEvent {
+    /** An inactive sensor became active. */
+    SENSOR_ACTIVATED,
+    /** A sensor that was already active reported active again. */
+    SENSOR_REACTIVATED,
+    /** An active sensor became inactive. */
+    SENSOR_DEACTIVATED,
+    CAT_DETECTED,
+    NO_CAT_DETECTED,
+    DISARM,
+    ARM_HOME,
+    /** Arming at home while the camera's last picture showed a cat. */
+    ARM_HOME_CAT_VISIBLE,
+    ARM_AWAY,
+    /** The entry delay ran out while the alarm was pending. */
+    ENTRY_DELAY_EXPIRED
+}
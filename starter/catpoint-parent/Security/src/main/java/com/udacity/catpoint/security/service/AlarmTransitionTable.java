@@ -0,0 +1,169 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The alarm rules, compiled into a flat table with one entry for every combination of alarm status,
+ * arming status and {@link AlarmEvent}. Looking up what an event does is a single array read.
+ *
+ * Tables are built from a small text format, see alarm-rules.txt next to this class for the default
+ * rules. A rule file must say what happens for every combination; anything else is rejected when
+ * the file is loaded rather than when the missing combination first comes up.
+ */
+public final class AlarmTransitionTable {
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final AlarmEvent[] EVENTS = AlarmEvent.values();
+    private static final String DEFAULT_RULES = "alarm-rules.txt";
+
+    private final Transition[] table;
+
+    private AlarmTransitionTable(Transition[] table) {
+        this.table = table;
+    }
+
+    /**
+     * What an event does.
+     * @param nextAlarmStatus The status to set, or null to leave the alarm status alone
+     * @param resetSensors Whether every sensor should be marked inactive
+     */
+    public record Transition(AlarmStatus nextAlarmStatus, boolean resetSensors) {
+        public boolean changesAlarmStatus() {
+            return nextAlarmStatus != null;
+        }
+    }
+
+    public Transition lookup(AlarmStatus alarmStatus, ArmingStatus armingStatus, AlarmEvent event) {
+        return table[index(alarmStatus.ordinal(), armingStatus.ordinal(), event.ordinal())];
+    }
+
+    private static int index(int alarm, int arming, int event) {
+        return (alarm * ARMING_STATUSES.length + arming) * EVENTS.length + event;
+    }
+
+    /**
+     * @return The built-in rules
+     */
+    public static AlarmTransitionTable defaults() {
+        return Defaults.TABLE;
+    }
+
+    //loaded on first use, and only once however many services share it
+    private static class Defaults {
+        private static final AlarmTransitionTable TABLE = loadDefaults();
+
+        private static AlarmTransitionTable loadDefaults() {
+            try (InputStream in = AlarmTransitionTable.class.getResourceAsStream(DEFAULT_RULES)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing " + DEFAULT_RULES);
+                }
+                return parse(new InputStreamReader(in, StandardCharsets.UTF_8), DEFAULT_RULES);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+    }
+
+    /**
+     * @return The rules in the file named by {@code catpoint.alarmRules}, or the built-in rules if
+     * it isn't set
+     */
+    public static AlarmTransitionTable configured() {
+        String rules = System.getProperty("catpoint.alarmRules");
+        return rules == null ? defaults() : load(Path.of(rules));
+    }
+
+    public static AlarmTransitionTable load(Path rules) {
+        try (Reader reader = Files.newBufferedReader(rules)) {
+            return parse(reader, rules.toString());
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Compiles a rule file into a table.
+     * @param source Name used in error messages
+     * @throws IllegalArgumentException if a line can't be parsed or the rules leave a combination undefined
+     */
+    public static AlarmTransitionTable parse(Reader rules, String source) throws IOException {
+        Transition[] table = new Transition[ALARM_STATUSES.length * ARMING_STATUSES.length * EVENTS.length];
+        Map<Transition, Transition> canonical = new HashMap<>(); //so equal entries share one instance
+        BufferedReader reader = new BufferedReader(rules);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            String rule = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (rule.isEmpty()) {
+                continue;
+            }
+            String[] parts = rule.split("\\s+");
+            String where = source + ":" + lineNumber + ": ";
+            if (parts.length < 5 || parts.length > 6 || !parts[3].equals("->")) {
+                throw new IllegalArgumentException(where + "expected EVENT ALARM ARMING -> NEXT [reset-sensors]");
+            }
+            if (parts.length == 6 && !parts[5].equals("reset-sensors")) {
+                throw new IllegalArgumentException(where + "unknown action " + parts[5]);
+            }
+            AlarmEvent event = parse(AlarmEvent.class, parts[0], where);
+            AlarmStatus alarm = parse(AlarmStatus.class, parts[1], where);
+            ArmingStatus arming = parse(ArmingStatus.class, parts[2], where);
+            if (parts[4].equals("*")) {
+                throw new IllegalArgumentException(where + "next status must be a status or -");
+            }
+            AlarmStatus next = parts[4].equals("-") ? null : parse(AlarmStatus.class, parts[4], where);
+            Transition transition = canonical.computeIfAbsent(new Transition(next, parts.length == 6), t -> t);
+
+            for (AlarmStatus a : ALARM_STATUSES) {
+                for (ArmingStatus r : ARMING_STATUSES) {
+                    for (AlarmEvent e : EVENTS) {
+                        if ((alarm == null || alarm == a) && (arming == null || arming == r) && (event == null || event == e)) {
+                            table[index(a.ordinal(), r.ordinal(), e.ordinal())] = transition;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (AlarmStatus a : ALARM_STATUSES) {
+            for (ArmingStatus r : ARMING_STATUSES) {
+                for (AlarmEvent e : EVENTS) {
+                    if (table[index(a.ordinal(), r.ordinal(), e.ordinal())] == null) {
+                        throw new IllegalArgumentException(source + ": no rule for " + e + " " + a + " " + r);
+                    }
+                }
+            }
+        }
+        return new AlarmTransitionTable(table);
+    }
+
+    /**
+     * @return The named constant, or null for the * wildcard
+     */
+    private static <E extends Enum<E>> E parse(Class<E> type, String name, String where) {
+        if (name.equals("*")) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException iae) {
+            throw new IllegalArgumentException(where + "unknown " + type.getSimpleName() + " " + name);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.security.data.Camera;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scans frames from many cameras through {@link SecurityService#processImage(Camera, CameraImage)},
+ * in parallel but within limits the image backend can take.
+ *
+ * Cameras hand in frames as fast as they like. Only each camera's latest frame is kept; a frame that
+ * is replaced before it is scanned is skipped. A camera is scanned at most once per interval, and at
+ * most {@code maxConcurrentScans} scans run at once across all cameras. Each camera waits in line with
+ * at most one scan, so when the backend is the bottleneck the cameras take turns rather than a busy
+ * one crowding out the rest.
+ */
+public class CameraScanScheduler implements AutoCloseable {
+
+    private final SecurityService securityService;
+    private final long intervalNanos;
+    private final ScheduledExecutorService scanners; //its threads are the concurrency limit
+    private final Map<UUID, CameraState> cameras = new ConcurrentHashMap<>();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param maxConcurrentScans Most frames being classified at once, across all cameras
+     * @param interval Least time between the starts of two scans of the same camera
+     */
+    public CameraScanScheduler(SecurityService securityService, int maxConcurrentScans, Duration interval) {
+        if (maxConcurrentScans < 1) {
+            throw new IllegalArgumentException("maxConcurrentScans must be positive");
+        }
+        this.securityService = securityService;
+        this.intervalNanos = interval.toNanos();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scanners = Executors.newScheduledThreadPool(maxConcurrentScans, r -> {
+            Thread thread = new Thread(r, "camera-scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Hands in a camera's newest frame. Registers the camera with the service the first time.
+     */
+    public void submit(Camera camera, CameraImage frame) {
+        CameraState state = cameras.computeIfAbsent(camera.cameraId(), id -> {
+            securityService.addCamera(camera);
+            return new CameraState(camera);
+        });
+        synchronized (state) {
+            if (state.latest != null) {
+                skipped.increment();
+            }
+            state.latest = frame;
+        }
+        queue(state);
+    }
+
+    /**
+     * Stops scanning a camera and removes it from the service. A scan already running is let finish, but
+     * what it saw is dropped, so it doesn't bring the camera back.
+     */
+    public void remove(Camera camera) {
+        CameraState state = cameras.remove(camera.cameraId());
+        if (state != null) {
+            synchronized (state) {
+                state.latest = null;
+            }
+        }
+        securityService.removeCamera(camera);
+    }
+
+    /**
+     * @return Number of frames scanned so far
+     */
+    public long getScans() {
+        return scans.sum();
+    }
+
+    /**
+     * @return Number of frames replaced by a newer one before they could be scanned
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Puts the camera in line for a scan if it has a frame and isn't in line or being scanned already,
+     * or arranges for that to happen when its interval is up.
+     */
+    private void queue(CameraState state) {
+        long wait;
+        synchronized (state) {
+            if (state.latest == null || state.queued || state.scanning) {
+                return;
+            }
+            state.queued = true;
+            wait = state.nextScanAt - System.nanoTime();
+        }
+        try {
+            if (wait > 0) {
+                scanners.schedule(() -> scan(state), wait, TimeUnit.NANOSECONDS);
+            } else {
+                scanners.execute(() -> scan(state));
+            }
+        } catch (RejectedExecutionException e) {
+            //closed, frames are no longer scanned
+        }
+    }
+
+    private void scan(CameraState state) {
+        CameraImage frame;
+        synchronized (state) {
+            state.queued = false;
+            frame = state.latest;
+            if (frame == null) {
+                return; //removed while it waited
+            }
+            state.latest = null;
+            state.scanning = true;
+            state.nextScanAt = System.nanoTime() + intervalNanos;
+        }
+        try {
+            //the camera is removed from this map before the service, so once it's gone here any result
+            //that would bring it back is dropped; a camera added again has a new state
+            securityService.processImage(state.camera, frame, () -> cameras.get(state.camera.cameraId()) == state);
+            scans.increment();
+        } finally {
+            synchronized (state) {
+                state.scanning = false;
+            }
+            queue(state); //a frame may have come in meanwhile
+        }
+    }
+
+    @Override
+    public void close() {
+        scanners.shutdownNow();
+    }
+
+    private static class CameraState {
+        private final Camera camera;
+        private CameraImage latest;
+        private boolean queued;
+        private boolean scanning;
+        private long nextScanAt = System.nanoTime();
+
+        CameraState(Camera camera) {
+            this.camera = camera;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Queues work for a SecurityService and carries it out by priority, so that when the system is
+ * overloaded a flood of image scans, each possibly a slow remote classification, can't hold up the
+ * arming commands and sensor events the alarm depends on.
+ *
+ * Arming commands and sensor events are carried out by a thread of their own, arming commands first,
+ * each kind in the order it was submitted. Image scans are carried out by a separate, fixed number of
+ * threads, so however many are waiting they never take the thread the alarm needs; the service scans
+ * outside its lock, so a slow scan doesn't hold up the alarm either.
+ *
+ * Image scans are admitted on a best-effort basis. A frame from a camera that already has one waiting
+ * replaces it, and the replaced one is merged away. Once scans have waited longer than the target
+ * delay for a whole interval, waiting frames are shed at a rising rate, as CoDel does, until the delay
+ * is back under the target. Merged and shed scans complete their futures as cancelled.
+ */
+public class PriorityScheduler implements AutoCloseable {
+
+    /**
+     * Kinds of work, most urgent first.
+     */
+    public enum Priority {
+        ARMING,
+        SENSOR,
+        IMAGE
+    }
+
+    private final SecurityService securityService;
+    private final long targetNanos;
+    private final long intervalNanos;
+
+    private final ArrayDeque<Task> arming = new ArrayDeque<>();
+    private final ArrayDeque<Task> sensors = new ArrayDeque<>();
+    private final LinkedHashMap<UUID, Task> images = new LinkedHashMap<>(); //oldest first, one per camera
+    private final List<Thread> threads = new ArrayList<>();
+    private boolean closed;
+
+    //shedding state, as in CoDel
+    private long aboveTargetSince; //0 while the delay is under the target
+    private boolean shedding;
+    private long nextShedAt;
+    private int shedCount;
+
+    private final Map<Priority, Long> completed = new EnumMap<>(Priority.class);
+    private final Map<Priority, Long> maxQueueNanos = new EnumMap<>(Priority.class);
+    private long shed;
+    private long merged;
+
+    /**
+     * @param imageWorkers Most image scans carried out at once
+     * @param target Queue delay for image scans above which shedding begins
+     * @param interval How long the delay must stay above the target before the first scan is shed
+     */
+    public PriorityScheduler(SecurityService securityService, int imageWorkers, Duration target, Duration interval) {
+        if (imageWorkers < 1) {
+            throw new IllegalArgumentException("imageWorkers must be positive");
+        }
+        this.securityService = securityService;
+        this.targetNanos = target.toNanos();
+        this.intervalNanos = interval.toNanos();
+        for (Priority priority : Priority.values()) {
+            completed.put(priority, 0L);
+            maxQueueNanos.put(priority, 0L);
+        }
+        Thread critical = new Thread(this::runCritical, "priority-critical");
+        critical.setPriority(Thread.MAX_PRIORITY);
+        threads.add(critical);
+        for (int i = 1; i <= imageWorkers; i++) {
+            threads.add(new Thread(this::runImages, "priority-image-" + i));
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public CompletableFuture<Void> setArmingStatus(ArmingStatus armingStatus) {
+        return submit(arming, Priority.ARMING, () -> securityService.setArmingStatus(armingStatus));
+    }
+
+    public CompletableFuture<Void> changeSensorActivationStatus(Sensor sensor, boolean active) {
+        return submit(sensors, Priority.SENSOR, () -> securityService.changeSensorActivationStatus(sensor, active));
+    }
+
+    /**
+     * Queues a frame for scanning, in place of any frame from the same camera still waiting.
+     */
+    public CompletableFuture<Void> processImage(Camera camera, CameraImage image) {
+        Task task = new Task(Priority.IMAGE, () -> securityService.processImage(camera, image));
+        Task replaced;
+        synchronized (this) {
+            checkOpen();
+            replaced = images.get(camera.cameraId());
+            if (replaced != null) {
+                task.enqueuedAt = replaced.enqueuedAt; //the camera has been waiting since then
+                merged++;
+            }
+            images.put(camera.cameraId(), task);
+            notifyAll();
+        }
+        if (replaced != null) {
+            replaced.future.cancel(false);
+        }
+        return task.future;
+    }
+
+    public synchronized long getCompleted(Priority priority) {
+        return completed.get(priority);
+    }
+
+    public synchronized int getQueued(Priority priority) {
+        return switch (priority) {
+            case ARMING -> arming.size();
+            case SENSOR -> sensors.size();
+            case IMAGE -> images.size();
+        };
+    }
+
+    /**
+     * @return Longest time any work of the kind has waited to be started
+     */
+    public synchronized Duration getMaxQueueDelay(Priority priority) {
+        return Duration.ofNanos(maxQueueNanos.get(priority));
+    }
+
+    /**
+     * @return Number of image scans dropped because scans were waiting too long
+     */
+    public synchronized long getShed() {
+        return shed;
+    }
+
+    /**
+     * @return Number of image scans replaced by a newer frame from the same camera before they started
+     */
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+    private CompletableFuture<Void> submit(ArrayDeque<Task> queue, Priority priority, Runnable work) {
+        Task task = new Task(priority, work);
+        synchronized (this) {
+            checkOpen();
+            queue.add(task);
+            notifyAll();
+        }
+        return task.future;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new RejectedExecutionException("Scheduler is closed");
+        }
+    }
+
+    private void runCritical() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                while (!closed && arming.isEmpty() && sensors.isEmpty()) {
+                    if (!await()) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                task = !arming.isEmpty() ? arming.poll() : sensors.poll();
+                started(task);
+            }
+            execute(task);
+        }
+    }
+
+    private void runImages() {
+        while (true) {
+            Task task = null;
+            List<Task> dropped = new ArrayList<>();
+            synchronized (this) {
+                while (task == null && awaitImages()) {
+                    Iterator<Task> oldest = images.values().iterator();
+                    Task next = oldest.next();
+                    oldest.remove();
+                    if (shouldShed(System.nanoTime() - next.enqueuedAt)) {
+                        shed++;
+                        dropped.add(next);
+                    } else {
+                        task = next;
+                        started(task);
+                    }
+                }
+            }
+            dropped.forEach(d -> d.future.cancel(false));
+            if (task == null) {
+                return; //closed
+            }
+            execute(task);
+        }
+    }
+
+    /**
+     * @return True once there is a frame to scan, false if closed first
+     */
+    private boolean awaitImages() {
+        while (!closed && images.isEmpty()) {
+            if (!await()) {
+                return false;
+            }
+        }
+        return !closed;
+    }
+
+    /**
+     * CoDel's rule: nothing is shed until the delay has stayed above the target for an interval, then
+     * one scan is shed, then more at intervals that shrink with the square root of the number shed,
+     * until a scan gets through under the target.
+     */
+    private boolean shouldShed(long delay) {
+        long now = System.nanoTime();
+        if (delay < targetNanos) {
+            aboveTargetSince = 0;
+            shedding = false;
+            return false;
+        }
+        if (aboveTargetSince == 0) {
+            aboveTargetSince = now;
+            return false;
+        }
+        if (!shedding) {
+            if (now - aboveTargetSince < intervalNanos) {
+                return false;
+            }
+            shedding = true;
+            shedCount = 1;
+            nextShedAt = now + intervalNanos;
+            return true;
+        }
+        if (now - nextShedAt >= 0) {
+            shedCount++;
+            nextShedAt = now + (long) (intervalNanos / Math.sqrt(shedCount));
+            return true;
+        }
+        return false;
+    }
+
+    private boolean await() {
+        try {
+            wait();
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private void started(Task task) {
+        long waited = System.nanoTime() - task.enqueuedAt;
+        maxQueueNanos.merge(task.priority, waited, Math::max);
+    }
+
+    /**
+     * Carries out the task and counts it before completing its future, so whoever waits on the future
+     * sees it counted. Whatever the task throws goes to its future, so one bad task doesn't stop the
+     * thread and leave the tasks after it waiting forever.
+     */
+    private void execute(Task task) {
+        Throwable failure = null;
+        try {
+            task.work.run();
+        } catch (Throwable e) {
+            failure = e;
+        }
+        synchronized (this) {
+            completed.merge(task.priority, 1L, Long::sum);
+        }
+        if (failure == null) {
+            task.future.complete(null);
+        } else {
+            task.future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Stops the threads once they finish what they are doing. Work still queued is cancelled.
+     */
+    @Override
+    public void close() {
+        List<Task> pending = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            pending.addAll(arming);
+            pending.addAll(sensors);
+            pending.addAll(images.values());
+            arming.clear();
+            sensors.clear();
+            images.clear();
+            notifyAll();
+        }
+        pending.forEach(task -> task.future.cancel(false));
+    }
+
+    private static class Task {
+        final Priority priority;
+        final Runnable work;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+
+        Task(Priority priority, Runnable work) {
+            this.priority = priority;
+            this.work = work;
+        }
+    }
+}
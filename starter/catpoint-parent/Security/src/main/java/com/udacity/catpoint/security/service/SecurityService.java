@@ -1,16 +1,23 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.data.CameraImage;
 import com.udacity.catpoint.image.service.IImageService;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.EventHistory;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
 import com.udacity.catpoint.image.service.FakeImageService;
 
-import java.awt.image.BufferedImage;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -18,6 +25,21 @@ import java.util.concurrent.ConcurrentSkipListSet;
  *
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ *
+ * When given a {@link TimingWheel}, the service also handles time: a pending alarm escalates to a full
+ * alarm once the entry delay passes without the system being disarmed, and sensors are ignored for
+ * the exit delay after arming so the owner can leave. Timer callbacks run on the wheel's thread, so
+ * methods that change state are synchronized.
+ *
+ * The alarm rules themselves live in an {@link AlarmTransitionTable}: each change is turned into an
+ * {@link AlarmEvent} and the table says what it does to the alarm.
+ *
+ * Once {@link #trackLiveness} has been called, the service also reports sensors that stop sending
+ * heartbeats to its listeners as offline, and once {@link #recordHistory} has been called every change
+ * is also written to an {@link EventHistory}.
+ *
+ * Besides the listeners, every change is offered to the subscribers of {@link #getStateChanges()}, which
+ * take them at their own pace without ever holding up the service.
  */
 public class SecurityService {
 
@@ -26,12 +48,57 @@ public class SecurityService {
     private IImageService imageService;
     private SecurityRepository securityRepository;
     private Set<StatusListener> statusListeners = new HashSet<>();
+    private StatusListener[] listeners = new StatusListener[0]; //copy of the set, looped over without allocating
+
+    private boolean catDetected; //true while any camera sees a cat
+    private final Map<UUID, Camera> cameras = new LinkedHashMap<>();
+    private final Set<UUID> camerasSeeingCat = new HashSet<>();
 
-    private boolean catDetected;
+    private final AlarmTransitionTable transitions;
+    private final TimingWheel timers;
+    private final Duration entryDelay;
+    private final Duration exitDelay;
+    private TimingWheel.Timeout escalation;
+    private TimingWheel.Timeout exitDelayTimeout;
+    private volatile SensorLivenessTracker liveness;
+    private volatile EventHistory history;
+    private final Map<UUID, Integer> sensorSlots = new HashMap<>();
+    //ids rather than sensors, since the repository may replace its instance of a sensor at any time
+    private UUID[] sensorIdsBySlot = new UUID[16];
+    private int sensorSlotCount;
+    private final StateChangePublisher stateChanges = new StateChangePublisher();
 
     public SecurityService(SecurityRepository securityRepository, IImageService imageService) {
+        this(securityRepository, imageService, null, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * @param timers Wheel used to schedule the delays below, or null for no time-based behavior
+     * @param entryDelay How long the alarm stays pending before escalating. Zero disables escalation.
+     * @param exitDelay How long sensors are ignored after arming. Zero disables the exit delay.
+     */
+    public SecurityService(SecurityRepository securityRepository, IImageService imageService,
+                           TimingWheel timers, Duration entryDelay, Duration exitDelay) {
+        this(securityRepository, imageService, timers, entryDelay, exitDelay, AlarmTransitionTable.defaults());
+    }
+
+    /**
+     * @param transitions The alarm rules to follow
+     */
+    public SecurityService(SecurityRepository securityRepository, IImageService imageService,
+                           TimingWheel timers, Duration entryDelay, Duration exitDelay,
+                           AlarmTransitionTable transitions) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.transitions = transitions;
+        this.timers = timers;
+        this.entryDelay = entryDelay;
+        this.exitDelay = exitDelay;
+        //a repository left pending, such as a promoted standby's or one saved before a restart, still
+        //escalates; the lock keeps the timer from running the callback before the constructor is done
+        synchronized (this) {
+            scheduleEscalation(securityRepository.getAlarmStatus());
+        }
     }
 
     public SecurityService(SecurityRepository securityRepository) {
@@ -43,32 +110,50 @@ public class SecurityService {
      * may update both the alarm status.
      * @param armingStatus
      */
-    public void setArmingStatus(ArmingStatus armingStatus) {
-        if(armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        AlarmEvent event = switch (armingStatus) {
+            case DISARMED -> AlarmEvent.DISARM;
+            case ARMED_HOME -> catDetected ? AlarmEvent.ARM_HOME_CAT_VISIBLE : AlarmEvent.ARM_HOME;
+            case ARMED_AWAY -> AlarmEvent.ARM_AWAY;
+        };
+        //record and publish the cause before any alarm change it leads to, so they are seen in that order
+        if (history != null) {
+            history.recordArmingStatus(securityRepository.getArmingStatus(), armingStatus);
         }
-        // added for test #11
-        if(armingStatus == ArmingStatus.ARMED_HOME && catDetected){
-            setAlarmStatus(AlarmStatus.ALARM);
+        if (stateChanges.hasSubscribers()) {
+            stateChanges.publish(new StateChange.ArmingChanged(armingStatus));
         }
-        // added for test #10
-        if(armingStatus == ArmingStatus.ARMED_HOME || armingStatus == ArmingStatus.ARMED_AWAY){
-            Set<Sensor> sensors = getSensors();
-            sensors.stream().sorted().forEach(s -> s.setActive(false));
-
-            ArrayList<Sensor> sensorList = new ArrayList<>();
+        startExitDelay(armingStatus);
+        apply(event);
+        securityRepository.setArmingStatus(armingStatus);
+    }
 
-            for(Sensor s: sensors){
-               sensorList.add(s);
+    /**
+     * Internal method that looks up what an event does in the current state and carries it out.
+     */
+    private void apply(AlarmEvent event) {
+        //a missing alarm status is taken as no alarm; a missing arming status has always counted as armed
+        //but not at home, which is the ARMED_AWAY column
+        AlarmStatus alarmStatus = Objects.requireNonNullElse(securityRepository.getAlarmStatus(), AlarmStatus.NO_ALARM);
+        ArmingStatus armingStatus =
+                Objects.requireNonNullElse(securityRepository.getArmingStatus(), ArmingStatus.ARMED_AWAY);
+        AlarmTransitionTable.Transition transition = transitions.lookup(alarmStatus, armingStatus, event);
+        if (transition.changesAlarmStatus()) {
+            setAlarmStatus(transition.nextAlarmStatus());
+        }
+        if (transition.resetSensors()) {
+            Set<Sensor> sensors = securityRepository.getSensors();
+            if (stateChanges.hasSubscribers()) {
+                sensors.stream().filter(Sensor::getActive).sorted().forEach(s -> stateChanges.publish(
+                        new StateChange.SensorChanged(s.getSensorId(), s.getName(), false)));
             }
+            sensors.stream().sorted().forEach(s -> s.setActive(false));
 
-            for(Sensor s : sensorList){
-                securityRepository.updateSensor(s);
+            securityRepository.updateSensors(new ArrayList<>(sensors));
+            for (StatusListener listener : listeners) {
+                listener.sensorStatusChanged();
             }
-            statusListeners.forEach(sl -> sl.sensorStatusChanged());
-
         }
-        securityRepository.setArmingStatus(armingStatus);
     }
 
     /**
@@ -76,79 +161,266 @@ public class SecurityService {
      * the camera currently shows a cat.
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
-        catDetected = cat;
-        if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
+    private synchronized void catDetected(Camera camera, Boolean cat) {
+        cameras.putIfAbsent(camera.cameraId(), camera);
+        if (cat) {
+            camerasSeeingCat.add(camera.cameraId());
         } else {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+            camerasSeeingCat.remove(camera.cameraId());
         }
+        catDetected(!camerasSeeingCat.isEmpty());
+    }
 
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+    /**
+     * Internal method that handles alarm status changes based on whether any camera shows a cat.
+     */
+    private void catDetected(boolean cat) {
+        if (history != null) {
+            history.recordCatDetection(catDetected, cat);
+        }
+        if (catDetected != cat && stateChanges.hasSubscribers()) {
+            stateChanges.publish(new StateChange.CatDetectionChanged(cat));
+        }
+        catDetected = cat;
+        apply(cat ? AlarmEvent.CAT_DETECTED : AlarmEvent.NO_CAT_DETECTED);
+
+        for (StatusListener listener : listeners) {
+            listener.catDetected(cat);
+        }
     }
 
     /**
      * Register the StatusListener for alarm system updates from within the SecurityService.
      * @param statusListener
      */
-    public void addStatusListener(StatusListener statusListener) {
+    public synchronized void addStatusListener(StatusListener statusListener) {
         statusListeners.add(statusListener);
+        listeners = statusListeners.toArray(new StatusListener[0]);
     }
 
-    public void removeStatusListener(StatusListener statusListener) {
+    public synchronized void removeStatusListener(StatusListener statusListener) {
         statusListeners.remove(statusListener);
+        listeners = statusListeners.toArray(new StatusListener[0]);
     }
 
     /**
      * Change the alarm status of the system and notify all listeners.
      * @param status
      */
-    public void setAlarmStatus(AlarmStatus status) {
+    public synchronized void setAlarmStatus(AlarmStatus status) {
+        if (history != null) {
+            history.recordAlarmStatus(securityRepository.getAlarmStatus(), status);
+        }
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        for (StatusListener listener : listeners) {
+            listener.notify(status);
+        }
+        if (stateChanges.hasSubscribers()) {
+            stateChanges.publish(new StateChange.AlarmChanged(status));
+        }
+        scheduleEscalation(status);
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Internal method that starts the entry delay countdown when the alarm becomes pending, and stops
+     * it when the alarm moves to any other state.
      */
-    private void handleSensorActivated() {
-        if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
+    private void scheduleEscalation(AlarmStatus status) {
+        if (timers == null || entryDelay.isZero()) {
+            return;
+        }
+        if (escalation != null) {
+            escalation.cancel();
+            escalation = null;
         }
-        switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.ALARM);
+        if (status == AlarmStatus.PENDING_ALARM) {
+            AtomicReference<TimingWheel.Timeout> timeout = new AtomicReference<>();
+            timeout.set(timers.schedule(entryDelay, () -> escalatePendingAlarm(timeout)));
+            escalation = timeout.get();
         }
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Timer callback: a pending alarm that was not resolved or disarmed in time becomes a full alarm.
+     * A timeout can fire while another thread holds the lock and cancels or replaces it, so it only
+     * escalates if it is still the current one once it has the lock.
+     * @param timeout Holds the timeout this callback belongs to. It is set under the lock, before the
+     *                callback can get the lock.
      */
-    private void handleSensorDeactivated() {
-        switch(securityRepository.getAlarmStatus()) {
-            case PENDING_ALARM -> setAlarmStatus(AlarmStatus.NO_ALARM);
-            // case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM); // changed this for test 4
+    private synchronized void escalatePendingAlarm(AtomicReference<TimingWheel.Timeout> timeout) {
+        if (escalation != timeout.get()) {
+            return;
         }
+        escalation = null;
+        apply(AlarmEvent.ENTRY_DELAY_EXPIRED);
     }
 
+    /**
+     * Internal method that starts the exit delay when the system is armed, and ends it when disarmed.
+     */
+    private void startExitDelay(ArmingStatus armingStatus) {
+        if (timers == null || exitDelay.isZero()) {
+            return;
+        }
+        if (exitDelayTimeout != null) {
+            exitDelayTimeout.cancel();
+            exitDelayTimeout = null;
+        }
+        if (armingStatus != ArmingStatus.DISARMED) {
+            AtomicReference<TimingWheel.Timeout> timeout = new AtomicReference<>();
+            timeout.set(timers.schedule(exitDelay, () -> endExitDelay(timeout)));
+            exitDelayTimeout = timeout.get();
+        }
+    }
+
+    /**
+     * Timer callback, which like {@link #escalatePendingAlarm} does nothing if its timeout was replaced.
+     */
+    private synchronized void endExitDelay(AtomicReference<TimingWheel.Timeout> timeout) {
+        if (exitDelayTimeout == timeout.get()) {
+            exitDelayTimeout = null;
+        }
+    }
+
+    /**
+     * @return True while the exit delay after arming is still running
+     */
+    public synchronized boolean isExitDelayActive() {
+        return exitDelayTimeout != null;
+    }
 
     /**
      * Change the activation status for the specified sensor and update alarm status if necessary.
      * @param sensor
      * @param active
      */
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        // added this for test #5
-        if(sensor.getActive() && active && this.getAlarmStatus() == AlarmStatus.PENDING_ALARM){
-            handleSensorActivated();
+    public synchronized void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        changeActivation(sensor, active);
+    }
+
+    /**
+     * Changes a sensor's activation status by id. Same as the {@link Sensor} version, but without the
+     * boxing, so once warmed up it allocates nothing when neither the repository's lookup nor its update
+     * does. The change is made to the repository's current instance of the sensor.
+     * @throws IllegalArgumentException If there is no such sensor
+     */
+    public synchronized void changeSensorActivationStatus(UUID sensorId, boolean active) {
+        Sensor sensor = securityRepository.findSensor(sensorId);
+        if (sensor == null) {
+            throw new IllegalArgumentException("No sensor " + sensorId);
         }
-        if(!sensor.getActive() && active) {
-            handleSensorActivated();
-        } else if (sensor.getActive() && !active) {
-            handleSensorDeactivated();
+        changeActivation(sensor, active);
+    }
+
+    /**
+     * Changes a sensor's activation status by slot, a small number callers can keep in place of the id.
+     * @param slot As returned by {@link #getSensorSlot}
+     * @throws IllegalArgumentException If the slot's sensor has been removed
+     */
+    public synchronized void changeSensorActivationStatus(int slot, boolean active) {
+        UUID sensorId = slot >= 0 && slot < sensorSlotCount ? sensorIdsBySlot[slot] : null;
+        Sensor sensor = sensorId == null ? null : securityRepository.findSensor(sensorId);
+        if (sensor == null) {
+            throw new IllegalArgumentException("No sensor in slot " + slot);
+        }
+        changeActivation(sensor, active);
+    }
+
+    /**
+     * @return A number standing for the sensor in {@link #changeSensorActivationStatus(int, boolean)},
+     *         or -1 if the repository has no such sensor. Slots are not reused after a sensor is removed.
+     */
+    public synchronized int getSensorSlot(UUID sensorId) {
+        Integer slot = sensorSlots.get(sensorId);
+        if (slot != null) {
+            return slot;
+        }
+        return securityRepository.findSensor(sensorId) == null ? -1 : assignSlot(sensorId);
+    }
+
+    private int assignSlot(UUID sensorId) {
+        Integer existing = sensorSlots.get(sensorId);
+        if (existing != null) {
+            return existing;
+        }
+        if (sensorSlotCount == sensorIdsBySlot.length) {
+            sensorIdsBySlot = Arrays.copyOf(sensorIdsBySlot, sensorSlotCount * 2);
+        }
+        sensorIdsBySlot[sensorSlotCount] = sensorId;
+        sensorSlots.put(sensorId, sensorSlotCount);
+        return sensorSlotCount++;
+    }
+
+    /**
+     * Internal method behind every way of changing a sensor. With no history, subscribers, liveness
+     * tracking or timers it allocates nothing itself; listeners are looped over as an array for that.
+     */
+    private void changeActivation(Sensor sensor, boolean active) {
+        boolean wasActive = sensor.getActive();
+        if (history != null) {
+            history.recordSensor(sensor.getSensorId(), wasActive, active);
+        }
+        if (active != wasActive && stateChanges.hasSubscribers()) {
+            stateChanges.publish(new StateChange.SensorChanged(sensor.getSensorId(), sensor.getName(), active));
+        }
+        if (active) {
+            //activations are ignored while the owner is still on their way out
+            if (exitDelayTimeout == null) {
+                apply(wasActive ? AlarmEvent.SENSOR_REACTIVATED : AlarmEvent.SENSOR_ACTIVATED);
+            }
+        } else if (wasActive) {
+            apply(AlarmEvent.SENSOR_DEACTIVATED);
         }
         sensor.setActive(active);
         securityRepository.updateSensor(sensor);
+        heartbeat(sensor);
+    }
+
+    /**
+     * @return Publisher of every alarm, arming, sensor and cat detection change, for subscribers that
+     *         need flow control rather than a {@link StatusListener} callback
+     */
+    public StateChangePublisher getStateChanges() {
+        return stateChanges;
+    }
+
+    /**
+     * Starts writing every sensor, alarm, arming and camera change to the given history.
+     */
+    public synchronized void recordHistory(EventHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Starts tracking heartbeats for every sensor, current and future. A change in activation status
+     * counts as a heartbeat. Sensors silent for longer than the timeout are reported to listeners.
+     * @param bucket How precisely expiry is tracked, see {@link SensorLivenessTracker}
+     * @return The tracker, whose sweep the caller should start
+     */
+    public synchronized SensorLivenessTracker trackLiveness(Clock clock, Duration timeout, Duration bucket) {
+        SensorLivenessTracker tracker = new SensorLivenessTracker(clock, timeout, bucket, this::sensorOffline);
+        securityRepository.getSensors().forEach(tracker::register);
+        liveness = tracker;
+        return tracker;
+    }
+
+    /**
+     * Records that a sensor has reported in, even if its activation status didn't change.
+     */
+    public void heartbeat(Sensor sensor) {
+        SensorLivenessTracker tracker = liveness;
+        if (tracker != null) {
+            tracker.heartbeat(sensor.getSensorId());
+        }
+    }
+
+    /**
+     * Tracker callback: tell listeners that a sensor has stopped reporting.
+     */
+    private synchronized void sensorOffline(Sensor sensor) {
+        for (StatusListener listener : listeners) {
+            listener.sensorOffline(sensor);
+        }
     }
 
     /**
@@ -156,28 +428,107 @@ public class SecurityService {
      * ImageService to analyze the image for cats and update the alarm status accordingly.
      * @param currentCameraImage
      */
-    public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+    public void processImage(CameraImage currentCameraImage) {
+        processImage(Camera.DEFAULT, currentCameraImage);
     }
 
-    public AlarmStatus getAlarmStatus() {
-        AlarmStatus status = securityRepository.getAlarmStatus();
+    /**
+     * Scans a frame from a particular camera. The alarm treats a cat as present while any camera's
+     * latest frame shows one. The image service is called outside the service lock, so frames from
+     * different cameras can be scanned in parallel, see {@link CameraScanScheduler}.
+     */
+    public void processImage(Camera camera, CameraImage image) {
+        catDetected(camera, imageService.imageContainsCat(image, 50.0f));
+    }
+
+    /**
+     * Scans a frame as {@link #processImage(Camera, CameraImage)} does, but drops what it saw if
+     * {@code stillWanted}, checked under the service lock, is false by the time the scan comes back, such
+     * as for a camera removed meanwhile.
+     */
+    void processImage(Camera camera, CameraImage image, BooleanSupplier stillWanted) {
+        boolean cat = imageService.imageContainsCat(image, 50.0f);
+        synchronized (this) {
+            if (stillWanted.getAsBoolean()) {
+                catDetected(camera, cat);
+            }
+        }
+    }
+
+    /**
+     * Registers a camera. Cameras are also registered the first time one of their frames is scanned.
+     */
+    public synchronized void addCamera(Camera camera) {
+        cameras.putIfAbsent(camera.cameraId(), camera);
+    }
+
+    /**
+     * Forgets a camera, and whatever it last saw.
+     */
+    public synchronized void removeCamera(Camera camera) {
+        cameras.remove(camera.cameraId());
+        if (camerasSeeingCat.remove(camera.cameraId())) {
+            catDetected(!camerasSeeingCat.isEmpty());
+        }
+    }
+
+    public synchronized List<Camera> getCameras() {
+        return new ArrayList<>(cameras.values());
+    }
+
+    /**
+     * @return True if the camera's latest scanned frame showed a cat
+     */
+    public synchronized boolean isCatDetected(Camera camera) {
+        return camerasSeeingCat.contains(camera.cameraId());
+    }
+
+    /**
+     * Reads several parts of the state as of one moment: no change is made while the reader runs.
+     * The reader should only read, and be quick about it.
+     */
+    public synchronized <T> T read(Function<SecurityService, T> reader) {
+        return reader.apply(this);
+    }
+
+    public synchronized AlarmStatus getAlarmStatus() {
         return securityRepository.getAlarmStatus();
     }
 
-    public Set<Sensor> getSensors() {
-        return securityRepository.getSensors();
+    /**
+     * @return A copy of the sensors, in the repository's order, safe to walk while the service changes them
+     */
+    public synchronized Set<Sensor> getSensors() {
+        return new LinkedHashSet<>(securityRepository.getSensors());
     }
 
-    public void addSensor(Sensor sensor) {
+    public synchronized void addSensor(Sensor sensor) {
         securityRepository.addSensor(sensor);
+        assignSlot(sensor.getSensorId());
+        if (stateChanges.hasSubscribers()) {
+            stateChanges.publish(new StateChange.SensorAdded(sensor.getSensorId(), sensor.getName(),
+                    sensor.getSensorType()));
+        }
+        if (liveness != null) {
+            liveness.register(sensor);
+        }
     }
 
-    public void removeSensor(Sensor sensor) {
+    public synchronized void removeSensor(Sensor sensor) {
         securityRepository.removeSensor(sensor);
+        Integer slot = sensorSlots.remove(sensor.getSensorId());
+        if (slot != null) {
+            sensorIdsBySlot[slot] = null;
+        }
+        if (stateChanges.hasSubscribers()) {
+            stateChanges.publish(new StateChange.SensorRemoved(sensor.getSensorId(), sensor.getName()));
+        }
+        if (liveness != null) {
+            liveness.unregister(sensor);
+        }
     }
 
-    public ArmingStatus getArmingStatus() {
+    public synchronized ArmingStatus getArmingStatus() {
         return securityRepository.getArmingStatus();
     }
 }
\ No newline at end of file
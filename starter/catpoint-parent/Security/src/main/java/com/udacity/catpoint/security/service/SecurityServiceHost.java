@@ -0,0 +1,167 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.prefs.Preferences;
+
+/**
+ * Hosts one SecurityService, with its own repository, per customer home.
+ *
+ * Homes are spread over a fixed number of shards, each a single thread that owns its homes outright:
+ * a home is created on its shard's thread the first time it is used, and every later call for it runs
+ * on that same thread. Calls for one home therefore never overlap, the service locks are never
+ * contended, and homes on different shards run in parallel. One shard per core is a good default.
+ *
+ * Services created here should not be given a {@link TimingWheel}, as its callbacks would run on the
+ * wheel's thread rather than the home's shard.
+ */
+public class SecurityServiceHost implements AutoCloseable {
+
+    private final Function<String, SecurityService> homeFactory;
+    private final Shard[] shards;
+
+    /**
+     * @param shardCount Number of shard threads
+     * @param homeFactory Creates the service for a home id. Called on the home's shard.
+     */
+    public SecurityServiceHost(int shardCount, Function<String, SecurityService> homeFactory) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        this.homeFactory = homeFactory;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    /**
+     * Host whose homes use the pretend repository, each under its own child of the given preferences node,
+     * named by {@link #nodeName(String)}.
+     */
+    public static SecurityServiceHost withPretendHomes(int shardCount, Preferences homesNode) {
+        return new SecurityServiceHost(shardCount, homeId -> new SecurityService(
+                new PretendDatabaseSecurityRepositoryImpl(homesNode.node(nodeName(homeId)))));
+    }
+
+    /**
+     * @return A preferences node name for the home: the id itself when it can be one, otherwise {@code ~}
+     *         and the id's SHA-256 in hex. A node name can't be empty, contain {@code /}, which would
+     *         make nested nodes, or be longer than {@link Preferences#MAX_NAME_LENGTH}. Ids starting with
+     *         {@code ~} are hashed too, so they can't be mistaken for another id's hash.
+     */
+    static String nodeName(String homeId) {
+        if (!homeId.isEmpty() && homeId.length() <= Preferences.MAX_NAME_LENGTH && homeId.indexOf('/') < 0
+                && !homeId.startsWith("~")) {
+            return homeId;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(homeId.getBytes(StandardCharsets.UTF_8));
+            return "~" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+
+    /**
+     * Runs an action against a home's service on the home's shard, creating the home if needed.
+     * @return The action's result, completed on the shard thread
+     */
+    public <T> CompletableFuture<T> submit(String homeId, Function<SecurityService, T> action) {
+        Shard shard = shardFor(homeId);
+        return CompletableFuture.supplyAsync(() -> action.apply(shard.home(homeId)), shard.executor);
+    }
+
+    public CompletableFuture<Void> execute(String homeId, Consumer<SecurityService> action) {
+        return submit(homeId, securityService -> {
+            action.accept(securityService);
+            return null;
+        });
+    }
+
+    /**
+     * @return The shard a home is pinned to. It never changes for a given host.
+     */
+    public int shardOf(String homeId) {
+        int hash = homeId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    private Shard shardFor(String homeId) {
+        return shards[shardOf(homeId)];
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return The number of homes created so far, across all shards
+     */
+    public int getHomeCount() {
+        CompletableFuture<?>[] counts = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            counts[i] = CompletableFuture.supplyAsync(shard.homes::size, shard.executor);
+        }
+        int total = 0;
+        for (CompletableFuture<?> count : counts) {
+            total += (Integer) count.join();
+        }
+        return total;
+    }
+
+    /**
+     * Stops accepting work and waits up to a minute in all for the shards to finish what they have queued.
+     * If interrupted, stops waiting and leaves the thread's interrupt status set.
+     */
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        try {
+            for (Shard shard : shards) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !shard.executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A thread and the homes it owns. The map is only touched on that thread, so it needs no locking.
+     */
+    private class Shard {
+        private final ExecutorService executor;
+        private final Map<String, SecurityService> homes = new HashMap<>();
+
+        private Shard(int index) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "home-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private SecurityService home(String homeId) {
+            return homes.computeIfAbsent(homeId, homeFactory);
+        }
+    }
+}
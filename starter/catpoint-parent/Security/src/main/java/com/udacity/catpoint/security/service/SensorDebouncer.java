@@ -0,0 +1,372 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Sits between sensors and the SecurityService and turns noisy sequences of raw readings into the
+ * transitions that matter, so a flapping motion sensor doesn't push the alarm back and forth and
+ * rewrite the repository on every toggle.
+ *
+ * Each {@link SensorType} has a {@link Policy}. A raw change is passed on once it has lasted for the
+ * settle time of its direction, which is usually zero for activations and longer for releases, so a
+ * sensor that drops out only briefly stays active. After a change is passed on, the sensor holds its
+ * new state for the minimum hold time. A sensor that has used up its rate limit stays active until
+ * its window ends; the limit never holds back an activation, so it can't hide an intruder.
+ * Changes that can't be passed on yet are not lost: the latest raw state is passed on as soon as the
+ * rules allow, by {@link #flush()}, and a change that is undone in the meantime is never passed on.
+ *
+ * A debouncer built for a SecurityService also follows changes the service makes to sensors itself,
+ * such as resetting them all when the system is armed: afterwards it takes each sensor's own activation
+ * status as what was last passed on, so a sensor that was reset and then reads active again is passed
+ * on rather than dropped as no change.
+ *
+ * As in {@link SensorLivenessTracker}, each sensor gets a slot and its state lives in primitive arrays,
+ * so readings for known sensors don't allocate. Changes are passed on while holding this object's lock,
+ * so the downstream sees them in order.
+ */
+public class SensorDebouncer implements AutoCloseable {
+
+    private static final int NONE = -1;
+
+    private final Clock clock;
+    private final Policy[] policies = new Policy[SensorType.values().length];
+    private final BiConsumer<Sensor, Boolean> downstream;
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private Sensor[] sensors = new Sensor[16];
+    private boolean[] raw = new boolean[16];
+    private boolean[] reported = new boolean[16];
+    private long[] rawSince = new long[16];
+    private long[] lastReported = new long[16];
+    private long[] windowStart = new long[16];
+    private int[] windowCount = new int[16];
+    private long[] dueAt = new long[16];
+    private int[] pendingIndex = new int[16]; //position in pendingSlots, or NONE
+    private int[] pendingSlots = new int[16];
+    private int pendingCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    private long received;
+    private long passedOn;
+    private ScheduledExecutorService flusher;
+
+    private final SecurityService securityService; //whose sensor resets are followed, or null
+    private final StatusListener resetListener;
+    //set by the service, which may hold its lock while this object's lock is held waiting for it
+    private volatile boolean sensorsChangedDownstream;
+
+    /**
+     * @param policies Policy for each sensor type. Types left out are passed through unchanged.
+     * @param downstream Receives the debounced changes, usually {@link SecurityService#changeSensorActivationStatus}
+     */
+    public SensorDebouncer(Clock clock, Map<SensorType, Policy> policies, BiConsumer<Sensor, Boolean> downstream) {
+        this(clock, policies, downstream, null);
+    }
+
+    /**
+     * Passes changes on to {@link SecurityService#changeSensorActivationStatus} and follows the changes
+     * the service makes to sensors itself.
+     */
+    public SensorDebouncer(Clock clock, Map<SensorType, Policy> policies, SecurityService securityService) {
+        this(clock, policies, securityService::changeSensorActivationStatus, securityService);
+    }
+
+    private SensorDebouncer(Clock clock, Map<SensorType, Policy> policies, BiConsumer<Sensor, Boolean> downstream,
+                            SecurityService securityService) {
+        this.clock = clock;
+        this.downstream = downstream;
+        for (SensorType type : SensorType.values()) {
+            this.policies[type.ordinal()] = policies.getOrDefault(type, Policy.PASS_THROUGH);
+        }
+        this.securityService = securityService;
+        if (securityService == null) {
+            resetListener = null;
+        } else {
+            resetListener = new StatusListener() {
+                @Override
+                public void notify(AlarmStatus status) {
+                }
+
+                @Override
+                public void catDetected(boolean catDetected) {
+                }
+
+                @Override
+                public void sensorStatusChanged() {
+                    sensorsChangedDownstream = true;
+                }
+
+                @Override
+                public void sensorOffline(Sensor sensor) {
+                }
+            };
+            securityService.addStatusListener(resetListener);
+        }
+    }
+
+    /**
+     * Takes a raw reading. It is passed on right away if the sensor's policy allows, otherwise it waits
+     * for a later {@link #flush()}. Sensors are registered the first time they are seen, with their
+     * current activation status taken as already passed on.
+     */
+    public synchronized void submit(Sensor sensor, boolean active) {
+        long now = clock.millis();
+        Integer existing = slots.get(sensor.getSensorId());
+        int slot = existing != null ? existing : register(sensor, now);
+        sensors[slot] = sensor;
+        followDownstream();
+        received++;
+        if (raw[slot] != active) {
+            raw[slot] = active;
+            rawSince[slot] = now;
+        }
+        settle(slot, now);
+    }
+
+    /**
+     * Passes on every held-back change whose time has come.
+     */
+    public synchronized void flush() {
+        long now = clock.millis();
+        followDownstream();
+        //settle() may take the slot out of the pending list, which moves the last entry into its place
+        for (int i = pendingCount - 1; i >= 0; i--) {
+            int slot = pendingSlots[i];
+            if (dueAt[slot] <= now) {
+                settle(slot, now);
+            }
+        }
+    }
+
+    /**
+     * Forgets a sensor, dropping any change still held back for it.
+     */
+    public synchronized void remove(Sensor sensor) {
+        Integer slot = slots.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        unpend(slot);
+        sensors[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * @return The last activation status passed on for the sensor, or null if it has not been seen
+     */
+    public synchronized Boolean getReportedStatus(UUID sensorId) {
+        Integer slot = slots.get(sensorId);
+        return slot == null ? null : reported[slot];
+    }
+
+    /**
+     * @return Number of raw readings taken
+     */
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * @return Number of changes passed on
+     */
+    public synchronized long getPassedOn() {
+        return passedOn;
+    }
+
+    /**
+     * @return Number of sensors with a change still held back
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * After the service has changed sensors itself, takes every sensor's own activation status as what
+     * was last passed on, and drops held-back changes that the service has made moot.
+     */
+    private void followDownstream() {
+        if (!sensorsChangedDownstream) {
+            return;
+        }
+        sensorsChangedDownstream = false;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (sensors[slot] != null) {
+                reported[slot] = Boolean.TRUE.equals(sensors[slot].getActive());
+                if (raw[slot] == reported[slot]) {
+                    unpend(slot);
+                }
+            }
+        }
+    }
+
+    private int register(Sensor sensor, long now) {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+        if (slot >= sensors.length) {
+            grow();
+        }
+        slots.put(sensor.getSensorId(), slot);
+        sensors[slot] = sensor;
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        raw[slot] = active;
+        reported[slot] = active;
+        rawSince[slot] = now;
+        lastReported[slot] = Long.MIN_VALUE / 2; //no hold for the first change
+        windowStart[slot] = now;
+        windowCount[slot] = 0;
+        pendingIndex[slot] = NONE;
+        return slot;
+    }
+
+    /**
+     * Passes the sensor's raw state on if it differs from what was last passed on and the policy
+     * allows it now; otherwise works out when it will be allowed.
+     */
+    private void settle(int slot, long now) {
+        if (raw[slot] == reported[slot]) {
+            unpend(slot); //the change was undone before it was passed on
+            return;
+        }
+        Policy policy = policies[sensors[slot].getSensorType().ordinal()];
+        long windowMillis = policy.window().toMillis();
+        long due = Math.max(rawSince[slot] + (raw[slot] ? policy.activate() : policy.release()).toMillis(),
+                lastReported[slot] + policy.minHold().toMillis());
+        if (now - windowStart[slot] >= windowMillis) {
+            windowStart[slot] = now;
+            windowCount[slot] = 0;
+        } else if (!raw[slot] && windowCount[slot] >= policy.maxChanges()) {
+            due = Math.max(due, windowStart[slot] + windowMillis); //over the limit, so stay active for now
+        }
+        if (due > now) {
+            dueAt[slot] = due;
+            pend(slot);
+            return;
+        }
+        unpend(slot);
+        reported[slot] = raw[slot];
+        lastReported[slot] = now;
+        windowCount[slot]++;
+        passedOn++;
+        downstream.accept(sensors[slot], raw[slot]);
+    }
+
+    private void pend(int slot) {
+        if (pendingIndex[slot] != NONE) {
+            return;
+        }
+        if (pendingCount == pendingSlots.length) {
+            pendingSlots = Arrays.copyOf(pendingSlots, pendingCount * 2);
+        }
+        pendingIndex[slot] = pendingCount;
+        pendingSlots[pendingCount++] = slot;
+    }
+
+    private void unpend(int slot) {
+        int index = pendingIndex[slot];
+        if (index == NONE) {
+            return;
+        }
+        int last = pendingSlots[--pendingCount];
+        pendingSlots[index] = last;
+        pendingIndex[last] = index;
+        pendingIndex[slot] = NONE;
+    }
+
+    private void grow() {
+        int size = sensors.length * 2;
+        sensors = Arrays.copyOf(sensors, size);
+        raw = Arrays.copyOf(raw, size);
+        reported = Arrays.copyOf(reported, size);
+        rawSince = Arrays.copyOf(rawSince, size);
+        lastReported = Arrays.copyOf(lastReported, size);
+        windowStart = Arrays.copyOf(windowStart, size);
+        windowCount = Arrays.copyOf(windowCount, size);
+        dueAt = Arrays.copyOf(dueAt, size);
+        pendingIndex = Arrays.copyOf(pendingIndex, size);
+    }
+
+    /**
+     * Starts a daemon thread that flushes held-back changes at the given interval.
+     */
+    public synchronized void start(Duration interval) {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "sensor-debounce");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = Math.max(1, interval.toMillis());
+            flusher.scheduleAtFixedRate(this::flush, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+        if (securityService != null) {
+            securityService.removeStatusListener(resetListener);
+        }
+    }
+
+    /**
+     * How readings from one type of sensor are debounced.
+     * @param activate How long a sensor must read active before that is passed on
+     * @param release How long a sensor must read inactive before that is passed on. Making this longer
+     *                than {@code activate} is the hysteresis that keeps a flapping sensor active.
+     * @param minHold How long a state that was passed on is kept before the next change
+     * @param maxChanges Most changes passed on per window before releases are held back
+     */
+    public record Policy(Duration activate, Duration release, Duration minHold, int maxChanges, Duration window) {
+
+        /**
+         * Passes every change on as it happens.
+         */
+        public static final Policy PASS_THROUGH =
+                new Policy(Duration.ZERO, Duration.ZERO, Duration.ZERO, Integer.MAX_VALUE, Duration.ofMillis(1));
+
+        public Policy {
+            if (activate.isNegative() || release.isNegative() || minHold.isNegative() || maxChanges < 1
+                    || window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Invalid debounce policy");
+            }
+        }
+
+        /**
+         * Activations need no settle time for any type. Doors and windows only ride out contact bounce;
+         * motion sensors stay active until they have seen nothing for five seconds, and release at most
+         * three times a minute.
+         */
+        public static Map<SensorType, Policy> defaults() {
+            Map<SensorType, Policy> policies = new EnumMap<>(SensorType.class);
+            Policy contact = new Policy(Duration.ZERO, Duration.ofMillis(200), Duration.ofMillis(200), 30,
+                    Duration.ofMinutes(1));
+            policies.put(SensorType.DOOR, contact);
+            policies.put(SensorType.WINDOW, contact);
+            policies.put(SensorType.MOTION, new Policy(Duration.ZERO, Duration.ofSeconds(5), Duration.ofSeconds(1), 6,
+                    Duration.ofMinutes(1)));
+            return policies;
+        }
+    }
+}
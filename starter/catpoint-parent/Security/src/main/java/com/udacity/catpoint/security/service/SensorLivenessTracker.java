@@ -0,0 +1,228 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tracks when each sensor last reported in and reports sensors that have gone quiet for longer than
+ * the timeout.
+ *
+ * Each sensor gets a slot, and all per-sensor state lives in primitive arrays indexed by that slot.
+ * Sensors are also filed into buckets by the time they will expire, using intrusive linked lists
+ * threaded through the same arrays, so a heartbeat just moves a sensor from one bucket to another.
+ * A sweep only walks the buckets whose time has fully passed, never the whole sensor list.
+ */
+public class SensorLivenessTracker implements AutoCloseable {
+
+    private static final int NONE = -1;
+
+    private final Clock clock;
+    private final long timeoutMillis;
+    private final long bucketMillis;
+    private final Consumer<Sensor> onOffline;
+
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private Sensor[] sensors = new Sensor[16];
+    private long[] lastSeen = new long[16];
+    private int[] bucketOf = new int[16]; //ring index, or NONE if offline or unused
+    private int[] next = new int[16];
+    private int[] prev = new int[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    private final int[] bucketHeads; //ring of buckets, each the head of a list of slots
+    private long sweptEpoch;
+    private final List<Sensor> expired = new ArrayList<>();
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * @param timeout How long a sensor may stay silent before it is reported offline
+     * @param bucket Width of an expiry bucket. Offline reports may be up to one bucket late.
+     * @param onOffline Called, outside any lock, for each sensor that goes offline
+     */
+    public SensorLivenessTracker(Clock clock, Duration timeout, Duration bucket, Consumer<Sensor> onOffline) {
+        this.clock = clock;
+        this.timeoutMillis = timeout.toMillis();
+        this.bucketMillis = Math.max(1, bucket.toMillis());
+        this.onOffline = onOffline;
+        this.bucketHeads = new int[(int) (timeoutMillis / bucketMillis) + 2];
+        Arrays.fill(bucketHeads, NONE);
+        this.sweptEpoch = clock.millis() / bucketMillis;
+    }
+
+    /**
+     * Starts tracking a sensor, counting registration as its first heartbeat.
+     * @return The sensor's slot, which can be passed to {@link #heartbeat(int)}
+     */
+    public synchronized int register(Sensor sensor) {
+        Integer existing = slots.get(sensor.getSensorId());
+        if (existing != null) {
+            return existing;
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+        if (slot >= sensors.length) {
+            grow();
+        }
+        slots.put(sensor.getSensorId(), slot);
+        sensors[slot] = sensor;
+        bucketOf[slot] = NONE;
+        touch(slot, clock.millis());
+        return slot;
+    }
+
+    public synchronized void unregister(Sensor sensor) {
+        Integer slot = slots.remove(sensor.getSensorId());
+        if (slot == null) {
+            return;
+        }
+        unlink(slot);
+        sensors[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Records a heartbeat for a registered sensor. Unknown sensors are ignored.
+     */
+    public synchronized void heartbeat(UUID sensorId) {
+        Integer slot = slots.get(sensorId);
+        if (slot != null) {
+            touch(slot, clock.millis());
+        }
+    }
+
+    /**
+     * Records a heartbeat by slot, without any lookup.
+     */
+    public synchronized void heartbeat(int slot) {
+        if (sensors[slot] != null) {
+            touch(slot, clock.millis());
+        }
+    }
+
+    /**
+     * @return When the sensor last reported in, in clock millis, or -1 if it isn't tracked
+     */
+    public synchronized long getLastSeen(UUID sensorId) {
+        Integer slot = slots.get(sensorId);
+        return slot == null ? -1 : lastSeen[slot];
+    }
+
+    /**
+     * @return True if the sensor is tracked and was reported offline since its last heartbeat
+     */
+    public synchronized boolean isOffline(UUID sensorId) {
+        Integer slot = slots.get(sensorId);
+        return slot != null && bucketOf[slot] == NONE;
+    }
+
+    private void touch(int slot, long now) {
+        lastSeen[slot] = now;
+        unlink(slot);
+        int bucket = (int) (((now + timeoutMillis) / bucketMillis) % bucketHeads.length);
+        bucketOf[slot] = bucket;
+        prev[slot] = NONE;
+        next[slot] = bucketHeads[bucket];
+        if (next[slot] != NONE) {
+            prev[next[slot]] = slot;
+        }
+        bucketHeads[bucket] = slot;
+    }
+
+    private void unlink(int slot) {
+        int bucket = bucketOf[slot];
+        if (bucket == NONE) {
+            return;
+        }
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            bucketHeads[bucket] = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        }
+        bucketOf[slot] = NONE;
+    }
+
+    /**
+     * Reports every sensor whose timeout has passed. Only buckets whose whole time span is over are
+     * visited; a sensor found in one that isn't due yet (the ring wrapped) is left for a later turn.
+     */
+    public void sweep() {
+        synchronized (this) {
+            long now = clock.millis();
+            long currentEpoch = now / bucketMillis;
+            //after a long pause every bucket is due, so there is no point going round more than once
+            long from = Math.max(sweptEpoch, currentEpoch - bucketHeads.length);
+            for (long epoch = from; epoch < currentEpoch; epoch++) {
+                int slot = bucketHeads[(int) (epoch % bucketHeads.length)];
+                while (slot != NONE) {
+                    int following = next[slot];
+                    if (lastSeen[slot] + timeoutMillis <= now) {
+                        unlink(slot);
+                        expired.add(sensors[slot]);
+                    }
+                    slot = following;
+                }
+            }
+            sweptEpoch = currentEpoch;
+        }
+        //tell listeners outside the lock, they may well call back into heartbeat()
+        List<Sensor> offline;
+        synchronized (this) {
+            if (expired.isEmpty()) {
+                return;
+            }
+            offline = new ArrayList<>(expired);
+            expired.clear();
+        }
+        offline.forEach(onOffline);
+    }
+
+    private void grow() {
+        int size = sensors.length * 2;
+        sensors = Arrays.copyOf(sensors, size);
+        lastSeen = Arrays.copyOf(lastSeen, size);
+        bucketOf = Arrays.copyOf(bucketOf, size);
+        next = Arrays.copyOf(next, size);
+        prev = Arrays.copyOf(prev, size);
+    }
+
+    /**
+     * Starts a daemon thread that sweeps once per bucket.
+     */
+    public synchronized void start() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "sensor-liveness");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleAtFixedRate(this::sweep, bucketMillis, bucketMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.UUID;
+
+/**
+ * A change to the state of the security system, as published by {@link StateChangePublisher}.
+ */
+public sealed interface StateChange {
+
+    record AlarmChanged(AlarmStatus status) implements StateChange { }
+
+    record ArmingChanged(ArmingStatus status) implements StateChange { }
+
+    /**
+     * Sensors are mutable, so this carries what the sensor was at the time rather than the sensor itself.
+     */
+    record SensorChanged(UUID sensorId, String name, boolean active) implements StateChange { }
+
+    record SensorAdded(UUID sensorId, String name, SensorType type) implements StateChange { }
+
+    record SensorRemoved(UUID sensorId, String name) implements StateChange { }
+
+    record CatDetectionChanged(boolean catDetected) implements StateChange { }
+}
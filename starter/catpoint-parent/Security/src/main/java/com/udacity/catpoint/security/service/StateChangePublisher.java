@@ -0,0 +1,245 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes every {@link StateChange} of a SecurityService to any number of subscribers, each at its
+ * own pace.
+ *
+ * Publishing never blocks and never waits for a subscriber: each change is put in every subscriber's
+ * bounded buffer, and delivered on the executor as the subscriber's {@code request(n)} demand allows.
+ * When a buffer is full the subscriber's {@link Overflow} policy decides which change is dropped, so
+ * a slow dashboard loses changes rather than holding up the alarm. Signals to any one subscriber are
+ * never concurrent, and arrive in the order the changes happened.
+ *
+ * Closing the publisher completes each subscriber once it has taken everything still in its buffer.
+ */
+public class StateChangePublisher implements Flow.Publisher<StateChange>, AutoCloseable {
+
+    /**
+     * What to drop when a subscriber's buffer is full.
+     */
+    public enum Overflow {
+        /** Keep what is buffered and drop the change that doesn't fit. */
+        DROP_NEWEST,
+        /** Drop the oldest buffered change, so the subscriber always ends up with the latest ones. */
+        DROP_OLDEST
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final Executor executor;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * Delivers changes on the common fork-join pool.
+     */
+    public StateChangePublisher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public StateChangePublisher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes with a buffer of {@link #DEFAULT_BUFFER_SIZE} changes that keeps the latest ones.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super StateChange> subscriber) {
+        subscribe(subscriber, DEFAULT_BUFFER_SIZE, Overflow.DROP_OLDEST);
+    }
+
+    /**
+     * @param bufferSize Most changes held for the subscriber while it has no demand
+     */
+    public void subscribe(Flow.Subscriber<? super StateChange> subscriber, int bufferSize, Overflow overflow) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        Subscription subscription = new Subscription(subscriber, bufferSize, overflow);
+        subscriptions.add(subscription);
+        if (closed) {
+            subscription.complete();
+        }
+        subscription.schedule(); //onSubscribe goes out on the executor too, so it can't overlap onNext
+    }
+
+    /**
+     * @return True if anyone is subscribed, so callers can skip building changes nobody will see
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return Number of changes dropped so far because a subscriber's buffer was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Hands a change to every current subscriber without waiting for any of them.
+     */
+    void publish(StateChange change) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(change);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * One subscriber's buffer and demand. Whoever finds there is something to deliver and nobody
+     * delivering it yet submits {@link #run()}, which delivers until it runs out of changes or demand.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super StateChange> subscriber;
+        private final int capacity;
+        private final Overflow overflow;
+        private final ArrayDeque<StateChange> buffer = new ArrayDeque<>();
+        private long demand;
+        private boolean subscribed;
+        private boolean draining;
+        private boolean completing;
+        private boolean cancelled;
+        private IllegalArgumentException badRequest;
+
+        Subscription(Flow.Subscriber<? super StateChange> subscriber, int capacity, Overflow overflow) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.overflow = overflow;
+        }
+
+        void offer(StateChange change) {
+            synchronized (this) {
+                if (cancelled || completing) {
+                    return;
+                }
+                if (buffer.size() == capacity) {
+                    dropped.increment();
+                    if (overflow == Overflow.DROP_NEWEST) {
+                        return;
+                    }
+                    buffer.poll();
+                }
+                buffer.add(change);
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    badRequest = new IllegalArgumentException("Requested " + n + " changes, must be positive");
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n; //unbounded once it overflows
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            schedule();
+        }
+
+        void schedule() {
+            synchronized (this) {
+                if (draining || cancelled || !hasWork()) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                cancel(); //nothing can be delivered any more
+            }
+        }
+
+        private boolean hasWork() {
+            return !subscribed || badRequest != null || (demand > 0 && !buffer.isEmpty())
+                    || (completing && buffer.isEmpty());
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                StateChange next = null;
+                boolean subscribing = false;
+                boolean completed = false;
+                IllegalArgumentException error = null;
+                synchronized (this) {
+                    if (cancelled || !hasWork()) {
+                        draining = false;
+                        return;
+                    }
+                    if (!subscribed) {
+                        subscribed = true;
+                        subscribing = true;
+                    } else if (badRequest != null) {
+                        error = badRequest;
+                        cancelled = true;
+                        buffer.clear();
+                    } else if (demand > 0 && !buffer.isEmpty()) {
+                        next = buffer.poll();
+                        demand--;
+                    } else {
+                        completed = true;
+                        cancelled = true;
+                    }
+                }
+                try {
+                    if (subscribing) {
+                        subscriber.onSubscribe(this);
+                    } else if (error != null) {
+                        subscriptions.remove(this);
+                        subscriber.onError(error);
+                    } else if (completed) {
+                        subscriptions.remove(this);
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onNext(next);
+                    }
+                } catch (RuntimeException e) {
+                    cancel(); //a subscriber that throws has broken the contract, so it gets nothing more
+                }
+            }
+        }
+    }
+}
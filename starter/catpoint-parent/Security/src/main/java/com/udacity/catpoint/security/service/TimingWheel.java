@@ -0,0 +1,205 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel for running many delayed tasks cheaply. Scheduling and cancelling a task
+ * are O(1) regardless of how many tasks are pending.
+ *
+ * Time is split into ticks. Level 0 has one slot per tick for the next 64 ticks, level 1 one slot per
+ * 64 ticks, and so on. A task is placed on the lowest level that can hold its deadline, and moved down
+ * a level each time the wheel below it completes a turn, until it lands in a level 0 slot and runs.
+ *
+ * The wheel reads time from an injectable {@link Clock} and only moves forward when {@link #advance()}
+ * is called, either by the thread started with {@link #start()} or directly by tests.
+ */
+public class TimingWheel implements AutoCloseable {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final Clock clock;
+    private final long tickMillis;
+    private final long startMillis;
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS]; //heads of doubly-linked lists
+    private long currentTick;
+    private int pending;
+    private ScheduledExecutorService driver;
+
+    public TimingWheel(Clock clock, long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.startMillis = clock.millis();
+    }
+
+    /**
+     * Runs a task once the delay has passed. The task runs on whichever thread calls {@link #advance()}.
+     * @return A handle that can cancel the task
+     */
+    public synchronized Timeout schedule(Duration delay, Runnable task) {
+        long deadlineTick = (clock.millis() - startMillis + delay.toMillis() + tickMillis - 1) / tickMillis;
+        Timeout timeout = new Timeout(Math.max(deadlineTick, currentTick + 1), task);
+        insert(timeout);
+        pending++;
+        return timeout;
+    }
+
+    /**
+     * Runs every task whose deadline has passed according to the clock.
+     */
+    public void advance() {
+        long targetTick = (clock.millis() - startMillis) / tickMillis;
+        while (true) {
+            Timeout expired;
+            synchronized (this) {
+                if (currentTick >= targetTick) {
+                    return;
+                }
+                if (pending == 0) {
+                    currentTick = targetTick; //nothing to move, so skip straight to now
+                    return;
+                }
+                currentTick++;
+                cascade();
+                int slot = (int) (currentTick & SLOT_MASK);
+                expired = slots[0][slot];
+                slots[0][slot] = null;
+                for (Timeout t = expired; t != null; t = t.next) {
+                    t.level = -1;
+                    pending--;
+                }
+            }
+            //run tasks outside the lock so they may schedule or cancel other tasks
+            for (Timeout t = expired; t != null; ) {
+                Timeout next = t.next;
+                t.prev = t.next = null;
+                t.task.run();
+                t = next;
+            }
+        }
+    }
+
+    /**
+     * Moves tasks down from higher levels whose slot has come up. Higher levels go first, so their
+     * tasks can land in the lower level slots that are about to be cascaded or run.
+     */
+    private void cascade() {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = SLOT_BITS * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                continue;
+            }
+            int slot = (int) ((currentTick >>> shift) & SLOT_MASK);
+            Timeout t = slots[level][slot];
+            slots[level][slot] = null;
+            while (t != null) {
+                Timeout next = t.next;
+                t.prev = t.next = null;
+                insert(t);
+                t = next;
+            }
+        }
+    }
+
+    private void insert(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        long tick = timeout.deadlineTick;
+        if (level == LEVELS - 1 && delta >= (1L << (SLOT_BITS * LEVELS))) {
+            //beyond the top level's range: park it in the last slot and re-check when that comes up
+            tick = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+        }
+        int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private synchronized boolean remove(Timeout timeout) {
+        if (timeout.level < 0) {
+            return false;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = timeout.next = null;
+        timeout.level = -1;
+        pending--;
+        return true;
+    }
+
+    /**
+     * @return The number of tasks waiting to run
+     */
+    public synchronized int size() {
+        return pending;
+    }
+
+    /**
+     * Starts a daemon thread that advances the wheel once per tick.
+     */
+    public synchronized void start() {
+        if (driver == null) {
+            driver = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "timing-wheel");
+                thread.setDaemon(true);
+                return thread;
+            });
+            driver.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (driver != null) {
+            driver.shutdownNow();
+            driver = null;
+        }
+    }
+
+    /**
+     * Handle for a scheduled task.
+     */
+    public final class Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private Timeout prev;
+        private Timeout next;
+        private int level;
+        private int slot;
+
+        private Timeout(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * Stops the task from running.
+         * @return false if the task already ran or was already cancelled
+         */
+        public boolean cancel() {
+            return remove(this);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.udacity.catpoint.security.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock that only moves when told to, for running timers on recorded or simulated time rather than
+ * the wall clock. It never moves backwards.
+ */
+public class VirtualClock extends Clock {
+
+    private volatile long millis;
+
+    public VirtualClock(long startMillis) {
+        this.millis = startMillis;
+    }
+
+    /**
+     * Moves the clock to the given time, or leaves it alone if that would move it backwards.
+     */
+    public void set(long millis) {
+        if (millis > this.millis) {
+            this.millis = millis;
+        }
+    }
+
+    public void advance(Duration duration) {
+        set(millis + duration.toMillis());
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+}
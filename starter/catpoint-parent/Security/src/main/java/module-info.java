@@ -3,10 +3,19 @@ module Security {
     exports com.udacity.catpoint.security.data;
     exports com.udacity.catpoint.security.service;
     exports com.udacity.catpoint.security.application;
-    requires java.desktop;
     requires com.google.gson;
     requires com.google.common;
     requires java.prefs;
+    requires java.sql;
+    requires java.management;
+    requires jdk.management;
+    requires jdk.httpserver;
     requires Image;
     opens com.udacity.catpoint.security.data to com.google.gson;
+
+    uses com.udacity.catpoint.security.data.SecurityRepositoryProvider;
+    provides com.udacity.catpoint.security.data.SecurityRepositoryProvider with
+            com.udacity.catpoint.security.data.PretendDatabaseRepositoryProvider,
+            com.udacity.catpoint.security.data.EmbeddedDatabaseRepositoryProvider,
+            com.udacity.catpoint.security.data.InMemoryRepositoryProvider;
 }
\ No newline at end of file
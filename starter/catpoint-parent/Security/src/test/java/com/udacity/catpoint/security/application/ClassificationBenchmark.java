@@ -0,0 +1,176 @@
+package com.udacity.catpoint.security.application;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.AsyncAwsImageService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many frames per second {@link AsyncAwsImageService} classifies at different numbers of
+ * requests in flight, against a local stand-in for Rekognition that answers every request after a
+ * fixed delay, as a remote service would after a round trip.
+ *
+ * At one request in flight the service is no faster than {@link com.udacity.catpoint.image.service.AwsImageService}
+ * on one thread: one frame per round trip. With more in flight, throughput should grow with the number
+ * of requests until the client, rather than the round trip, becomes the limit.
+ *
+ * Run it from the IDE or with
+ * {@code java -cp ... com.udacity.catpoint.security.application.ClassificationBenchmark}, configured with
+ * {@code catpoint.bench.levels}, the numbers of requests in flight to try (default 1,4,16,64),
+ * {@code catpoint.bench.frames}, frames sent at each level (1000), and
+ * {@code catpoint.bench.latencyMillis}, the stand-in's delay (20).
+ */
+public class ClassificationBenchmark {
+
+    private static final byte[] LABELS = "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":97.5}],\"LabelModelVersion\":\"2.0\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Duration latency;
+    private final HttpServer server;
+    private final ExecutorService readers;
+    private final ScheduledExecutorService responders;
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peakConcurrent = new AtomicInteger();
+
+    /**
+     * Starts the stand-in on a free loopback port.
+     */
+    public ClassificationBenchmark(Duration latency) throws IOException {
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.readers = Executors.newFixedThreadPool(2, daemon("bench-read"));
+        this.responders = Executors.newSingleThreadScheduledExecutor(daemon("bench-respond"));
+        server.setExecutor(readers);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] levels = Arrays.stream(System.getProperty("catpoint.bench.levels", "1,4,16,64").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+        int frames = Integer.getInteger("catpoint.bench.frames", 1000);
+        Duration latency = Duration.ofMillis(Long.getLong("catpoint.bench.latencyMillis", 20));
+        ClassificationBenchmark benchmark = new ClassificationBenchmark(latency);
+        try {
+            System.out.printf("%d frames per level, %d ms per round trip%n", frames, latency.toMillis());
+            System.out.printf("%10s %10s %12s %10s %10s %8s%n", "in flight", "seconds", "frames/s", "speedup",
+                    "peak", "failed");
+            double baseline = 0;
+            for (int level : levels) {
+                Result result = benchmark.run(level, frames);
+                if (baseline == 0) {
+                    baseline = result.framesPerSecond();
+                }
+                System.out.printf("%10d %10.2f %12.1f %9.1fx %10d %8d%n", level, result.nanos() / 1e9,
+                        result.framesPerSecond(), result.framesPerSecond() / baseline, result.peakConcurrent(),
+                        result.failed());
+            }
+        } finally {
+            benchmark.close();
+        }
+    }
+
+    /**
+     * Sends the frames as one batch through a service allowed {@code maxInFlight} requests at once.
+     */
+    public Result run(int maxInFlight, int frames) {
+        //the stand-in doesn't look at the bytes, so any will do; sending them as they are keeps JPEG
+        //encoding out of the measurement
+        byte[] bytes = new byte[16 * 1024];
+        new SplittableRandom(1).nextBytes(bytes);
+        List<CameraImage> batch = new ArrayList<>(frames);
+        for (int i = 0; i < frames; i++) {
+            batch.add(CameraImage.ofEncoded(bytes));
+        }
+
+        Properties config = new Properties();
+        config.setProperty("aws.id", "benchmark");
+        config.setProperty("aws.secret", "benchmark");
+        config.setProperty("aws.region", "us-east-2");
+        config.setProperty("aws.endpoint", "http://localhost:" + server.getAddress().getPort());
+        try (AsyncAwsImageService service = new AsyncAwsImageService(config, maxInFlight)) {
+            //one request first, so building the client and the first connection aren't timed
+            service.imageContainsCat(batch.get(0), 50);
+            peakConcurrent.set(0);
+
+            long start = System.nanoTime();
+            List<CompletableFuture<Boolean>> results = service.imageContainsCat(batch, 50);
+            long failed = 0;
+            for (CompletableFuture<Boolean> result : results) {
+                try {
+                    result.join();
+                } catch (CompletionException e) {
+                    failed++;
+                }
+            }
+            return new Result(frames, System.nanoTime() - start, peakConcurrent.get(), failed);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        peakConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+        responders.schedule(() -> respond(exchange), latency.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void respond(HttpExchange exchange) {
+        concurrent.decrementAndGet();
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-amz-json-1.1");
+            exchange.sendResponseHeaders(200, LABELS.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(LABELS);
+            }
+        } catch (IOException e) {
+            //the client went away
+        }
+    }
+
+    public void close() {
+        server.stop(0);
+        responders.shutdownNow();
+        readers.shutdownNow();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param peakConcurrent Most requests the stand-in was handling at once
+     */
+    public record Result(int frames, long nanos, int peakConcurrent, long failed) {
+
+        public double framesPerSecond() {
+            return nanos == 0 ? 0 : frames * 1e9 / nanos;
+        }
+    }
+}
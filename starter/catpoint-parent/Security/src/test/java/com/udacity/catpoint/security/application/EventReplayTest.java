@@ -0,0 +1,95 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EmbeddedDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.EventHistory;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.AlarmTransitionTable;
+import com.udacity.catpoint.security.service.SecurityService;
+import com.udacity.catpoint.security.service.TimingWheel;
+import com.udacity.catpoint.security.service.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventReplayTest {
+
+    private static final Duration ENTRY_DELAY = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Records a short session: a break-in that escalates after the entry delay, then a cat while armed at home.
+     */
+    @BeforeEach
+    void record() {
+        VirtualClock clock = new VirtualClock(0);
+        TimingWheel timers = new TimingWheel(clock, 100);
+        try (EventHistory history = new EventHistory(directory, clock, 1000, Duration.ofHours(1), Duration.ofDays(1));
+             EmbeddedDatabaseSecurityRepositoryImpl repository = newRepository()) {
+            SecurityService securityService = new SecurityService(repository, (image, threshold) -> true,
+                    timers, ENTRY_DELAY, Duration.ZERO);
+            securityService.recordHistory(history);
+            Sensor door = new Sensor("Door", SensorType.DOOR);
+            securityService.addSensor(door);
+
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            clock.advance(Duration.ofSeconds(5));
+            securityService.changeSensorActivationStatus(door, true);
+            clock.advance(Duration.ofSeconds(31));
+            timers.advance();
+            securityService.changeSensorActivationStatus(door, false);
+            clock.advance(Duration.ofSeconds(5));
+            securityService.setArmingStatus(ArmingStatus.DISARMED);
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            clock.advance(Duration.ofSeconds(5));
+            securityService.processImage(CameraImage.ofPixels(1, 1, new int[1]));
+        }
+    }
+
+    private static EmbeddedDatabaseSecurityRepositoryImpl newRepository() {
+        return new EmbeddedDatabaseSecurityRepositoryImpl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    }
+
+    @Test
+    public void replayReachesTheRecordedStateAndAgreesWithEveryAlarmChange() {
+        try (EventHistory history = new EventHistory(directory);
+             EmbeddedDatabaseSecurityRepositoryImpl repository = newRepository()) {
+            EventReplay.Report report = new EventReplay(repository, ENTRY_DELAY, Duration.ZERO,
+                    AlarmTransitionTable.defaults()).replay(history, 0, Long.MAX_VALUE);
+
+            assertEquals(0, report.mismatches());
+            assertEquals(AlarmStatus.ALARM, report.alarmStatus());
+            assertEquals(ArmingStatus.ARMED_HOME, report.armingStatus());
+            assertEquals(1, report.sensors());
+            assertEquals(1, report.transitions(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM));
+            assertEquals(1, report.transitions(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM));
+            assertEquals(1, report.transitions(AlarmStatus.NO_ALARM, AlarmStatus.ALARM));
+            assertTrue(report.eventsPerSecond() > 0);
+        }
+    }
+
+    @Test
+    public void replayWithDifferentTimingReportsTheDifferences() {
+        try (EventHistory history = new EventHistory(directory);
+             EmbeddedDatabaseSecurityRepositoryImpl repository = newRepository()) {
+            //without an entry delay the break-in never escalates, so the recorded escalation doesn't match
+            EventReplay.Report report = new EventReplay(repository, Duration.ZERO, Duration.ZERO,
+                    AlarmTransitionTable.defaults()).replay(history, 0, Long.MAX_VALUE);
+
+            assertEquals(1, report.mismatches());
+            assertEquals(0, report.transitions(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM));
+        }
+    }
+}
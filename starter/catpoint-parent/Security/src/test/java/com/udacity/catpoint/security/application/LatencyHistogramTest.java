@@ -0,0 +1,68 @@
+package com.udacity.catpoint.security.application;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(10_000, histogram.getTotalCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_000, histogram.getValueAtPercentile(50), 5_000_000 * 0.035);
+        assertEquals(9_900_000, histogram.getValueAtPercentile(99), 9_900_000 * 0.035);
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void everyValueIsReportedWithinItsBucketWidth() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE); //so the reported value is not just capped at the max
+            long reported = histogram.getValueAtPercentile(50);
+            assertTrue(reported >= value, value + " reported as " + reported);
+            assertTrue(reported - value <= Math.max(0, value / 32), value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(31);
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(31, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void addedHistogramsCountEverything() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            fast.record(1_000);
+        }
+        slow.record(1_000_000);
+
+        fast.add(slow);
+        assertEquals(100, fast.getTotalCount());
+        assertEquals(1_000_000, fast.getMax());
+        assertEquals(1_000, fast.getValueAtPercentile(99), 1_000 * 0.035);
+        assertEquals(1_000_000, fast.getValueAtPercentile(99.9));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+}
@@ -0,0 +1,48 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    private final Preferences prefs = Preferences.userRoot().node("catpoint-test/" + UUID.randomUUID());
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    public void shortRunSendsEveryOperationOnce() {
+        SecurityService securityService = new SecurityService(new PretendDatabaseSecurityRepositoryImpl(prefs),
+                new FakeImageService());
+        LoadGenerator generator = new LoadGenerator(securityService,
+                new LoadGenerator.Settings(4, 3, 1000, Duration.ofMillis(500), Duration.ofMillis(100), 0.1, 1));
+
+        LoadGenerator.Report report = generator.run();
+
+        assertEquals(4 * SensorType.values().length, securityService.getSensors().size());
+        assertEquals(500, report.operations());
+        assertEquals(500, report.responseTime().getTotalCount());
+        assertEquals(500, report.serviceTime().getTotalCount());
+        assertTrue(report.responseTime().getMax() >= report.serviceTime().getValueAtPercentile(50));
+        assertTrue(report.toString().contains("99.9"));
+    }
+
+    @Test
+    public void invalidSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LoadGenerator.Settings(4, 0, 1000, Duration.ofSeconds(1), Duration.ofSeconds(1), 0.1, 1));
+    }
+}
@@ -0,0 +1,67 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.EventHistory;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityDaemonTest {
+
+    private final SecurityService securityService =
+            new SecurityService(new InMemorySecurityRepositoryImpl(), new FakeImageService());
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final SecurityDaemon daemon =
+            new SecurityDaemon(securityService, new PrintStream(output, true, StandardCharsets.UTF_8));
+
+    private String output() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void arm_unknownArgument_printsUsageAndStaysDisarmed() throws IOException {
+        assertTrue(daemon.execute("arm hom"));
+        assertTrue(daemon.execute("arm"));
+        assertEquals(ArmingStatus.DISARMED, securityService.getArmingStatus());
+        assertTrue(output().contains("usage: arm home|away"), output());
+
+        assertTrue(daemon.execute("arm away"));
+        assertEquals(ArmingStatus.ARMED_AWAY, securityService.getArmingStatus());
+    }
+
+    @Test
+    public void add_unknownSensorType_printsUsageAndKeepsRunning() throws IOException {
+        assertTrue(daemon.execute("add GARAGE Side door"));
+        assertTrue(securityService.getSensors().isEmpty());
+        assertTrue(output().contains("usage: add DOOR|WINDOW|MOTION name"), output());
+
+        assertTrue(daemon.execute("add door Side door"));
+        assertEquals("Side door", securityService.getSensors().iterator().next().getName());
+    }
+
+    @Test
+    public void scan_missingFile_printsErrorAndKeepsRunning() throws IOException {
+        assertTrue(daemon.execute("scan no/such/picture.jpg"));
+        assertTrue(output().contains("unable to read no/such/picture.jpg"), output());
+    }
+
+    @Test
+    public void history_badMinutes_printsUsage(@TempDir Path directory) throws IOException {
+        try (EventHistory history = new EventHistory(directory)) {
+            SecurityDaemon daemon = new SecurityDaemon(securityService, history,
+                    new PrintStream(output, true, StandardCharsets.UTF_8));
+            assertTrue(daemon.execute("history soon"));
+            assertTrue(output().contains("usage: history [minutes] [sensor name]"), output());
+        }
+    }
+}
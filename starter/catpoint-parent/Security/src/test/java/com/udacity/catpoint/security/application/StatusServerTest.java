@@ -0,0 +1,192 @@
+package com.udacity.catpoint.security.application;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatusServerTest {
+
+    private final SecurityService securityService =
+            new SecurityService(new InMemorySecurityRepositoryImpl(), new FakeImageService());
+    private final StatusServer server;
+
+    public StatusServerTest() throws IOException {
+        server = new StatusServer(securityService, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)
+                .start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    private record Response(int status, String etag, String body) {
+    }
+
+    private Response get(String query, String etag) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + "/status" + (query == null ? "" : "?" + query));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setReadTimeout(20_000);
+        if (etag != null) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        int status = connection.getResponseCode();
+        String body = "";
+        if (status == 200) {
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        return new Response(status, connection.getHeaderField("ETag"), body);
+    }
+
+    private void awaitVersionAbove(long version) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getVersion() <= version) {
+            assertTrue(System.nanoTime() < deadline, "change never reached the server");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void status_isServedAsJsonWithVersionETag() throws Exception {
+        securityService.addSensor(new Sensor("Front door", SensorType.DOOR));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        awaitVersionAbove(0);
+
+        Response response = get(null, null);
+        assertEquals(200, response.status());
+        assertTrue(response.etag().matches("\"[0-9a-z]+-" + server.getVersion() + "\""), response.etag());
+        assertTrue(response.body().contains("\"armingStatus\":\"ARMED_HOME\""), response.body());
+        assertTrue(response.body().contains("\"name\":\"Front door\""), response.body());
+        assertTrue(response.body().contains("\"type\":\"DOOR\""), response.body());
+    }
+
+    @Test
+    public void unchangedPolls_get304WithoutSerializing() throws Exception {
+        Response first = get(null, null);
+        long serializations = server.getSerializations();
+
+        for (int i = 0; i < 20; i++) {
+            Response again = get(null, first.etag());
+            assertEquals(304, again.status());
+            assertEquals(first.etag(), again.etag());
+        }
+        assertEquals(serializations, server.getSerializations());
+        assertEquals(20, server.getNotModified());
+
+        //many clients reading the same version share one serialization
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, get(null, null).status());
+        }
+        assertEquals(serializations, server.getSerializations());
+    }
+
+    @Test
+    public void anotherServersETag_getsTheFullState() throws Exception {
+        Response first = get(null, null);
+        try (StatusServer restarted = new StatusServer(securityService,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2).start()) {
+            assertEquals(server.getVersion(), restarted.getVersion());
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://localhost:" + restarted.getPort() + "/status").openConnection();
+            connection.setRequestProperty("If-None-Match", first.etag());
+            assertEquals(200, connection.getResponseCode());
+            assertNotEquals(first.etag(), connection.getHeaderField("ETag"));
+            connection.getInputStream().close();
+        }
+    }
+
+    @Test
+    public void longPoll_isAnsweredWhenTheStateChanges() throws Exception {
+        Response first = get(null, null);
+        CompletableFuture<Response> poll = CompletableFuture.supplyAsync(() -> {
+            try {
+                return get("wait=10", first.etag());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getWaiting() == 0) {
+            assertTrue(System.nanoTime() < deadline, "poll was never held back");
+            Thread.sleep(5);
+        }
+        assertFalse(poll.isDone());
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Response changed = poll.get(5, TimeUnit.SECONDS);
+        assertEquals(200, changed.status());
+        assertNotEquals(first.etag(), changed.etag());
+        assertTrue(changed.body().contains("\"armingStatus\":\"ARMED_AWAY\""), changed.body());
+        assertEquals(0, server.getWaiting());
+    }
+
+    @Test
+    public void longPoll_gets304WhenTheWaitRunsOut() throws Exception {
+        Response first = get(null, null);
+        long start = System.nanoTime();
+        Response timedOut = get("wait=0.5", first.etag());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(304, timedOut.status());
+        assertEquals(first.etag(), timedOut.etag());
+        assertTrue(elapsedMillis >= 450, "answered after " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void manyIdleWatchers_areHeldWithoutThreads() throws Exception {
+        Response first = get(null, null);
+        ExecutorService clients = Executors.newCachedThreadPool(); //a blocking client needs a thread per poll
+        try {
+            List<CompletableFuture<Response>> polls = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                polls.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return get("wait=20", first.etag());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, clients));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (server.getWaiting() < polls.size()) {
+                assertTrue(System.nanoTime() < deadline, "only " + server.getWaiting() + " polls held back");
+                Thread.sleep(10);
+            }
+            long serverThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(t -> t.getName().startsWith("status-")).count();
+            assertTrue(serverThreads <= 3, serverThreads + " server threads for " + polls.size() + " watchers");
+
+            securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            for (CompletableFuture<Response> poll : polls) {
+                assertEquals(200, poll.get(10, TimeUnit.SECONDS).status());
+            }
+            assertEquals(2, server.getSerializations()); //the first get, then one for the change
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+}
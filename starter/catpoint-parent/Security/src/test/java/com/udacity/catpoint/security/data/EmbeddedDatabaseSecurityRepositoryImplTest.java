@@ -0,0 +1,40 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EmbeddedDatabaseSecurityRepositoryImplTest extends SecurityRepositoryContractTest {
+
+    private final String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    @Override
+    protected SecurityRepository createRepository() {
+        return new EmbeddedDatabaseSecurityRepositoryImpl(url);
+    }
+
+    @AfterEach
+    void close() {
+        ((EmbeddedDatabaseSecurityRepositoryImpl) repository).close();
+    }
+
+    @Test
+    public void reopenedRepository_loadsStoredState() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        door.setActive(true);
+        repository.addSensor(door);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        try (EmbeddedDatabaseSecurityRepositoryImpl reopened = new EmbeddedDatabaseSecurityRepositoryImpl(url)) {
+            assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+            assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+            assertTrue(reopened.getSensors().contains(door));
+            assertTrue(reopened.getSensors().iterator().next().getActive());
+        }
+    }
+}
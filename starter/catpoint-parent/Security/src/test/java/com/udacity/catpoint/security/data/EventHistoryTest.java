@@ -0,0 +1,131 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.security.service.VirtualClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventHistoryTest {
+
+    @TempDir
+    Path directory;
+
+    private final VirtualClock clock = new VirtualClock(0);
+
+    private EventHistory open(int segmentRecords, Duration maxSegmentAge, Duration retention) {
+        return new EventHistory(directory, clock, segmentRecords, maxSegmentAge, retention);
+    }
+
+    @Test
+    public void eventsAreReadBackInOrderWithTheirStatuses() {
+        UUID door = UUID.randomUUID();
+        try (EventHistory history = open(1000, Duration.ofHours(1), Duration.ofDays(1))) {
+            history.recordArmingStatus(ArmingStatus.DISARMED, ArmingStatus.ARMED_AWAY);
+            clock.advance(Duration.ofSeconds(1));
+            history.recordSensor(door, false, true);
+            history.recordAlarmStatus(null, AlarmStatus.PENDING_ALARM);
+            history.recordCatDetection(false, true);
+
+            assertEquals(List.of(
+                    new HistoryEvent(0, HistoryEventType.ARMING_STATUS, null, 0, 2),
+                    new HistoryEvent(1000, HistoryEventType.SENSOR, door, 0, 1),
+                    new HistoryEvent(1000, HistoryEventType.ALARM_STATUS, null, -1, 1),
+                    new HistoryEvent(1000, HistoryEventType.CAT_DETECTION, null, 0, 1)),
+                    history.query(0, Long.MAX_VALUE, null));
+        }
+    }
+
+    @Test
+    public void rangeQueryForOneSensorSpansSegments() {
+        //small segments so the range covers several of them, each with several index entries
+        UUID door = UUID.randomUUID();
+        UUID window = UUID.randomUUID();
+        try (EventHistory history = open(5000, Duration.ofDays(1), Duration.ofDays(30))) {
+            for (int i = 0; i < 40_000; i++) {
+                clock.advance(Duration.ofMillis(100));
+                history.recordSensor(i % 3 == 0 ? door : window, i % 2 == 0, i % 2 != 0);
+            }
+            assertEquals(8, history.getSegmentCount());
+
+            long from = 1_000_050; //the middle of the 10,000th event's tick
+            long to = 3_000_000;
+            List<HistoryEvent> events = history.query(from, to, door);
+            assertFalse(events.isEmpty());
+            long expected = 0;
+            for (int i = 0; i < 40_000; i++) {
+                long timestamp = (i + 1) * 100L;
+                if (i % 3 == 0 && timestamp >= from && timestamp <= to) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, events.size());
+            assertTrue(events.stream().allMatch(e -> e.sensorId().equals(door)
+                    && e.timestamp() >= from && e.timestamp() <= to));
+            assertTrue(history.query(0, Long.MAX_VALUE, UUID.randomUUID()).isEmpty());
+        }
+    }
+
+    @Test
+    public void reopenedHistoryKeepsEventsAndSensorSlots() {
+        UUID door = UUID.randomUUID();
+        try (EventHistory history = open(1000, Duration.ofHours(1), Duration.ofDays(1))) {
+            history.recordSensor(door, false, true);
+        }
+        try (EventHistory history = open(1000, Duration.ofHours(1), Duration.ofDays(1))) {
+            clock.advance(Duration.ofSeconds(1));
+            history.recordSensor(door, true, false);
+
+            assertEquals(2, history.query(0, Long.MAX_VALUE, door).size());
+            assertEquals(1, history.getSegmentCount());
+        }
+    }
+
+    @Test
+    public void segmentsRotateByAgeAndExpireAfterRetention() {
+        try (EventHistory history = open(1000, Duration.ofHours(1), Duration.ofHours(3))) {
+            for (int hour = 0; hour < 6; hour++) {
+                history.recordAlarmStatus(AlarmStatus.NO_ALARM, AlarmStatus.PENDING_ALARM);
+                clock.advance(Duration.ofHours(1));
+            }
+            history.recordAlarmStatus(AlarmStatus.PENDING_ALARM, AlarmStatus.NO_ALARM);
+
+            //one segment per hour, and only those with something newer than three hours are kept
+            assertEquals(4, history.getSegmentCount());
+            assertEquals(4, history.query(0, Long.MAX_VALUE, null).size());
+        }
+    }
+
+    @Test
+    public void segmentPastRetention_isDeletedOnlyOnceQueriesReadingItFinish() {
+        Path first = directory.resolve("0000000000000000.seg");
+        try (EventHistory history = open(1000, Duration.ofHours(1), Duration.ofHours(3))) {
+            history.recordArmingStatus(ArmingStatus.DISARMED, ArmingStatus.ARMED_HOME);
+            clock.advance(Duration.ofMinutes(1));
+            history.recordArmingStatus(ArmingStatus.ARMED_HOME, ArmingStatus.ARMED_AWAY);
+
+            List<HistoryEvent> read = new ArrayList<>();
+            history.query(0, Long.MAX_VALUE, null, event -> {
+                if (read.isEmpty()) {
+                    //the query is part way through the first segment when it falls out of the retention
+                    clock.advance(Duration.ofHours(5));
+                    history.recordArmingStatus(ArmingStatus.ARMED_AWAY, ArmingStatus.DISARMED);
+                    assertTrue(Files.exists(first));
+                }
+                read.add(event);
+            });
+
+            assertEquals(2, read.size());
+            assertEquals(2, read.get(1).newStatus());
+            assertFalse(Files.exists(first));
+            assertEquals(1, history.getSegmentCount());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.udacity.catpoint.security.data;
+
+public class InMemorySecurityRepositoryImplTest extends SecurityRepositoryContractTest {
+
+    @Override
+    protected SecurityRepository createRepository() {
+        return new InMemorySecurityRepositoryImpl();
+    }
+}
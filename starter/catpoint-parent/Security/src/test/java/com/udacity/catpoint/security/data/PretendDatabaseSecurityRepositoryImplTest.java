@@ -0,0 +1,40 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PretendDatabaseSecurityRepositoryImplTest extends SecurityRepositoryContractTest {
+
+    //a throwaway node per test, so tests never see each other's state or the real app's
+    private final Preferences prefs = Preferences.userRoot().node("catpoint-test/" + UUID.randomUUID());
+
+    @Override
+    protected SecurityRepository createRepository() {
+        return new PretendDatabaseSecurityRepositoryImpl(prefs);
+    }
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    public void reopenedRepository_loadsStoredState() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        PretendDatabaseSecurityRepositoryImpl reopened = new PretendDatabaseSecurityRepositoryImpl(prefs);
+        assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        assertTrue(reopened.getSensors().contains(door));
+    }
+}
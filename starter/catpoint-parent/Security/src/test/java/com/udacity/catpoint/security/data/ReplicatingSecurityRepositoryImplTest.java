@@ -0,0 +1,220 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.security.application.SecurityDaemon;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicatingSecurityRepositoryImplTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static InetSocketAddress local(ReplicationStandby standby) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), standby.getPort());
+    }
+
+    private static void awaitConnected(ReplicatingSecurityRepositoryImpl primary) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!primary.isConnected()) {
+            assertTrue(System.nanoTime() < deadline, "standby never connected");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void assertSameState(SecurityRepository expected, SecurityRepository actual) {
+        assertEquals(expected.getAlarmStatus(), actual.getAlarmStatus());
+        assertEquals(expected.getArmingStatus(), actual.getArmingStatus());
+        assertEquals(expected.getSensors(), actual.getSensors());
+        for (Sensor sensor : expected.getSensors()) {
+            Sensor copy = actual.getSensors().stream().filter(sensor::equals).findFirst().orElseThrow();
+            assertEquals(sensor.getName(), copy.getName());
+            assertEquals(sensor.getSensorType(), copy.getSensorType());
+            assertEquals(sensor.getActive(), copy.getActive());
+        }
+    }
+
+    @Test
+    public void standbyStartsFromFullStateAndFollowsEveryChange() throws Exception {
+        SecurityRepository primaryState = new InMemorySecurityRepositoryImpl();
+        SecurityRepository standbyState = new InMemorySecurityRepositoryImpl();
+        standbyState.addSensor(new Sensor("Stale", SensorType.MOTION)); //left over from before, must go
+
+        try (ReplicationStandby standby = new ReplicationStandby(standbyState, 0).start();
+             ReplicatingSecurityRepositoryImpl primary = new ReplicatingSecurityRepositoryImpl(primaryState, local(standby))) {
+            Sensor door = new Sensor("Front door", SensorType.DOOR);
+            primary.addSensor(door);
+            primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+            primary.start();
+            awaitConnected(primary);
+            assertTrue(primary.awaitReplicated(TIMEOUT));
+            assertSameState(primaryState, standbyState);
+
+            Sensor window = new Sensor("Kitchen window", SensorType.WINDOW);
+            primary.addSensor(window);
+            door.setActive(true);
+            primary.updateSensor(door);
+            primary.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            window.setActive(true);
+            primary.updateSensors(List.of(door, window));
+            primary.setAlarmStatus(AlarmStatus.ALARM);
+            assertTrue(primary.awaitReplicated(TIMEOUT));
+            assertSameState(primaryState, standbyState);
+
+            primary.resetSensors();
+            primary.removeSensor(door);
+            primary.setArmingStatus(ArmingStatus.DISARMED);
+            primary.setAlarmStatus(AlarmStatus.NO_ALARM);
+            assertTrue(primary.awaitReplicated(TIMEOUT));
+            assertSameState(primaryState, standbyState);
+            assertEquals(primary.getSequence(), standby.getApplied());
+        }
+    }
+
+    @Test
+    public void changesAreBatchedUnderLoadAndLagIsMeasured() throws Exception {
+        SecurityRepository primaryState = new InMemorySecurityRepositoryImpl();
+        SecurityRepository standbyState = new InMemorySecurityRepositoryImpl();
+        try (ReplicationStandby standby = new ReplicationStandby(standbyState, 0).start();
+             ReplicatingSecurityRepositoryImpl primary =
+                     new ReplicatingSecurityRepositoryImpl(primaryState, local(standby)).start()) {
+            awaitConnected(primary);
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+                sensors.add(sensor);
+                primary.addSensor(sensor);
+            }
+            for (int i = 0; i < 20_000; i++) {
+                Sensor sensor = sensors.get(i % sensors.size());
+                sensor.setActive(!sensor.getActive());
+                primary.updateSensor(sensor);
+            }
+            assertTrue(primary.awaitReplicated(TIMEOUT));
+            assertSameState(primaryState, standbyState);
+
+            assertEquals(primary.getSequence(), primary.getRecordsSent());
+            assertEquals(primary.getRecordsSent(), standby.getRecordsApplied());
+            assertTrue(primary.getBatchesSent() < primary.getRecordsSent(), "changes should share batches");
+            assertTrue(primary.getBytesSent() > 0);
+            assertTrue(primary.getMaxBatchLag().toNanos() > 0);
+            assertEquals(Duration.ZERO, primary.getLag());
+        }
+    }
+
+    @Test
+    public void promotedStandby_keepsStateAndIgnoresLaterChanges() throws Exception {
+        SecurityRepository primaryState = new InMemorySecurityRepositoryImpl();
+        SecurityRepository standbyState = new InMemorySecurityRepositoryImpl();
+        ReplicationStandby standby = new ReplicationStandby(standbyState, 0).start();
+        try (ReplicatingSecurityRepositoryImpl primary =
+                     new ReplicatingSecurityRepositoryImpl(primaryState, local(standby)).start()) {
+            awaitConnected(primary);
+            primary.addSensor(new Sensor("Hall", SensorType.MOTION));
+            primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            assertTrue(primary.awaitReplicated(TIMEOUT));
+
+            assertSame(standbyState, standby.promote());
+            primary.setAlarmStatus(AlarmStatus.ALARM);
+            primary.addSensor(new Sensor("Porch", SensorType.DOOR));
+            assertFalse(primary.awaitReplicated(Duration.ofMillis(500)));
+
+            assertEquals(AlarmStatus.NO_ALARM, standbyState.getAlarmStatus());
+            assertEquals(ArmingStatus.ARMED_AWAY, standbyState.getArmingStatus());
+            assertEquals(1, standbyState.getSensors().size());
+        }
+    }
+
+    @Test
+    public void changeStandbyCantApply_dropsPrimaryWhichReconnectsWithFullState() throws Exception {
+        SecurityRepository primaryState = new InMemorySecurityRepositoryImpl();
+        AtomicBoolean failed = new AtomicBoolean();
+        SecurityRepository standbyState = new InMemorySecurityRepositoryImpl() {
+            @Override
+            public void setAlarmStatus(AlarmStatus alarmStatus) {
+                if (alarmStatus == AlarmStatus.ALARM && failed.compareAndSet(false, true)) {
+                    throw new IllegalStateException("disk full");
+                }
+                super.setAlarmStatus(alarmStatus);
+            }
+        };
+        try (ReplicationStandby standby = new ReplicationStandby(standbyState, 0).start();
+             ReplicatingSecurityRepositoryImpl primary =
+                     new ReplicatingSecurityRepositoryImpl(primaryState, local(standby)).start()) {
+            awaitConnected(primary);
+            primary.addSensor(new Sensor("Hall", SensorType.MOTION));
+            primary.setAlarmStatus(AlarmStatus.ALARM);
+
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (standbyState.getAlarmStatus() != AlarmStatus.ALARM) {
+                assertTrue(System.nanoTime() < deadline, "standby never caught up");
+                Thread.sleep(10);
+            }
+            assertTrue(failed.get());
+            assertEquals(1, standby.getFailures());
+            assertEquals("disk full", standby.getLastFailure().getMessage());
+            awaitConnected(primary);
+            primary.setArmingStatus(ArmingStatus.ARMED_HOME);
+            assertTrue(primary.awaitReplicated(TIMEOUT));
+            assertSameState(primaryState, standbyState);
+        }
+    }
+
+    /**
+     * Runs the standby as a daemon in a JVM of its own, replicates to it, then has it take over.
+     */
+    @Test
+    public void standbyDaemonInAnotherJvm_takesOverWithPrimaryState() throws Exception {
+        String classPath = System.getProperty("java.class.path");
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            classPath = classPath + File.pathSeparator + modulePath;
+        }
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", classPath, "-Dcatpoint.repository=memory", "-Dcatpoint.standbyPort=0",
+                SecurityDaemon.class.getName())
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+             PrintStream in = new PrintStream(process.getOutputStream(), true)) {
+            String banner = out.readLine();
+            assertNotNull(banner);
+            assertTrue(banner.startsWith("standby on port "), banner);
+            int port = Integer.parseInt(banner.substring("standby on port ".length(), banner.indexOf(',')));
+
+            try (ReplicatingSecurityRepositoryImpl primary = new ReplicatingSecurityRepositoryImpl(
+                    new InMemorySecurityRepositoryImpl(),
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port)).start()) {
+                awaitConnected(primary);
+                Sensor door = new Sensor("Garage", SensorType.DOOR);
+                primary.addSensor(door);
+                primary.setArmingStatus(ArmingStatus.ARMED_AWAY);
+                door.setActive(true);
+                primary.updateSensor(door);
+                primary.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+                assertTrue(primary.awaitReplicated(TIMEOUT));
+            }
+
+            in.println("promote");
+            assertTrue(out.readLine().startsWith("promoted at change "));
+            assertEquals("alarm: PENDING_ALARM, arming: ARMED_AWAY", out.readLine());
+            assertEquals("  Garage(DOOR): Active", out.readLine());
+            in.println("quit");
+            assertTrue(process.waitFor(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+}
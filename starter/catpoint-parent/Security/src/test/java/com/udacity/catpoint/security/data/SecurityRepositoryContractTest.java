@@ -0,0 +1,118 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behavior every SecurityRepository implementation is expected to share. Subclasses
+ * provide a fresh, empty repository for each test.
+ */
+public abstract class SecurityRepositoryContractTest {
+
+    protected SecurityRepository repository;
+
+    protected abstract SecurityRepository createRepository();
+
+    @BeforeEach
+    void init() {
+        repository = createRepository();
+    }
+
+    @Test
+    public void newRepository_isDisarmedWithNoAlarmAndNoSensors() {
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+        assertTrue(repository.getSensors().isEmpty());
+    }
+
+    @Test
+    public void statusChanges_areReturnedByGetters() {
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+    }
+
+    @Test
+    public void addedSensors_areReturnedInSortedOrder() {
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        repository.addSensor(window);
+        repository.addSensor(door);
+
+        assertEquals(List.of(door, window), List.copyOf(repository.getSensors()));
+    }
+
+    @Test
+    public void sensors_stayInSortedOrderThroughAddsUpdatesAndRemovals() {
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        repository.addSensor(window);
+        repository.addSensor(door);
+        assertEquals(List.of(door, window), List.copyOf(repository.getSensors()));
+
+        repository.addSensor(motion);
+        door.setActive(true);
+        repository.updateSensor(door);
+        assertEquals(List.of(door, motion, window), List.copyOf(repository.getSensors()));
+
+        repository.removeSensor(motion);
+        assertEquals(List.of(door, window), List.copyOf(repository.getSensors()));
+        assertTrue(repository.getSensors().iterator().next().getActive());
+    }
+
+    @Test
+    public void removedSensor_isNoLongerReturned() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        repository.addSensor(door);
+        repository.removeSensor(door);
+
+        assertFalse(repository.getSensors().contains(door));
+    }
+
+    @Test
+    public void updatedSensor_keepsItsNewActivation() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        repository.addSensor(door);
+        door.setActive(true);
+        repository.updateSensor(door);
+
+        Set<Sensor> sensors = repository.getSensors();
+        assertEquals(1, sensors.size());
+        assertTrue(sensors.iterator().next().getActive());
+    }
+
+    @Test
+    public void bulkUpdate_updatesEverySensor() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor motion = new Sensor("Motion", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(motion);
+        door.setActive(true);
+        motion.setActive(true);
+
+        repository.updateSensors(List.of(door, motion));
+
+        assertTrue(repository.getSensors().stream().allMatch(Sensor::getActive));
+    }
+
+    @Test
+    public void resetSensors_leavesSensorsInactive() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        door.setActive(true);
+        repository.addSensor(door);
+
+        repository.resetSensors();
+
+        Set<Sensor> sensors = repository.getSensors();
+        assertEquals(1, sensors.size());
+        assertFalse(sensors.iterator().next().getActive());
+    }
+}
@@ -0,0 +1,36 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityRepositoryProviderTest {
+
+    @Test
+    public void providersAreFoundByName() {
+        assertTrue(SecurityRepositoryProvider.create("memory") instanceof InMemorySecurityRepositoryImpl);
+        assertTrue(SecurityRepositoryProvider.create("pretend") instanceof PretendDatabaseSecurityRepositoryImpl);
+    }
+
+    @Test
+    public void unknownName_listsTheAvailableProviders() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> SecurityRepositoryProvider.create("cloud"));
+        assertTrue(e.getMessage().contains("pretend, embedded, memory"), e.getMessage());
+    }
+
+    @Test
+    public void repositoryProperty_picksTheProvider() {
+        String previous = System.getProperty("catpoint.repository");
+        System.setProperty("catpoint.repository", "memory");
+        try {
+            assertTrue(SecurityRepositoryProvider.configured() instanceof InMemorySecurityRepositoryImpl);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("catpoint.repository");
+            } else {
+                System.setProperty("catpoint.repository", previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotSecurityRepositoryImplTest {
+
+    @TempDir
+    Path dir;
+
+    private final String url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+    @Test
+    public void statusIsReadFromSnapshotWhileBackingRepositoryLoads() throws Exception {
+        Path file = dir.resolve("catpoint.snapshot");
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        door.setActive(true);
+        StateSnapshot.write(file, AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY, List.of(door));
+
+        CountDownLatch loading = new CountDownLatch(1);
+        SnapshotSecurityRepositoryImpl repository = new SnapshotSecurityRepositoryImpl(file, () -> {
+            try {
+                loading.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new EmbeddedDatabaseSecurityRepositoryImpl(url);
+        });
+
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        assertEquals(1, repository.getSensors().size());
+        assertTrue(repository.getSensors().iterator().next().getActive());
+        assertFalse(repository.hydrated().isDone());
+
+        loading.countDown();
+        repository.hydrated().join();
+
+        //once loaded, the backing repository is the source of truth
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        assertTrue(repository.getSensors().isEmpty());
+        repository.close();
+    }
+
+    @Test
+    public void closedRepository_leavesSnapshotForNextStartup() throws Exception {
+        Path file = dir.resolve("catpoint.snapshot");
+        SnapshotSecurityRepositoryImpl repository =
+                new SnapshotSecurityRepositoryImpl(file, () -> new EmbeddedDatabaseSecurityRepositoryImpl(url));
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        repository.addSensor(window);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.close();
+
+        CountDownLatch loading = new CountDownLatch(1);
+        SnapshotSecurityRepositoryImpl reopened = new SnapshotSecurityRepositoryImpl(file, () -> {
+            try {
+                loading.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new EmbeddedDatabaseSecurityRepositoryImpl(url);
+        });
+        assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        assertTrue(reopened.getSensors().contains(window));
+        assertFalse(reopened.hydrated().isDone());
+
+        loading.countDown();
+        reopened.close();
+    }
+
+    @Test
+    public void savingAgain_writesNewGenerationAndDeletesOldOne() throws Exception {
+        Path file = dir.resolve("catpoint.snapshot");
+        SnapshotSecurityRepositoryImpl repository =
+                new SnapshotSecurityRepositoryImpl(file, () -> new EmbeddedDatabaseSecurityRepositoryImpl(url));
+        repository.hydrated().join();
+        repository.saveSnapshot(); //the first generation is still mapped while the second is written
+        repository.addSensor(new Sensor("Door", SensorType.DOOR));
+        repository.close();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of("catpoint.snapshot.3"),
+                    files.map(f -> f.getFileName().toString()).collect(Collectors.toList()));
+        }
+        try (StateSnapshot snapshot = StateSnapshot.open(file)) {
+            assertEquals(1, snapshot.getSensorCount());
+        }
+    }
+
+    @Test
+    public void snapshotSensors_comeInWrittenOrderAndKeepTheirInstances() throws Exception {
+        Path file = dir.resolve("catpoint.snapshot");
+        Sensor back = new Sensor("Back", SensorType.DOOR);
+        back.setActive(true);
+        Sensor front = new Sensor("Front", SensorType.WINDOW);
+        StateSnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, new TreeSet<>(List.of(front, back)));
+
+        try (StateSnapshot snapshot = StateSnapshot.open(file)) {
+            Set<Sensor> sensors = snapshot.sensors();
+            assertEquals(2, sensors.size());
+            List<Sensor> decoded = new ArrayList<>(sensors);
+            assertEquals(List.of(back, front), decoded);
+            assertTrue(decoded.get(0).getActive());
+            assertEquals(SensorType.WINDOW, decoded.get(1).getSensorType());
+            assertSame(decoded.get(1), new ArrayList<>(sensors).get(1));
+        }
+    }
+
+    @Test
+    public void write_rejectsNamesTooLongToRecord() {
+        Sensor sensor = new Sensor("x".repeat(0x10000), SensorType.MOTION);
+        assertThrows(IllegalArgumentException.class, () -> StateSnapshot.write(dir.resolve("catpoint.snapshot"),
+                AlarmStatus.NO_ALARM, ArmingStatus.DISARMED, List.of(sensor)));
+    }
+}
@@ -0,0 +1,66 @@
+package com.udacity.catpoint.security.data;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to get a usable alarm and arming status out of a snapshot, and how
+ * long decoding every sensor takes, for growing sensor counts. Run it from the IDE or with
+ * {@code java -cp ... com.udacity.catpoint.security.data.SnapshotStartupBenchmark}.
+ * Time to first status should stay flat as the sensor count grows.
+ */
+public class SnapshotStartupBenchmark {
+
+    private static final int RUNS = 21;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("catpoint-bench");
+        System.out.printf("%10s %20s %20s%n", "sensors", "first status (us)", "all sensors (us)");
+        for (int count : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            Path file = dir.resolve("snapshot-" + count);
+            StateSnapshot.write(file, AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, sensors(count));
+
+            long[] firstStatus = new long[RUNS];
+            long[] allSensors = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                try (StateSnapshot snapshot = StateSnapshot.open(file)) {
+                    if (snapshot.getAlarmStatus() == null || snapshot.getArmingStatus() == null) {
+                        throw new IllegalStateException();
+                    }
+                    firstStatus[run] = System.nanoTime() - start;
+                    int decoded = 0;
+                    for (Sensor sensor : snapshot.sensors()) {
+                        decoded += sensor.getName() == null ? 0 : 1;
+                    }
+                    if (decoded != count) {
+                        throw new IllegalStateException();
+                    }
+                    allSensors[run] = System.nanoTime() - start;
+                }
+            }
+            System.out.printf("%10d %20d %20d%n", count, median(firstStatus), median(allSensors));
+            Files.delete(file.resolveSibling(file.getFileName() + ".1"));
+        }
+        Files.delete(dir);
+    }
+
+    private static List<Sensor> sensors(int count) {
+        SensorType[] types = SensorType.values();
+        List<Sensor> sensors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sensors.add(new Sensor("Sensor " + i, types[i % types.length]));
+        }
+        return sensors;
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length / 2]);
+    }
+}
@@ -0,0 +1,82 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlarmTransitionTableTest {
+
+    /**
+     * The rules as SecurityService spelled them out before they moved into the table.
+     */
+    private static AlarmTransitionTable.Transition expected(AlarmStatus alarm, ArmingStatus arming, AlarmEvent event) {
+        boolean armed = arming != ArmingStatus.DISARMED;
+        AlarmStatus next = switch (event) {
+            case SENSOR_ACTIVATED -> !armed ? null
+                    : alarm == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM
+                    : alarm == AlarmStatus.PENDING_ALARM ? AlarmStatus.ALARM : null;
+            case SENSOR_REACTIVATED, ENTRY_DELAY_EXPIRED ->
+                    armed && alarm == AlarmStatus.PENDING_ALARM ? AlarmStatus.ALARM : null;
+            case SENSOR_DEACTIVATED -> alarm == AlarmStatus.PENDING_ALARM ? AlarmStatus.NO_ALARM : null;
+            case CAT_DETECTED -> arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM;
+            case NO_CAT_DETECTED, DISARM -> AlarmStatus.NO_ALARM;
+            case ARM_HOME_CAT_VISIBLE -> AlarmStatus.ALARM;
+            case ARM_HOME, ARM_AWAY -> null;
+        };
+        boolean reset = event == AlarmEvent.ARM_HOME || event == AlarmEvent.ARM_HOME_CAT_VISIBLE
+                || event == AlarmEvent.ARM_AWAY;
+        return new AlarmTransitionTable.Transition(next, reset);
+    }
+
+    @Test
+    public void defaultRulesMatchPreviousBehaviorForEveryCombination() {
+        AlarmTransitionTable table = AlarmTransitionTable.defaults();
+        for (AlarmStatus alarm : AlarmStatus.values()) {
+            for (ArmingStatus arming : ArmingStatus.values()) {
+                for (AlarmEvent event : AlarmEvent.values()) {
+                    assertEquals(expected(alarm, arming, event), table.lookup(alarm, arming, event),
+                            event + " " + alarm + " " + arming);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void laterRulesOverrideEarlierOnes() throws IOException {
+        AlarmTransitionTable table = AlarmTransitionTable.parse(new StringReader("""
+                * * * -> -
+                SENSOR_ACTIVATED * ARMED_AWAY -> ALARM   # no grace period when away
+                SENSOR_ACTIVATED ALARM * -> -
+                """), "test");
+
+        assertEquals(AlarmStatus.ALARM,
+                table.lookup(AlarmStatus.NO_ALARM, ArmingStatus.ARMED_AWAY, AlarmEvent.SENSOR_ACTIVATED).nextAlarmStatus());
+        assertFalse(table.lookup(AlarmStatus.ALARM, ArmingStatus.ARMED_AWAY, AlarmEvent.SENSOR_ACTIVATED).changesAlarmStatus());
+        assertFalse(table.lookup(AlarmStatus.NO_ALARM, ArmingStatus.ARMED_HOME, AlarmEvent.SENSOR_ACTIVATED).changesAlarmStatus());
+    }
+
+    @Test
+    public void rulesThatLeaveACombinationUndefinedAreRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> AlarmTransitionTable.parse(
+                new StringReader("* * ARMED_HOME -> -\n* * ARMED_AWAY -> -\n"), "partial"));
+        assertTrue(e.getMessage().contains("DISARMED"), e.getMessage());
+    }
+
+    @Test
+    public void malformedRulesAreRejectedWithTheirLine() {
+        assertThrows(IllegalArgumentException.class, () -> AlarmTransitionTable.parse(
+                new StringReader("* * * -> -\nSENSOR_ACTIVATED NO_ALARM ARMED_HOME PENDING_ALARM\n"), "missing-arrow"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> AlarmTransitionTable.parse(
+                new StringReader("* * * -> -\n\nDOOR_OPENED * * -> ALARM\n"), "rules.txt"));
+        assertTrue(e.getMessage().startsWith("rules.txt:3:"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> AlarmTransitionTable.parse(
+                new StringReader("* * * -> -\nDISARM * * -> NO_ALARM sound-siren\n"), "unknown-action"));
+        assertThrows(IllegalArgumentException.class, () -> AlarmTransitionTable.parse(
+                new StringReader("* * * -> *\n"), "wildcard-next"));
+    }
+}
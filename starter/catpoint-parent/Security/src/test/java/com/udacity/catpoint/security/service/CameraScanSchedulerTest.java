@@ -0,0 +1,160 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.IImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CameraScanSchedulerTest {
+
+    private static final CameraImage CAT = CameraImage.ofPixels(1, 1, new int[]{1});
+    private static final CameraImage EMPTY = CameraImage.ofPixels(1, 1, new int[]{0});
+
+    private final Preferences prefs = Preferences.userRoot().node("catpoint-test/" + UUID.randomUUID());
+    private final SlowImageService imageService = new SlowImageService();
+    private final SecurityService securityService =
+            new SecurityService(new PretendDatabaseSecurityRepositoryImpl(prefs), imageService);
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    public void concurrentScansStayWithinTheLimit() throws InterruptedException {
+        try (CameraScanScheduler scheduler = new CameraScanScheduler(securityService, 3, Duration.ZERO)) {
+            List<Camera> cameras = new ArrayList<>();
+            List<CameraImage> frames = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                cameras.add(new Camera("Camera " + i));
+                frames.add(CameraImage.ofPixels(1, 1, new int[]{i}));
+            }
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < cameras.size(); i++) {
+                    scheduler.submit(cameras.get(i), frames.get(i));
+                }
+                Thread.sleep(30);
+            }
+            awaitIdle(scheduler);
+
+            assertEquals(3, imageService.maxConcurrent.get());
+            assertEquals(60, scheduler.getScans() + scheduler.getSkipped());
+            assertEquals(12, securityService.getCameras().size());
+            //every camera got its turn
+            frames.forEach(f -> assertTrue(imageService.scansPerFrame.getOrDefault(f, 0) > 0));
+        }
+    }
+
+    @Test
+    public void eachCameraIsScannedAtMostOncePerInterval() throws InterruptedException {
+        Camera camera = new Camera("Porch");
+        try (CameraScanScheduler scheduler = new CameraScanScheduler(securityService, 4, Duration.ofMillis(200))) {
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < Duration.ofMillis(500).toNanos()) {
+                scheduler.submit(camera, EMPTY);
+                Thread.sleep(5);
+            }
+            awaitIdle(scheduler);
+
+            //at 0, 200 and 400ms, and the last frame once the interval after that is up
+            assertTrue(scheduler.getScans() >= 3 && scheduler.getScans() <= 4, "scans: " + scheduler.getScans());
+            assertTrue(scheduler.getSkipped() > 50);
+        }
+    }
+
+    @Test
+    public void catOnAnyCameraKeepsTheAlarm() throws InterruptedException {
+        Camera garden = new Camera("Garden");
+        Camera hall = new Camera("Hall");
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        try (CameraScanScheduler scheduler = new CameraScanScheduler(securityService, 2, Duration.ZERO)) {
+            scheduler.submit(garden, CAT);
+            awaitIdle(scheduler);
+            scheduler.submit(hall, EMPTY);
+            awaitIdle(scheduler);
+            assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+
+            scheduler.remove(garden);
+            assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+            assertEquals(List.of(hall), securityService.getCameras());
+        }
+    }
+
+    @Test
+    public void cameraRemovedDuringItsScan_staysRemoved() throws InterruptedException {
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SecurityService securityService = new SecurityService(new PretendDatabaseSecurityRepositoryImpl(prefs),
+                (image, confidence) -> {
+                    scanning.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return true;
+                });
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        Camera garden = new Camera("Garden");
+        try (CameraScanScheduler scheduler = new CameraScanScheduler(securityService, 1, Duration.ZERO)) {
+            scheduler.submit(garden, CAT);
+            assertTrue(scanning.await(5, TimeUnit.SECONDS));
+            scheduler.remove(garden);
+            release.countDown();
+            awaitIdle(scheduler);
+
+            assertEquals(1, scheduler.getScans());
+            assertEquals(List.of(), securityService.getCameras());
+            assertFalse(securityService.isCatDetected(garden));
+            assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        }
+    }
+
+    private static void awaitIdle(CameraScanScheduler scheduler) throws InterruptedException {
+        long seen;
+        do {
+            seen = scheduler.getScans();
+            Thread.sleep(300);
+        } while (scheduler.getScans() != seen);
+    }
+
+    /**
+     * Takes a while per frame, and keeps track of how many frames it was given at once.
+     */
+    private static class SlowImageService implements IImageService {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final Map<CameraImage, Integer> scansPerFrame = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+            maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            scansPerFrame.merge(image, 1, Integer::sum);
+            return image == CAT;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.data.CameraImage;
+import com.udacity.catpoint.image.service.IImageService;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Camera;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrioritySchedulerTest {
+
+    private static final CameraImage FRAME = CameraImage.ofPixels(1, 1, new int[]{0});
+
+    private final SlowImageService imageService = new SlowImageService();
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), imageService);
+    private PriorityScheduler scheduler;
+
+    @AfterEach
+    void close() {
+        imageService.release.countDown();
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    private static class SlowImageService implements IImageService {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile long millis;
+        private volatile boolean blocking;
+
+        @Override
+        public boolean imageContainsCat(CameraImage image, float confidenceThreshhold) {
+            try {
+                if (blocking) {
+                    release.await();
+                }
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void armingCommands_overtakeQueuedSensorEvents() throws Exception {
+        scheduler = new PriorityScheduler(securityService, 1, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        Sensor first = new Sensor("First", SensorType.DOOR);
+        Sensor second = new Sensor("Second", SensorType.WINDOW);
+        Sensor third = new Sensor("Third", SensorType.MOTION);
+        List.of(first, second, third).forEach(securityService::addSensor);
+        List<StateChange> seen = new ArrayList<>();
+        CountDownLatch all = new CountDownLatch(5);
+        securityService.getStateChanges().subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(StateChange change) {
+                if (change instanceof StateChange.SensorChanged || change instanceof StateChange.ArmingChanged) {
+                    synchronized (seen) {
+                        seen.add(change);
+                    }
+                    all.countDown();
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        awaitTrue(() -> securityService.getStateChanges().hasSubscribers());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        synchronized (securityService) { //holds up the critical thread on the first event
+            futures.add(scheduler.changeSensorActivationStatus(first, true));
+            awaitTrue(() -> scheduler.getQueued(PriorityScheduler.Priority.SENSOR) == 0);
+            futures.add(scheduler.changeSensorActivationStatus(second, true));
+            futures.add(scheduler.changeSensorActivationStatus(third, true));
+            futures.add(scheduler.setArmingStatus(ArmingStatus.ARMED_HOME));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(all.await(5, TimeUnit.SECONDS));
+
+        synchronized (seen) {
+            assertEquals(List.of(
+                    new StateChange.SensorChanged(first.getSensorId(), "First", true),
+                    new StateChange.ArmingChanged(ArmingStatus.ARMED_HOME),
+                    new StateChange.SensorChanged(first.getSensorId(), "First", false), //arming resets sensors
+                    new StateChange.SensorChanged(second.getSensorId(), "Second", true),
+                    new StateChange.SensorChanged(third.getSensorId(), "Third", true)), seen);
+        }
+    }
+
+    @Test
+    public void scanThatThrowsAnError_failsItsFutureAndLaterScansStillRun() throws Exception {
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(),
+                (image, confidence) -> {
+                    if (image == FRAME) {
+                        throw new NoClassDefFoundError("software/amazon/awssdk/Missing");
+                    }
+                    return false;
+                });
+        scheduler = new PriorityScheduler(securityService, 1, Duration.ofSeconds(10), Duration.ofSeconds(10));
+
+        CompletableFuture<Void> failed = scheduler.processImage(new Camera("Broken"), FRAME);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(NoClassDefFoundError.class, e.getCause());
+
+        scheduler.processImage(new Camera("Fine"), CameraImage.ofPixels(1, 1, new int[]{1})).get(5, TimeUnit.SECONDS);
+        assertEquals(2, scheduler.getCompleted(PriorityScheduler.Priority.IMAGE));
+    }
+
+    @Test
+    public void waitingFrame_isMergedIntoTheCamerasNewerOne() throws Exception {
+        scheduler = new PriorityScheduler(securityService, 1, Duration.ofSeconds(10), Duration.ofSeconds(10));
+        imageService.blocking = true;
+        Camera busy = new Camera("Busy");
+        Camera other = new Camera("Other");
+        CompletableFuture<Void> scanning = scheduler.processImage(busy, FRAME);
+        awaitTrue(() -> scheduler.getQueued(PriorityScheduler.Priority.IMAGE) == 0);
+
+        CompletableFuture<Void> older = scheduler.processImage(other, FRAME);
+        CompletableFuture<Void> newer = scheduler.processImage(other, FRAME);
+        assertTrue(older.isCancelled());
+        assertEquals(1, scheduler.getMerged());
+        assertEquals(1, scheduler.getQueued(PriorityScheduler.Priority.IMAGE));
+
+        imageService.release.countDown();
+        scanning.get(5, TimeUnit.SECONDS);
+        newer.get(5, TimeUnit.SECONDS);
+        assertEquals(2, scheduler.getCompleted(PriorityScheduler.Priority.IMAGE));
+        assertEquals(0, scheduler.getShed());
+    }
+
+    @Test
+    public void sensorEvents_stayPromptWhileImageScansAreShed() throws Exception {
+        scheduler = new PriorityScheduler(securityService, 2, Duration.ofMillis(20), Duration.ofMillis(50));
+        imageService.millis = 20;
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        securityService.addSensor(door);
+        List<Camera> cameras = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            cameras.add(new Camera("Camera " + i));
+        }
+
+        long worstSensorNanos = 0;
+        for (int round = 0; round < 50; round++) {
+            for (Camera camera : cameras) {
+                scheduler.processImage(camera, FRAME);
+            }
+            long start = System.nanoTime();
+            scheduler.changeSensorActivationStatus(door, round % 2 == 0).get(5, TimeUnit.SECONDS);
+            worstSensorNanos = Math.max(worstSensorNanos, System.nanoTime() - start);
+            Thread.sleep(10);
+        }
+
+        //40 cameras at 20ms a scan on 2 workers would queue frames for 400ms; sensors must not wait for them
+        assertTrue(worstSensorNanos < TimeUnit.MILLISECONDS.toNanos(100),
+                "sensor event took " + TimeUnit.NANOSECONDS.toMillis(worstSensorNanos) + "ms");
+        assertEquals(50, scheduler.getCompleted(PriorityScheduler.Priority.SENSOR));
+        assertTrue(scheduler.getShed() > 0, "nothing was shed");
+        assertTrue(scheduler.getMerged() > 0, "nothing was merged");
+        assertTrue(scheduler.getCompleted(PriorityScheduler.Priority.IMAGE) > 0, "shedding starved the cameras");
+    }
+}
@@ -0,0 +1,77 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.ArmingStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecurityServiceHostTest {
+
+    private final Preferences homesNode = Preferences.userRoot().node("catpoint-test/" + UUID.randomUUID());
+    private final SecurityServiceHost host = SecurityServiceHost.withPretendHomes(4, homesNode);
+
+    @AfterEach
+    void close() throws BackingStoreException {
+        host.close();
+        homesNode.removeNode();
+    }
+
+    @Test
+    public void homesKeepSeparateState() {
+        host.execute("home-a", s -> s.setArmingStatus(ArmingStatus.ARMED_AWAY)).join();
+
+        assertEquals(ArmingStatus.ARMED_AWAY, host.submit("home-a", SecurityService::getArmingStatus).join());
+        assertEquals(ArmingStatus.DISARMED, host.submit("home-b", SecurityService::getArmingStatus).join());
+        assertEquals(2, host.getHomeCount());
+    }
+
+    @Test
+    public void homeIdsThatCantBeNodeNames_getTheirOwnFlatNodes() throws BackingStoreException {
+        List<String> homeIds = List.of("street/42", "x".repeat(200), "", "~home", "plain");
+        for (String homeId : homeIds) {
+            host.execute(homeId, s -> s.setArmingStatus(ArmingStatus.ARMED_HOME)).join();
+        }
+
+        for (String homeId : homeIds) {
+            assertEquals(ArmingStatus.ARMED_HOME, host.submit(homeId, SecurityService::getArmingStatus).join());
+        }
+        assertEquals(ArmingStatus.DISARMED, host.submit("street", SecurityService::getArmingStatus).join());
+        Set<String> children = Set.of(homesNode.childrenNames());
+        assertEquals(homeIds.size() + 1, children.size());
+        assertTrue(children.contains("plain"));
+        for (String child : children) {
+            assertEquals(0, homesNode.node(child).childrenNames().length, child);
+        }
+    }
+
+    @Test
+    public void everyCallForAHomeRunsOnItsShardThread() {
+        List<CompletableFuture<String>> threads = new ArrayList<>();
+        Set<String> allThreads = new HashSet<>();
+        for (int round = 0; round < 5; round++) {
+            for (int home = 0; home < 100; home++) {
+                threads.add(host.submit("home-" + home, s -> Thread.currentThread().getName()));
+            }
+        }
+        for (int home = 0; home < 100; home++) {
+            String expected = "home-shard-" + host.shardOf("home-" + home);
+            for (int round = 0; round < 5; round++) {
+                String thread = threads.get(round * 100 + home).join();
+                assertEquals(expected, thread);
+                allThreads.add(thread);
+            }
+        }
+        assertEquals(host.getShardCount(), allThreads.size());
+        assertEquals(100, host.getHomeCount());
+    }
+}
@@ -1,5 +1,6 @@
 package com.udacity.catpoint.security.service;
 
+import com.udacity.catpoint.image.data.CameraImage;
 import com.udacity.catpoint.image.service.IImageService;
 import com.udacity.catpoint.security.data.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,9 +11,11 @@ import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.awt.image.BufferedImage;
+import java.time.Duration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
@@ -157,7 +160,7 @@ public class SecurityServiceTest {
     @Test
     public void ifImageServiceIDsCatWhileArmedHome_PutTheSystemIntoAlarmState() {
         // make a cat image
-        BufferedImage cat = new BufferedImage(4, 4, 4);
+        CameraImage cat = CameraImage.ofPixels(4, 4, new int[16]);
         // set the system to ARMED_HOME
         when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
 
@@ -176,7 +179,7 @@ public class SecurityServiceTest {
     public void ifImageWithNoCatDetected_ifNoSensorIsActiveChangeStatusToNoAlarm(){
         sensor.setActive(false);
         // make a dog image
-        BufferedImage dog = new BufferedImage(4, 4, 4);
+        CameraImage dog = CameraImage.ofPixels(4, 4, new int[16]);
         // set the alarm
         //when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
 
@@ -231,7 +234,7 @@ public class SecurityServiceTest {
 
         when(securityRepository.getArmingStatus()).thenReturn(armingStatus);
         // make a cat image
-        BufferedImage cat = new BufferedImage(4, 4, 4);
+        CameraImage cat = CameraImage.ofPixels(4, 4, new int[16]);
         // make it detect a cat
         when(imageService.imageContainsCat(cat, 50F)).thenReturn(true);
         securityService.processImage(cat);
@@ -243,4 +246,138 @@ public class SecurityServiceTest {
 
     }
 
-}
\ No newline at end of file
+    // 12. If the alarm stays pending for the whole entry delay, escalate it to alarm.
+    @Test
+    public void ifAlarmStaysPendingForEntryDelay_escalateToAlarm() {
+        VirtualClock clock = new VirtualClock(0);
+        TimingWheel timers = new TimingWheel(clock, 100);
+        securityService = new SecurityService(securityRepository, imageService, timers, Duration.ofSeconds(30), Duration.ZERO);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.PENDING_ALARM);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        clock.advance(Duration.ofSeconds(29));
+        timers.advance();
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+
+        clock.advance(Duration.ofSeconds(1));
+        timers.advance();
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    // 13. If the system is disarmed during the entry delay, never escalate.
+    @Test
+    public void ifDisarmedDuringEntryDelay_neverEscalate() {
+        VirtualClock clock = new VirtualClock(0);
+        TimingWheel timers = new TimingWheel(clock, 100);
+        securityService = new SecurityService(securityRepository, imageService, timers, Duration.ofSeconds(30), Duration.ZERO);
+
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        securityService.setArmingStatus(ArmingStatus.DISARMED);
+        clock.advance(Duration.ofMinutes(1));
+        timers.advance();
+
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+        assertEquals(0, timers.size());
+    }
+
+    // 14. Sensors activated during the exit delay after arming are ignored.
+    @Test
+    public void ifSensorActivatedDuringExitDelay_alarmStatusUnchanged() {
+        VirtualClock clock = new VirtualClock(0);
+        TimingWheel timers = new TimingWheel(clock, 100);
+        securityService = new SecurityService(securityRepository, imageService, timers, Duration.ZERO, Duration.ofSeconds(30));
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_AWAY);
+        when(securityRepository.getAlarmStatus()).thenReturn(AlarmStatus.NO_ALARM);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(sensor, true);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        clock.advance(Duration.ofSeconds(30));
+        timers.advance();
+        securityService.changeSensorActivationStatus(new Sensor("Front door", SensorType.DOOR), true);
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.PENDING_ALARM);
+    }
+
+    // 15. A camera that sees no cat doesn't clear a cat another camera still sees.
+    @Test
+    public void ifOneCameraSeesNoCatWhileAnotherDoes_alarmStays() {
+        Camera garden = new Camera("Garden");
+        Camera hall = new Camera("Hall");
+        CameraImage cat = CameraImage.ofPixels(4, 4, new int[16]);
+        CameraImage empty = CameraImage.ofPixels(2, 2, new int[4]);
+        when(securityRepository.getArmingStatus()).thenReturn(ArmingStatus.ARMED_HOME);
+        when(imageService.imageContainsCat(cat, 50F)).thenReturn(true);
+        when(imageService.imageContainsCat(empty, 50F)).thenReturn(false);
+
+        securityService.processImage(garden, cat);
+        securityService.processImage(hall, empty);
+        verify(securityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+        assertEquals(true, securityService.isCatDetected(garden));
+        assertEquals(false, securityService.isCatDetected(hall));
+
+        securityService.removeCamera(garden);
+        verify(securityRepository, times(1)).setAlarmStatus(AlarmStatus.NO_ALARM);
+        assertEquals(List.of(hall), securityService.getCameras());
+    }
+
+    // 16. An entry delay that fires just as the alarm is reset and made pending again doesn't cut the new delay short.
+    @Test
+    public void ifReplacedEntryDelayFiresLate_newDelayStillRuns() throws Exception {
+        VirtualClock clock = new VirtualClock(0);
+        TimingWheel timers = new TimingWheel(clock, 100);
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService = new SecurityService(repository, imageService, timers, Duration.ofSeconds(30), Duration.ZERO);
+        securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        clock.advance(Duration.ofSeconds(30));
+
+        Thread wheel = new Thread(timers::advance);
+        synchronized (securityService) {
+            wheel.start();
+            //the first delay has fired and waits for the lock this thread holds
+            while (wheel.getState() != Thread.State.BLOCKED) {
+                Thread.onSpinWait();
+            }
+            securityService.setAlarmStatus(AlarmStatus.NO_ALARM);
+            securityService.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+        wheel.join();
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+
+        clock.advance(Duration.ofSeconds(30));
+        timers.advance();
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+    }
+
+    // 17. A service started on a repository that was left pending, such as a promoted standby's, still escalates.
+    @Test
+    public void ifStartedWithAlarmPending_entryDelayStillEscalates() {
+        VirtualClock clock = new VirtualClock(0);
+        TimingWheel timers = new TimingWheel(clock, 100);
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        securityService = new SecurityService(repository, imageService, timers, Duration.ofSeconds(30), Duration.ZERO);
+
+        clock.advance(Duration.ofSeconds(29));
+        timers.advance();
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        clock.advance(Duration.ofSeconds(1));
+        timers.advance();
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+    }
+
+    // 18. The sensors read from the service are a copy, so walking them can't trip over a change made meanwhile.
+    @Test
+    public void sensorsRead_areACopyOfTheRepositorysSet() {
+        Set<Sensor> live = new TreeSet<>(Set.of(sensor));
+        when(securityRepository.getSensors()).thenReturn(live);
+
+        Set<Sensor> read = securityService.getSensors();
+        live.add(new Sensor("Kitchen window", SensorType.WINDOW));
+
+        assertEquals(Set.of(sensor), read);
+    }
+}
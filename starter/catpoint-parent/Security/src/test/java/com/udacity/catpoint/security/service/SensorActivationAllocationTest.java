@@ -0,0 +1,130 @@
+package com.udacity.catpoint.security.service;
+
+import com.sun.management.ThreadMXBean;
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorActivationAllocationTest {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final int SENSORS = 8;
+
+    private final SecurityService securityService =
+            new SecurityService(new InMemorySecurityRepositoryImpl(), new FakeImageService());
+    private final int[] slots = new int[SENSORS];
+    private final UUID[] ids = new UUID[SENSORS];
+    private long alarmChanges;
+
+    @BeforeEach
+    void init() {
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            securityService.addSensor(sensor);
+            ids[i] = sensor.getSensorId();
+            slots[i] = securityService.getSensorSlot(sensor.getSensorId());
+        }
+        securityService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                alarmChanges++;
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+
+            @Override
+            public void sensorOffline(Sensor sensor) {
+            }
+        });
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+    }
+
+    @Test
+    public void slotsAndIdsReachTheSameSensor() {
+        securityService.changeSensorActivationStatus(slots[3], true);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        securityService.changeSensorActivationStatus(ids[3], false);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertEquals(-1, securityService.getSensorSlot(UUID.randomUUID()));
+        assertThrows(IllegalArgumentException.class, () -> securityService.changeSensorActivationStatus(SENSORS, true));
+    }
+
+    @Test
+    public void slotsAndIdsReachTheRepositorysCurrentInstance() {
+        Sensor stored = securityService.getSensors().stream()
+                .filter(s -> s.getSensorId().equals(ids[3])).findFirst().orElseThrow();
+        Sensor copy = new Sensor(stored.getName(), stored.getSensorType(), stored.getSensorId());
+        securityService.changeSensorActivationStatus(copy, true); //the repository now holds the copy
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+
+        securityService.changeSensorActivationStatus(slots[3], false);
+        assertEquals(AlarmStatus.NO_ALARM, securityService.getAlarmStatus());
+        assertFalse(copy.getActive());
+        securityService.changeSensorActivationStatus(ids[3], true);
+        assertTrue(copy.getActive());
+    }
+
+    @Test
+    public void removedSensorsSlotIsNotReused() {
+        Sensor removed = securityService.getSensors().iterator().next();
+        int slot = securityService.getSensorSlot(removed.getSensorId());
+        securityService.removeSensor(removed);
+        Sensor added = new Sensor("New", SensorType.DOOR);
+        securityService.addSensor(added);
+
+        assertNotEquals(slot, securityService.getSensorSlot(added.getSensorId()));
+        assertThrows(IllegalArgumentException.class, () -> securityService.changeSensorActivationStatus(slot, true));
+    }
+
+    @Test
+    public void steadyStateActivationsDoNotAllocate() {
+        //warm up, so class loading and compilation aren't counted
+        toggle(200_000);
+
+        //now and then the JVM charges the thread a few hundred bytes once, part way through a run, while
+        //anything the path itself allocates shows up in every run; so one clean run of three is enough
+        long allocated = Long.MAX_VALUE;
+        for (int run = 0; run < 3 && allocated != 0; run++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            toggle(100_000);
+            allocated = Math.min(allocated, THREADS.getCurrentThreadAllocatedBytes() - before);
+        }
+
+        assertEquals(0, allocated, "bytes allocated for 100,000 sensor changes");
+        assertTrue(alarmChanges > 0); //the events went through the alarm rules, not around them
+    }
+
+    /**
+     * Each round trips a sensor and lets it go again, so the alarm keeps moving between no alarm and
+     * pending. Half the rounds go by slot and half by id.
+     */
+    private void toggle(int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            int sensor = i % SENSORS;
+            if ((i & 1) == 0) {
+                securityService.changeSensorActivationStatus(slots[sensor], true);
+                securityService.changeSensorActivationStatus(slots[sensor], false);
+            } else {
+                securityService.changeSensorActivationStatus(ids[sensor], true);
+                securityService.changeSensorActivationStatus(ids[sensor], false);
+            }
+        }
+    }
+}
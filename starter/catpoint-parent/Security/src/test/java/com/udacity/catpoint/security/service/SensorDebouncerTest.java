@@ -0,0 +1,182 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorDebouncerTest {
+
+    private final VirtualClock clock = new VirtualClock(0);
+    private final List<String> passedOn = new ArrayList<>();
+
+    private SensorDebouncer debouncer(SensorType type, SensorDebouncer.Policy policy) {
+        return new SensorDebouncer(clock, Map.of(type, policy),
+                (sensor, active) -> passedOn.add(sensor.getName() + (active ? " on" : " off")));
+    }
+
+    private static SensorDebouncer.Policy policy(long activateMillis, long releaseMillis, long minHoldMillis,
+                                                 int maxChanges, long windowMillis) {
+        return new SensorDebouncer.Policy(Duration.ofMillis(activateMillis), Duration.ofMillis(releaseMillis),
+                Duration.ofMillis(minHoldMillis), maxChanges, Duration.ofMillis(windowMillis));
+    }
+
+    @Test
+    public void flappingMotionSensorStaysActiveUntilItSettles() {
+        Sensor motion = new Sensor("Hall", SensorType.MOTION);
+        SensorDebouncer debouncer = debouncer(SensorType.MOTION, policy(0, 5000, 0, 100, 60_000));
+
+        for (int i = 0; i < 20; i++) {
+            debouncer.submit(motion, true);
+            clock.advance(Duration.ofMillis(300));
+            debouncer.submit(motion, false);
+            clock.advance(Duration.ofMillis(700));
+            debouncer.flush();
+        }
+        assertEquals(List.of("Hall on"), passedOn);
+
+        clock.advance(Duration.ofSeconds(5));
+        debouncer.flush();
+        assertEquals(List.of("Hall on", "Hall off"), passedOn);
+        assertEquals(40, debouncer.getReceived());
+        assertEquals(2, debouncer.getPassedOn());
+        assertEquals(0, debouncer.getPendingCount());
+    }
+
+    @Test
+    public void activationWaitsForItsSettleTimeAndIsDroppedIfUndone() {
+        Sensor window = new Sensor("Kitchen", SensorType.WINDOW);
+        SensorDebouncer debouncer = debouncer(SensorType.WINDOW, policy(100, 0, 0, 100, 60_000));
+
+        debouncer.submit(window, true);
+        clock.advance(Duration.ofMillis(50));
+        debouncer.submit(window, false);
+        clock.advance(Duration.ofMillis(100));
+        debouncer.flush();
+        assertTrue(passedOn.isEmpty());
+
+        debouncer.submit(window, true);
+        clock.advance(Duration.ofMillis(99));
+        debouncer.flush();
+        assertTrue(passedOn.isEmpty());
+        clock.advance(Duration.ofMillis(1));
+        debouncer.flush();
+        assertEquals(List.of("Kitchen on"), passedOn);
+        assertEquals(Boolean.TRUE, debouncer.getReportedStatus(window.getSensorId()));
+    }
+
+    @Test
+    public void minimumHoldDelaysTheNextChange() {
+        Sensor door = new Sensor("Front", SensorType.DOOR);
+        SensorDebouncer debouncer = debouncer(SensorType.DOOR, policy(0, 0, 1000, 100, 60_000));
+
+        debouncer.submit(door, true);
+        clock.advance(Duration.ofMillis(100));
+        debouncer.submit(door, false);
+        assertEquals(List.of("Front on"), passedOn);
+
+        clock.advance(Duration.ofMillis(900));
+        debouncer.flush();
+        assertEquals(List.of("Front on", "Front off"), passedOn);
+    }
+
+    @Test
+    public void rateLimitHoldsBackReleasesButNeverActivations() {
+        Sensor motion = new Sensor("Yard", SensorType.MOTION);
+        SensorDebouncer debouncer = debouncer(SensorType.MOTION, policy(0, 0, 0, 2, 10_000));
+
+        debouncer.submit(motion, true);
+        debouncer.submit(motion, false);
+        clock.advance(Duration.ofMillis(10));
+        debouncer.submit(motion, true);
+        debouncer.submit(motion, false);
+        assertEquals(List.of("Yard on", "Yard off", "Yard on"), passedOn);
+
+        clock.advance(Duration.ofSeconds(10));
+        debouncer.flush();
+        assertEquals(List.of("Yard on", "Yard off", "Yard on", "Yard off"), passedOn);
+    }
+
+    @Test
+    public void typesWithoutPolicyPassThrough() {
+        Sensor door = new Sensor("Back", SensorType.DOOR);
+        SensorDebouncer debouncer = debouncer(SensorType.MOTION, policy(0, 5000, 1000, 1, 60_000));
+
+        debouncer.submit(door, true);
+        debouncer.submit(door, false);
+        debouncer.submit(door, false);
+        assertEquals(List.of("Back on", "Back off"), passedOn);
+    }
+
+    @Test
+    public void removedSensorLosesItsHeldBackChange() {
+        Sensor motion = new Sensor("Den", SensorType.MOTION);
+        SensorDebouncer debouncer = debouncer(SensorType.MOTION, policy(0, 5000, 0, 100, 60_000));
+
+        debouncer.submit(motion, true);
+        debouncer.submit(motion, false);
+        debouncer.remove(motion);
+        clock.advance(Duration.ofSeconds(10));
+        debouncer.flush();
+        assertEquals(List.of("Den on"), passedOn);
+        assertNull(debouncer.getReportedStatus(motion.getSensorId()));
+    }
+
+    @Test
+    public void manySensorsKeepTheirOwnState() {
+        SensorDebouncer debouncer = debouncer(SensorType.MOTION, policy(0, 1000, 0, 100, 60_000));
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Sensor sensor = new Sensor("Motion " + i, SensorType.MOTION);
+            sensors.add(sensor);
+            debouncer.submit(sensor, true);
+            debouncer.submit(sensor, false);
+        }
+        assertEquals(100, debouncer.getPendingCount());
+        debouncer.submit(sensors.get(7), true); //back before its release was passed on
+        clock.advance(Duration.ofSeconds(1));
+        debouncer.flush();
+
+        assertEquals(0, debouncer.getPendingCount());
+        assertEquals(199, debouncer.getPassedOn());
+        assertEquals(Boolean.TRUE, debouncer.getReportedStatus(sensors.get(7).getSensorId()));
+        assertEquals(Boolean.FALSE, debouncer.getReportedStatus(sensors.get(8).getSensorId()));
+    }
+
+    @Test
+    public void invalidPolicyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> policy(0, -1, 0, 1, 1000));
+        assertThrows(IllegalArgumentException.class, () -> policy(0, 0, 0, 0, 1000));
+    }
+
+    @Test
+    public void sensorResetByArming_isPassedOnWhenActivatedAgain() {
+        SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService());
+        Sensor door = new Sensor("Front", SensorType.DOOR);
+        securityService.addSensor(door);
+        SensorDebouncer debouncer = new SensorDebouncer(clock, SensorDebouncer.Policy.defaults(), securityService);
+
+        debouncer.submit(door, true);
+        assertTrue(door.getActive());
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY); //resets every sensor
+        assertFalse(door.getActive());
+
+        clock.advance(Duration.ofSeconds(1));
+        debouncer.submit(door, true);
+        assertTrue(door.getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        assertEquals(Boolean.TRUE, debouncer.getReportedStatus(door.getSensorId()));
+    }
+}
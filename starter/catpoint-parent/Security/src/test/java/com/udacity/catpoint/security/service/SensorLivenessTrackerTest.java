@@ -0,0 +1,113 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorLivenessTrackerTest {
+
+    private final VirtualClock clock = new VirtualClock(0);
+    private final List<Sensor> offline = new ArrayList<>();
+    private final SensorLivenessTracker tracker =
+            new SensorLivenessTracker(clock, Duration.ofSeconds(10), Duration.ofSeconds(1), offline::add);
+
+    @Test
+    public void silentSensorIsReportedOnceAfterTimeout() {
+        Sensor sensor = new Sensor("Front Door", SensorType.DOOR);
+        tracker.register(sensor);
+
+        clock.advance(Duration.ofSeconds(9));
+        tracker.sweep();
+        assertTrue(offline.isEmpty());
+
+        clock.advance(Duration.ofSeconds(2));
+        tracker.sweep();
+        assertEquals(List.of(sensor), offline);
+        assertTrue(tracker.isOffline(sensor.getSensorId()));
+
+        clock.advance(Duration.ofSeconds(30));
+        tracker.sweep();
+        assertEquals(1, offline.size());
+    }
+
+    @Test
+    public void heartbeatKeepsSensorOnlineAndBringsItBack() {
+        Sensor sensor = new Sensor("Window", SensorType.WINDOW);
+        int slot = tracker.register(sensor);
+
+        for (int i = 0; i < 5; i++) {
+            clock.advance(Duration.ofSeconds(8));
+            tracker.heartbeat(slot);
+            tracker.sweep();
+        }
+        assertTrue(offline.isEmpty());
+
+        clock.advance(Duration.ofSeconds(12));
+        tracker.sweep();
+        assertTrue(tracker.isOffline(sensor.getSensorId()));
+
+        tracker.heartbeat(sensor.getSensorId());
+        assertFalse(tracker.isOffline(sensor.getSensorId()));
+        assertEquals(clock.millis(), tracker.getLastSeen(sensor.getSensorId()));
+    }
+
+    @Test
+    public void unregisteredSensorIsNeverReported() {
+        Sensor sensor = new Sensor("Hall", SensorType.MOTION);
+        tracker.register(sensor);
+        tracker.unregister(sensor);
+
+        clock.advance(Duration.ofMinutes(1));
+        tracker.sweep();
+        assertTrue(offline.isEmpty());
+        assertEquals(-1, tracker.getLastSeen(sensor.getSensorId()));
+    }
+
+    @Test
+    public void sweepsReportExactlyTheSensorsThatWentSilent() {
+        //a crowd of sensors heartbeating at random, with sweeps at uneven intervals, including pauses
+        //longer than the whole bucket ring
+        Random random = new Random(7);
+        int count = 5_000;
+        Sensor[] sensors = new Sensor[count];
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            sensors[i] = new Sensor("sensor " + i, SensorType.DOOR);
+            slots[i] = tracker.register(sensors[i]);
+        }
+        long timeout = Duration.ofSeconds(10).toMillis();
+        long[] lastSeen = new long[count];
+        boolean[] reported = new boolean[count];
+        for (int round = 0; round < 200; round++) {
+            clock.advance(Duration.ofMillis(random.nextInt(round % 50 == 49 ? 30_000 : 3_000)));
+            for (int i = 0; i < count; i++) {
+                if (random.nextInt(4) == 0) {
+                    tracker.heartbeat(slots[i]);
+                    lastSeen[i] = clock.millis();
+                    reported[i] = false;
+                }
+            }
+            tracker.sweep();
+            for (Sensor sensor : offline) {
+                int i = Integer.parseInt(sensor.getName().substring(7));
+                assertFalse(reported[i], "reported twice");
+                assertTrue(clock.millis() - lastSeen[i] >= timeout, "reported too early");
+                reported[i] = true;
+            }
+            offline.clear();
+            for (int i = 0; i < count; i++) {
+                //a sweep may run up to one bucket late
+                if (clock.millis() - lastSeen[i] >= timeout + 1_000) {
+                    assertTrue(reported[i], "missed an offline sensor");
+                }
+            }
+        }
+    }
+}
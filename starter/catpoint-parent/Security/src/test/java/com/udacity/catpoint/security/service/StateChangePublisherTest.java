@@ -0,0 +1,174 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateChangePublisherTest {
+
+    //runs deliveries on the publishing thread, so every test sees the outcome straight away
+    private final StateChangePublisher publisher = new StateChangePublisher(Runnable::run);
+    private final Preferences prefs = Preferences.userRoot().node("catpoint-test/" + UUID.randomUUID());
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    public void changesAreDeliveredOnlyAsRequested() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publishAlarms(5);
+        assertTrue(subscriber.received.isEmpty());
+
+        subscriber.subscription.request(2);
+        assertEquals(List.of(alarm(0), alarm(1)), subscriber.received);
+
+        subscriber.subscription.request(10);
+        assertEquals(5, subscriber.received.size());
+        publishAlarms(1);
+        assertEquals(6, subscriber.received.size());
+    }
+
+    @Test
+    public void fullBufferDropsOldestOrNewestAsConfigured() {
+        RecordingSubscriber keepsLatest = new RecordingSubscriber();
+        RecordingSubscriber keepsFirst = new RecordingSubscriber();
+        publisher.subscribe(keepsLatest, 2, StateChangePublisher.Overflow.DROP_OLDEST);
+        publisher.subscribe(keepsFirst, 2, StateChangePublisher.Overflow.DROP_NEWEST);
+
+        publishAlarms(3);
+        keepsLatest.subscription.request(Long.MAX_VALUE);
+        keepsFirst.subscription.request(Long.MAX_VALUE);
+
+        assertEquals(List.of(alarm(1), alarm(2)), keepsLatest.received);
+        assertEquals(List.of(alarm(0), alarm(1)), keepsFirst.received);
+        assertEquals(2, publisher.getDropped());
+    }
+
+    @Test
+    public void cancelledSubscriberGetsNothingMore() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        publishAlarms(1);
+        subscriber.subscription.cancel();
+        publishAlarms(1);
+
+        assertEquals(1, subscriber.received.size());
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    public void nonPositiveRequestIsAnError() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    public void closeCompletesOnceTheBufferIsTaken() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publishAlarms(2);
+        publisher.close();
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(2);
+        assertEquals(2, subscriber.received.size());
+        assertTrue(subscriber.completed);
+
+        RecordingSubscriber late = new RecordingSubscriber();
+        publisher.subscribe(late);
+        assertTrue(late.completed);
+    }
+
+    @Test
+    public void serviceCausesArriveBeforeTheAlarmChangesTheyLeadTo() throws InterruptedException {
+        SecurityService securityService = new SecurityService(new PretendDatabaseSecurityRepositoryImpl(prefs),
+                new FakeImageService());
+        Sensor door = new Sensor("Front", SensorType.DOOR);
+        securityService.addSensor(door);
+        CountDownLatch done = new CountDownLatch(4);
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(StateChange item) {
+                super.onNext(item);
+                done.countDown();
+            }
+        };
+        securityService.getStateChanges().subscribe(subscriber);
+        while (!securityService.getStateChanges().hasSubscribers() || subscriber.subscription == null) {
+            Thread.onSpinWait();
+        }
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService.changeSensorActivationStatus(door, true);
+        securityService.changeSensorActivationStatus(door, true); //already active, so only the alarm changes
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(
+                new StateChange.ArmingChanged(ArmingStatus.ARMED_AWAY),
+                new StateChange.SensorChanged(door.getSensorId(), "Front", true),
+                new StateChange.AlarmChanged(AlarmStatus.PENDING_ALARM),
+                new StateChange.AlarmChanged(AlarmStatus.ALARM)), subscriber.received);
+    }
+
+    private void publishAlarms(int count) {
+        for (int i = 0; i < count; i++) {
+            publisher.publish(alarm(i));
+        }
+    }
+
+    private static StateChange alarm(int i) {
+        return new StateChange.AlarmChanged(AlarmStatus.values()[i % AlarmStatus.values().length]);
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<StateChange> {
+        final List<StateChange> received = new ArrayList<>();
+        volatile Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(StateChange item) {
+            received.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    private final VirtualClock clock = new VirtualClock(0);
+    private final TimingWheel wheel = new TimingWheel(clock, 10);
+
+    @Test
+    public void taskRunsOnceItsDelayHasPassed() {
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(Duration.ofMillis(50), () -> ran.add("task"));
+
+        clock.advance(Duration.ofMillis(40));
+        wheel.advance();
+        assertTrue(ran.isEmpty());
+
+        clock.advance(Duration.ofMillis(10));
+        wheel.advance();
+        assertEquals(List.of("task"), ran);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void cancelledTaskNeverRuns() {
+        List<String> ran = new ArrayList<>();
+        TimingWheel.Timeout timeout = wheel.schedule(Duration.ofSeconds(1), () -> ran.add("task"));
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        clock.advance(Duration.ofSeconds(2));
+        wheel.advance();
+
+        assertTrue(ran.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void tasksOnEveryLevelRunInTheAdvanceThatPassesTheirDeadline() {
+        //delays spanning every level, including some beyond the wheel's 64^4 tick range
+        Random random = new Random(42);
+        int count = 2_000;
+        long[] delays = new long[count];
+        long[] ranAt = new long[count];
+        long[] ranAfter = new long[count];
+        long[] previousNow = new long[1];
+        long maxDelay = 0;
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            delays[i] = (1 + random.nextInt(20_000_000 >> random.nextInt(24))) * 10L;
+            maxDelay = Math.max(maxDelay, delays[i]);
+            wheel.schedule(Duration.ofMillis(delays[i]), () -> {
+                ranAt[index] = clock.millis();
+                ranAfter[index] = previousNow[0];
+            });
+        }
+
+        //step through time in uneven jumps to exercise cascading
+        while (clock.millis() < maxDelay) {
+            previousNow[0] = clock.millis();
+            clock.advance(Duration.ofMillis(10L * (1 + random.nextInt(5_000))));
+            wheel.advance();
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(ranAfter[i] < delays[i] && delays[i] <= ranAt[i],
+                    "task with delay " + delays[i] + " ran at " + ranAt[i]);
+        }
+        assertEquals(0, wheel.size());
+    }
+}